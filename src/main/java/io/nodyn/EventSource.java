@@ -14,35 +14,75 @@
  * limitations under the License.
  */
 
+
 package io.nodyn;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * A source of named events, each bound to at most one callback.
+ *
+ * <p>Event names are interned once into process-wide integer ids, and
+ * callbacks are kept in an array indexed by id. Hot paths resolve their ids
+ * up-front (see {@link #eventId(String)}) and dispatch with
+ * {@link #emit(int, CallbackResult)}, avoiding any per-event lookup.</p>
+ *
  * @author Bob McWhirter
  */
 public class EventSource {
 
-    private Map<String, Callback> callbacks = new HashMap<>();
+    private static final ConcurrentMap<String, Integer> EVENT_IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_EVENT_ID = new AtomicInteger();
+    private static final Callback[] NO_CALLBACKS = new Callback[0];
+
+    public static int eventId(String event) {
+        Integer id = EVENT_IDS.get(event);
+        if (id == null) {
+            Integer candidate = NEXT_EVENT_ID.getAndIncrement();
+            id = EVENT_IDS.putIfAbsent(event, candidate);
+            if (id == null) {
+                id = candidate;
+            }
+        }
+        return id;
+    }
+
+    private Callback[] callbacks = NO_CALLBACKS;
 
     public EventSource() {
 
     }
 
     public Object emit(String event, CallbackResult result) {
-        Callback callback = this.callbacks.get(event);
-        if (callback != null) {
-            return callback.call(result);
+        return emit(eventId(event), result);
+    }
+
+    public Object emit(int event, CallbackResult result) {
+        Callback[] callbacks = this.callbacks;
+        if (event < callbacks.length) {
+            Callback callback = callbacks[event];
+            if (callback != null) {
+                return callback.call(result);
+            }
         }
         return null;
     }
 
     public void on(String event, Callback callback) {
-        if (callback == null) {
-            this.callbacks.remove(event);
-        } else {
-            this.callbacks.put(event, callback);
+        on(eventId(event), callback);
+    }
+
+    public void on(int event, Callback callback) {
+        if (event >= this.callbacks.length) {
+            if (callback == null) {
+                return;
+            }
+            Callback[] grown = new Callback[Math.max(event + 1, this.callbacks.length * 2)];
+            System.arraycopy(this.callbacks, 0, grown, 0, this.callbacks.length);
+            this.callbacks = grown;
         }
+        this.callbacks[event] = callback;
     }
 }
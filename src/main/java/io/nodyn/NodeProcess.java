@@ -34,6 +34,8 @@ import java.util.Properties;
 
 public class NodeProcess extends EventSource {
 
+    private static final int CHECK_IMMEDIATE = eventId("checkImmediate");
+
     private final Map<String, Object> bindings = new HashMap<>();
 
     private final Nodyn nodyn;
@@ -61,7 +63,7 @@ public class NodeProcess extends EventSource {
         this.immediateCheckHandle = new ImmediateCheckHandle(nodyn.getEventLoop(), new Runnable() {
             @Override
             public void run() {
-                emit("checkImmediate", CallbackResult.EMPTY_SUCCESS);
+                emit(CHECK_IMMEDIATE, CallbackResult.EMPTY_SUCCESS);
             }
         });
 
@@ -101,7 +103,9 @@ public class NodeProcess extends EventSource {
     }
 
     public void doNextTick() {
-        this.tickCallback.run();
+        if (this.tickCallback != null) {
+            this.tickCallback.run();
+        }
     }
 
     public boolean getNeedImmediateCallback() {
@@ -21,6 +21,7 @@ import io.nodyn.crypto.CryptoInitializer;
 import io.nodyn.loop.EventLoop;
 import io.nodyn.runtime.NodynConfig;
 import io.nodyn.runtime.Program;
+import io.nodyn.worker.WorkerChannel;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.impl.VertxInternal;
 
@@ -123,6 +124,17 @@ public abstract class Nodyn {
         return this.vertx;
     }
 
+    public void setWorkerChannel(WorkerChannel workerChannel) {
+        this.workerChannel = workerChannel;
+    }
+
+    /**
+     * @return the channel to the parent runtime, or <code>null</code> if this is not a worker
+     */
+    public WorkerChannel getWorkerChannel() {
+        return this.workerChannel;
+    }
+
     public void setExitHandler(ExitHandler handle) {
         this.exitHandler = handle;
     }
@@ -174,6 +186,7 @@ public abstract class Nodyn {
     private final Vertx vertx;
     private final NodynConfig config;
     private ExitHandler exitHandler;
+    private WorkerChannel workerChannel;
 
 
     private static class CompletionHandler {
@@ -14,19 +14,39 @@
  * limitations under the License.
  */
 
+
 package io.nodyn.async;
 
 import io.nodyn.CallbackResult;
 import io.nodyn.EventSource;
 import io.nodyn.NodeProcess;
+import io.nodyn.loop.EventLoop;
 
 /**
  * @author Bob McWhirter
  */
 public class AsyncWrap extends EventSource {
 
+    private static final int MAKE_CALLBACK_BY_INDEX = eventId("makeCallbackByIndex");
+
+    private static final CallbackResult[] INDEX_RESULTS = new CallbackResult[16];
+
+    static {
+        for (int i = 0; i < INDEX_RESULTS.length; ++i) {
+            INDEX_RESULTS[i] = CallbackResult.createSuccess((Object) i);
+        }
+    }
+
     protected final NodeProcess process;
 
+    // events waiting for the user-task thread, oldest first
+    private int[] pendingEvents = new int[4];
+    private CallbackResult[] pendingResults = new CallbackResult[4];
+    private int pendingHead;
+    private int pendingCount;
+    private boolean drainScheduled;
+    private Drain drain;
+
     public AsyncWrap(NodeProcess process) {
         this.process = process;
     }
@@ -35,27 +55,127 @@ public class AsyncWrap extends EventSource {
         return this.process;
     }
 
-    public void makeCallback(final int index) {
-        this.process.getEventLoop().submitUserTask( new Runnable() {
-            @Override
-            public void run() {
-                emit("makeCallbackByIndex", CallbackResult.createSuccess( index ) );
+    public void makeCallback(int index) {
+        emit( MAKE_CALLBACK_BY_INDEX, indexResult( index ) );
+    }
+
+    /**
+     * Invoke the indexed callback directly. Only valid on the user-task thread.
+     */
+    protected void makeCallbackNow(int index) {
+        try {
+            super.emit( MAKE_CALLBACK_BY_INDEX, indexResult( index ) );
+        } catch (Throwable t) {
+            this.process.getNodyn().handleThrowable(t);
+        }
+    }
+
+    /**
+     * Queue the event for delivery on the user-task thread. Events from one
+     * source are delivered in order, in batches, by a single reusable task.
+     */
+    @Override
+    public Object emit(int event, CallbackResult result) {
+        synchronized (this) {
+            if (this.pendingCount == this.pendingEvents.length) {
+                grow();
+            }
+            int tail = (this.pendingHead + this.pendingCount) & (this.pendingEvents.length - 1);
+            this.pendingEvents[tail] = event;
+            this.pendingResults[tail] = result;
+            ++this.pendingCount;
+            if (this.drainScheduled) {
+                return null;
+            }
+            this.drainScheduled = true;
+            if (this.drain == null) {
+                this.drain = new Drain();
             }
-        }, "make-callback-for-" + getClass().getSimpleName() );
+        }
+        this.process.getEventLoop().submitUserTask( this.drain, this.drain.name );
+        return null;
+    }
 
+    protected Object emit(String event, CallbackResult result, EventLoop.Phase phase) {
+        return emit( eventId( event ), result, phase );
     }
 
-    public Object emit(final String event, final CallbackResult result) {
+    protected Object emit(final int id, final CallbackResult result, EventLoop.Phase phase) {
+        if (phase == EventLoop.Phase.PENDING) {
+            return emit( id, result );
+        }
         this.process.getEventLoop().submitUserTask( new Runnable() {
             @Override
             public void run() {
                 try {
-                    AsyncWrap.super.emit(event, result);
+                    AsyncWrap.super.emit(id, result);
                 } catch (Throwable t) {
                     AsyncWrap.this.getProcess().getNodyn().handleThrowable(t);
                 }
             }
-        }, "emit-for-" + getClass().getSimpleName() );
+        }, "emit-for-" + getClass().getSimpleName(), phase );
         return null;
     }
+
+    private static CallbackResult indexResult(int index) {
+        if (index >= 0 && index < INDEX_RESULTS.length) {
+            return INDEX_RESULTS[index];
+        }
+        return CallbackResult.createSuccess((Object) index);
+    }
+
+    private void grow() {
+        int len = this.pendingEvents.length;
+        int[] events = new int[len * 2];
+        CallbackResult[] results = new CallbackResult[len * 2];
+        for (int i = 0; i < len; ++i) {
+            int from = (this.pendingHead + i) & (len - 1);
+            events[i] = this.pendingEvents[from];
+            results[i] = this.pendingResults[from];
+        }
+        this.pendingEvents = events;
+        this.pendingResults = results;
+        this.pendingHead = 0;
+    }
+
+    private class Drain implements Runnable {
+
+        private final String name = "emit-for-" + AsyncWrap.this.getClass().getSimpleName();
+
+        @Override
+        public void run() {
+            int available;
+            synchronized (AsyncWrap.this) {
+                available = AsyncWrap.this.pendingCount;
+            }
+            for (int i = 0; i < available; ++i) {
+                int event;
+                CallbackResult result;
+                synchronized (AsyncWrap.this) {
+                    int head = AsyncWrap.this.pendingHead;
+                    event = AsyncWrap.this.pendingEvents[head];
+                    result = AsyncWrap.this.pendingResults[head];
+                    AsyncWrap.this.pendingResults[head] = null;
+                    AsyncWrap.this.pendingHead = (head + 1) & (AsyncWrap.this.pendingEvents.length - 1);
+                    --AsyncWrap.this.pendingCount;
+                }
+                try {
+                    AsyncWrap.super.emit(event, result);
+                } catch (Throwable t) {
+                    AsyncWrap.this.getProcess().getNodyn().handleThrowable(t);
+                }
+                if (i + 1 < available) {
+                    // the loop drains ticks after the task; do it between events too
+                    AsyncWrap.this.process.doNextTick();
+                }
+            }
+            synchronized (AsyncWrap.this) {
+                if (AsyncWrap.this.pendingCount == 0) {
+                    AsyncWrap.this.drainScheduled = false;
+                    return;
+                }
+            }
+            AsyncWrap.this.process.getEventLoop().submitUserTask( this, this.name );
+        }
+    }
 }
@@ -17,8 +17,7 @@
 package io.nodyn.buffer;
 
 import io.netty.buffer.ByteBuf;
-import org.bouncycastle.util.encoders.Base64;
-import org.bouncycastle.util.encoders.Hex;
+import io.netty.buffer.Unpooled;
 import org.dynjs.runtime.JSObject;
 
 import java.nio.charset.Charset;
@@ -49,6 +48,26 @@ public class Buffer {
         return bytes;
     }
 
+    /**
+     * Detach the bytes of a buffer so they can be handed to another runtime.
+     *
+     * <p>A buffer owning its memory gives it up without copying; a slice of
+     * a larger (shared) allocation is copied so the receiver cannot observe
+     * the sender's neighbouring bytes. Either way the source is left empty.</p>
+     */
+    public static ByteBuf transfer(JSObject object) {
+        ByteBuf buf = extract(object);
+        int len = bufLen(object);
+        ByteBuf result;
+        if (buf.unwrap() == null) {
+            result = buf.slice(buf.readerIndex(), len);
+        } else {
+            result = buf.copy(buf.readerIndex(), len);
+        }
+        inject(object, Unpooled.EMPTY_BUFFER);
+        return result;
+    }
+
     public static int bufLen(JSObject obj) {
         return ((Number) obj.get( null, "length" )).intValue();
     }
@@ -57,39 +76,158 @@ public class Buffer {
     // ----------------------------------------
 
     public static Object fill(JSObject obj, Object val, int offset, int end) {
+        ByteBuf b = extract(obj);
+        int len = end - offset;
+        if ( len <= 0 ) {
+            return obj;
+        }
+
+        byte[] pattern = null;
         int byteVal = 0;
         if ( val instanceof Number ) {
             byteVal = ((Number) val).intValue() & 0xFF;
-        } else if ( val instanceof String && ! ((String) val).isEmpty() ) {
+        } else if ( val instanceof String && ((String) val).length() == 1 && ((String) val).charAt(0) < 0x80 ) {
             byteVal = ((String) val).charAt(0);
+        } else if ( val instanceof String && ! ((String) val).isEmpty() ) {
+            pattern = ((String) val).getBytes( UTF8 );
         }
-        ByteBuf b = extract(obj);
-        for ( int i = offset; i < end; ++i ) {
-            b.setByte( i, byteVal );
+
+        if ( pattern == null ) {
+            if ( byteVal == 0 ) {
+                b.setZero( offset, len );
+                return obj;
+            }
+            b.setByte( offset, byteVal );
+            replicate( b, offset, 1, len );
+        } else {
+            int seed = Math.min( pattern.length, len );
+            b.setBytes( offset, pattern, 0, seed );
+            replicate( b, offset, seed, len );
         }
-        b.writerIndex( Math.max( b.writerIndex(), offset + end ) );
         return obj;
     }
 
+    /**
+     * Repeat the first <code>filled</code> bytes at <code>offset</code> until
+     * <code>len</code> bytes are covered, doubling the copied run each pass.
+     */
+    private static void replicate(ByteBuf b, int offset, int filled, int len) {
+        while ( filled < len ) {
+            int chunk = Math.min( filled, len - filled );
+            b.setBytes( offset + filled, b, offset, chunk );
+            filled += chunk;
+        }
+    }
+
     public static long copy(JSObject src, JSObject target, int targetStart, int sourceStart, int sourceEnd) {
+        int len = Math.min( sourceEnd, bufLen( src ) ) - sourceStart;
+        len = Math.min( len, bufLen( target ) - targetStart );
+        if ( len <= 0 ) {
+            return 0;
+        }
+        extract( target ).setBytes( targetStart, extract( src ), sourceStart, len );
+        return len;
+    }
 
-        ByteBuf srcBuf = extract(src);
-        ByteBuf targetBuf = extract(target);
+    // ----------------------------------------
+    // compare / search
+    // ----------------------------------------
 
-        int origWriter = targetBuf.writerIndex();
+    public static int compare(JSObject a, JSObject b) {
+        int aLen = bufLen( a );
+        int bLen = bufLen( b );
+        int result = compare( extract( a ), 0, extract( b ), 0, Math.min( aLen, bLen ) );
+        if ( result != 0 ) {
+            return result;
+        }
+        return aLen < bLen ? -1 : ( aLen == bLen ? 0 : 1 );
+    }
 
-        targetBuf.writerIndex( targetStart );
+    /**
+     * Unsigned, lexicographic comparison of two byte ranges, eight bytes at a time.
+     */
+    static int compare(ByteBuf a, int aIndex, ByteBuf b, int bIndex, int len) {
+        int longs = len >>> 3;
+        for ( int i = 0; i < longs; ++i ) {
+            long x = a.getLong( aIndex );
+            long y = b.getLong( bIndex );
+            if ( x != y ) {
+                // big-endian longs order like their bytes when compared unsigned
+                return ( x + Long.MIN_VALUE ) < ( y + Long.MIN_VALUE ) ? -1 : 1;
+            }
+            aIndex += 8;
+            bIndex += 8;
+        }
+        for ( int i = len & 7; i > 0; --i ) {
+            int x = a.getByte( aIndex++ ) & 0xFF;
+            int y = b.getByte( bIndex++ ) & 0xFF;
+            if ( x != y ) {
+                return x < y ? -1 : 1;
+            }
+        }
+        return 0;
+    }
 
-        int len = sourceEnd - sourceStart;
+    public static int indexOf(JSObject obj, int value, int byteOffset) {
+        int len = bufLen( obj );
+        if ( byteOffset >= len ) {
+            return -1;
+        }
+        return extract( obj ).indexOf( byteOffset, len, (byte) value );
+    }
 
-        len = Math.min( len, bufLen( target ) - targetStart );
+    public static int indexOf(JSObject obj, JSObject needle, int byteOffset) {
+        return indexOf( extract( obj ), bufLen( obj ), extract( needle ), bufLen( needle ), byteOffset );
+    }
 
-        targetBuf.writeBytes(srcBuf, sourceStart, len);
-        targetBuf.writerIndex(Math.max(targetBuf.writerIndex(), origWriter));
+    /**
+     * Find <code>needle</code> within the first <code>len</code> bytes of
+     * <code>haystack</code>. Short needles scan for their first byte and
+     * verify; longer ones use Boyer-Moore-Horspool so the search skips ahead.
+     */
+    static int indexOf(ByteBuf haystack, int len, ByteBuf needle, int needleLen, int from) {
+        if ( needleLen == 0 ) {
+            return Math.min( from, len );
+        }
+        int last = len - needleLen;
+        if ( from > last ) {
+            return -1;
+        }
 
-        return len;
-    }
+        if ( needleLen < 8 ) {
+            byte first = needle.getByte( 0 );
+            int i = from;
+            while ( i <= last ) {
+                i = haystack.indexOf( i, last + 1, first );
+                if ( i < 0 ) {
+                    return -1;
+                }
+                if ( compare( haystack, i + 1, needle, 1, needleLen - 1 ) == 0 ) {
+                    return i;
+                }
+                ++i;
+            }
+            return -1;
+        }
 
+        int[] skip = new int[256];
+        for ( int i = 0; i < 256; ++i ) {
+            skip[i] = needleLen;
+        }
+        for ( int i = 0; i < needleLen - 1; ++i ) {
+            skip[ needle.getByte( i ) & 0xFF ] = needleLen - 1 - i;
+        }
+        byte tail = needle.getByte( needleLen - 1 );
+        int i = from;
+        while ( i <= last ) {
+            byte b = haystack.getByte( i + needleLen - 1 );
+            if ( b == tail && compare( haystack, i, needle, 0, needleLen - 1 ) == 0 ) {
+                return i;
+            }
+            i += skip[ b & 0xFF ];
+        }
+        return -1;
+    }
 
     // ----------------------------------------
     // utf8
@@ -97,17 +235,17 @@ public class Buffer {
 
     public static long[] utf8Write(JSObject object, String str, int offset, int len) {
         ByteBuf b = extract( object );
-        int origWriter = b.writerIndex();
         byte[] bytes = str.getBytes( UTF8 );
-        b.writerIndex( offset );
         len = Math.min( bytes.length, Math.min( len, bufLen(object) - offset  ) );
-        b.writeBytes( bytes, 0, len );
-        b.writerIndex( Math.max( b.writerIndex(), origWriter ) );
+        b.setBytes( offset, bytes, 0, len );
         return new long[] { str.length(), len };
     }
 
     public static String utf8Slice(JSObject object, int start, int end) {
         ByteBuf b = extract( object );
+        if ( b.hasArray() ) {
+            return new String( b.array(), b.arrayOffset() + start, end - start, UTF8 );
+        }
         return b.toString( start, (end-start), UTF8 );
     }
 
@@ -117,11 +255,9 @@ public class Buffer {
 
     public static long asciiWrite(JSObject object, String str, int offset, int len) {
         ByteBuf b = extract( object );
-        int origWriter = b.writerIndex();
         byte[] bytes = str.getBytes( ASCII );
-        len = Math.min( bytes.length, Math.min( len, b.writableBytes() ) );
-        b.writeBytes( bytes, 0, len );
-        b.writerIndex( Math.max( b.writerIndex(), origWriter ) );
+        len = Math.min( bytes.length, Math.min( len, bufLen(object) - offset ) );
+        b.setBytes( offset, bytes, 0, len );
         return len;
     }
 
@@ -136,11 +272,9 @@ public class Buffer {
 
     public static long ucs2Write(JSObject object, String str, int offset, int len) {
         ByteBuf b = extract( object );
-        int origWriter = b.writerIndex();
         byte[] bytes = str.getBytes( UCS2 );
-        len = Math.min( bytes.length, Math.min( len, b.writableBytes() ) );
-        b.writeBytes( bytes, 0, len );
-        b.writerIndex( Math.max( b.writerIndex(), origWriter ) );
+        len = Math.min( bytes.length, Math.min( len, bufLen(object) - offset ) );
+        b.setBytes( offset, bytes, 0, len );
         return len;
     }
 
@@ -154,21 +288,12 @@ public class Buffer {
     // ----------------------------------------
 
     public static long hexWrite(JSObject object, String str, int offset, int len) {
-        ByteBuf b = extract( object );
-        int origWriter = b.writerIndex();
-        byte[] bytes = Hex.decode(str);
-        b.writerIndex( offset );
-        len = Math.min( bytes.length, Math.min( len, b.writableBytes() ) );
-        b.writeBytes( bytes, 0, len );
-        b.writerIndex( Math.max( b.writerIndex(), origWriter ) );
-        return len;
+        len = Math.min( len, bufLen(object) - offset );
+        return Codec.decodeHex( str, extract( object ), offset, len );
     }
 
     public static String hexSlice(JSObject object, int start, int end) {
-        ByteBuf b = extract( object );
-        byte[] bytes = new byte[ end-start ];
-        b.getBytes( start, bytes );
-        return Hex.toHexString( bytes );
+        return Codec.encodeHex( extract( object ), start, end );
     }
 
     // ----------------------------------------
@@ -176,22 +301,16 @@ public class Buffer {
     // ----------------------------------------
 
     public static long base64Write(JSObject object, String str, int offset, int len) {
-        ByteBuf b = extract( object );
-        int origWriter = b.writerIndex();
-        byte[] bytes = Base64.decode(str);
-        b.writerIndex( offset );
-        len = Math.min( bytes.length, Math.min( len, b.writableBytes() ) );
-        b.writeBytes(bytes, 0, len);
-        b.writerIndex(Math.max(b.writerIndex(), origWriter));
-        return len;
+        len = Math.min( len, bufLen(object) - offset );
+        return Codec.decodeBase64( str, extract( object ), offset, len );
     }
 
     public static String base64Slice(JSObject object, int start, int end) {
-        ByteBuf b = extract( object );
-        byte[] bytes = new byte[ end-start ];
-        b.getBytes( start, bytes );
+        return Codec.encodeBase64( extract( object ), start, end );
+    }
 
-        return Base64.toBase64String(bytes);
+    public static String base64urlSlice(JSObject object, int start, int end) {
+        return Codec.encodeBase64( extract( object ), start, end, true );
     }
 
     // ----------------------------------------
@@ -200,11 +319,9 @@ public class Buffer {
 
     public static long binaryWrite(JSObject object, String str, int offset, int len) {
         ByteBuf b = extract( object );
-        int origWriter = b.writerIndex();
         byte[] bytes = str.getBytes( BINARY );
-        len = Math.min( bytes.length, Math.min( len, b.writableBytes() ) );
-        b.writeBytes( bytes, 0, len );
-        b.writerIndex( Math.max( b.writerIndex(), origWriter ) );
+        len = Math.min( bytes.length, Math.min( len, bufLen(object) - offset ) );
+        b.setBytes( offset, bytes, 0, len );
         return len;
     }
 
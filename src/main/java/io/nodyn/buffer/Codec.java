@@ -0,0 +1,216 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.buffer;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Table-driven hex and base64 codecs working directly on a {@link ByteBuf}.
+ *
+ * <p>Encoding reads the source range in place and produces the string from a
+ * single exactly-sized <code>char[]</code>. Decoding writes straight into
+ * the target buffer, with no intermediate array. Base64 decoding accepts
+ * both the standard and the URL-safe alphabet and, like node, skips
+ * characters outside them (such as whitespace) and stops at padding.</p>
+ */
+public class Codec {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char[] BASE64_URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final byte[] HEX_VALUES = new byte[128];
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < 128; ++i) {
+            HEX_VALUES[i] = -1;
+            BASE64_VALUES[i] = -1;
+        }
+        for (int i = 0; i < 10; ++i) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; ++i) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+        for (int i = 0; i < 64; ++i) {
+            BASE64_VALUES[BASE64[i]] = (byte) i;
+            BASE64_VALUES[BASE64_URL[i]] = (byte) i;
+        }
+    }
+
+    private Codec() {
+    }
+
+    // ----------------------------------------
+    // hex
+    // ----------------------------------------
+
+    public static String encodeHex(ByteBuf buf, int start, int end) {
+        char[] out = new char[(end - start) * 2];
+        int j = 0;
+        for (int i = start; i < end; ++i) {
+            int b = buf.getByte(i) & 0xFF;
+            out[j++] = HEX_DIGITS[b >>> 4];
+            out[j++] = HEX_DIGITS[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * Decode hex pairs into <code>buf</code> at <code>offset</code>, stopping
+     * at the first invalid pair or after <code>maxLen</code> bytes.
+     *
+     * @return the number of bytes written
+     */
+    public static int decodeHex(CharSequence str, ByteBuf buf, int offset, int maxLen) {
+        int pairs = Math.min(str.length() / 2, maxLen);
+        for (int i = 0; i < pairs; ++i) {
+            int hi = hexValue(str.charAt(i * 2));
+            int lo = hexValue(str.charAt(i * 2 + 1));
+            if ((hi | lo) < 0) {
+                return i;
+            }
+            buf.setByte(offset + i, (hi << 4) | lo);
+        }
+        return pairs;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+
+    // ----------------------------------------
+    // base64
+    // ----------------------------------------
+
+    public static String encodeBase64(ByteBuf buf, int start, int end) {
+        return encodeBase64(buf, start, end, false);
+    }
+
+    /**
+     * @param urlSafe use the URL-safe alphabet, without padding
+     */
+    public static String encodeBase64(ByteBuf buf, int start, int end, boolean urlSafe) {
+        char[] alphabet = urlSafe ? BASE64_URL : BASE64;
+        int len = end - start;
+        int whole = len / 3;
+        int rest = len - whole * 3;
+        int outLen = whole * 4 + (rest == 0 ? 0 : (urlSafe ? rest + 1 : 4));
+        char[] out = new char[outLen];
+
+        int i = start;
+        int j = 0;
+        for (int n = 0; n < whole; ++n) {
+            int bits = (buf.getByte(i) & 0xFF) << 16 | (buf.getByte(i + 1) & 0xFF) << 8 | (buf.getByte(i + 2) & 0xFF);
+            i += 3;
+            out[j++] = alphabet[bits >>> 18];
+            out[j++] = alphabet[(bits >>> 12) & 0x3F];
+            out[j++] = alphabet[(bits >>> 6) & 0x3F];
+            out[j++] = alphabet[bits & 0x3F];
+        }
+
+        if (rest > 0) {
+            int bits = (buf.getByte(i) & 0xFF) << 16;
+            if (rest == 2) {
+                bits |= (buf.getByte(i + 1) & 0xFF) << 8;
+            }
+            out[j++] = alphabet[bits >>> 18];
+            out[j++] = alphabet[(bits >>> 12) & 0x3F];
+            if (rest == 2) {
+                out[j++] = alphabet[(bits >>> 6) & 0x3F];
+            } else if (!urlSafe) {
+                out[j++] = '=';
+            }
+            if (!urlSafe) {
+                out[j] = '=';
+            }
+        }
+        return new String(out);
+    }
+
+    /**
+     * The number of bytes <code>str</code> decodes to.
+     */
+    public static int base64DecodedLength(CharSequence str) {
+        int chars = 0;
+        int len = str.length();
+        for (int i = 0; i < len; ++i) {
+            char c = str.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (base64Value(c) >= 0) {
+                ++chars;
+            }
+        }
+        return decodedLength(chars);
+    }
+
+    private static int decodedLength(int chars) {
+        int rest = chars & 3;
+        return (chars >>> 2) * 3 + (rest == 0 ? 0 : rest - 1);
+    }
+
+    /**
+     * Decode base64 (either alphabet) into <code>buf</code> at
+     * <code>offset</code>, writing at most <code>maxLen</code> bytes.
+     *
+     * @return the number of bytes written
+     */
+    public static int decodeBase64(CharSequence str, ByteBuf buf, int offset, int maxLen) {
+        int len = str.length();
+        int written = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < len && written < maxLen; ++i) {
+            char c = str.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            int v = base64Value(c);
+            if (v < 0) {
+                continue;
+            }
+            bits = (bits << 6) | v;
+            if (++count == 4) {
+                buf.setByte(offset + written++, bits >>> 16);
+                if (written < maxLen) {
+                    buf.setByte(offset + written++, bits >>> 8);
+                }
+                if (written < maxLen) {
+                    buf.setByte(offset + written++, bits);
+                }
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count >= 2 && written < maxLen) {
+            bits <<= (4 - count) * 6;
+            buf.setByte(offset + written++, bits >>> 16);
+            if (count == 3 && written < maxLen) {
+                buf.setByte(offset + written++, bits >>> 8);
+            }
+        }
+        return written;
+    }
+
+    private static int base64Value(char c) {
+        return c < 128 ? BASE64_VALUES[c] : -1;
+    }
+}
@@ -33,6 +33,9 @@ public class Internal {
         if ( encoding.equals( "utf8" ) ) {
             return str.getBytes(UTF8).length;
         }
+        if ( encoding.equals( "base64" ) || encoding.equals( "base64url" ) ) {
+            return Codec.base64DecodedLength( str );
+        }
 
         return str.getBytes().length;
     }
@@ -14,16 +14,32 @@
  * limitations under the License.
  */
 
+
 package io.nodyn.buffer;
 
 import io.netty.buffer.ByteBuf;
 import org.dynjs.runtime.ExternalIndexedData;
 
 /**
+ * Exposes a {@link ByteBuf} as the indexed elements of a JS Buffer.
+ *
+ * <p>The buffer's readable region is the whole JS buffer, from allocation
+ * onwards, so element writes are plain absolute stores with no index
+ * bookkeeping. Reads answer from a table of pre-boxed byte values, so
+ * <code>buf[i]</code> never allocates.</p>
+ *
  * @author Bob McWhirter
  */
 public class NettyExternalIndexedData implements ExternalIndexedData {
 
+    private static final Long[] BYTE_VALUES = new Long[256];
+
+    static {
+        for (int i = 0; i < BYTE_VALUES.length; ++i) {
+            BYTE_VALUES[i] = (long) i;
+        }
+    }
+
     private final ByteBuf buf;
 
     public NettyExternalIndexedData(ByteBuf buf) {
@@ -34,17 +50,31 @@ public class NettyExternalIndexedData implements ExternalIndexedData {
         return this.buf;
     }
 
+    public int getByte(int index) {
+        return this.buf.getByte(index) & 0xFF;
+    }
+
+    public void setByte(int index, int value) {
+        this.buf.setByte(index, value);
+    }
+
     @Override
     public Object get(long l) {
-        return this.buf.getUnsignedByte((int) l);
+        return BYTE_VALUES[this.buf.getByte((int) l) & 0xFF];
     }
 
     @Override
     public void put(long l, Object o) {
-        if (o instanceof Number) {
-            int value = ((Number) o).intValue() & 0xFF;
-            this.buf.setByte((int) l, value);
-            this.buf.writerIndex((int) Math.max( this.buf.writerIndex(), l ));
+        int value;
+        if (o instanceof Long) {
+            value = (int) ((Long) o).longValue();
+        } else if (o instanceof Integer) {
+            value = (Integer) o;
+        } else if (o instanceof Number) {
+            value = ((Number) o).intValue();
+        } else {
+            return;
         }
+        this.buf.setByte((int) l, value);
     }
 }
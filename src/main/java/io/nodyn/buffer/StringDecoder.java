@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.buffer;
+
+import io.netty.buffer.ByteBuf;
+import org.dynjs.runtime.JSObject;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming decoder behind <code>string_decoder</code> for multi-byte encodings.
+ *
+ * <p>A character split across chunks is held back as at most a few pending
+ * bytes and completed by the next {@link #write(JSObject)}. The
+ * {@link CharsetDecoder} and its output {@link CharBuffer} are reused for
+ * the life of the decoder; malformed input decodes to U+FFFD.</p>
+ */
+public class StringDecoder {
+
+    private static final int MAX_PENDING = 8;
+
+    private final CharsetDecoder decoder;
+    private final byte[] pending = new byte[MAX_PENDING];
+    private int pendingLen;
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    public StringDecoder(String encoding) {
+        this(charsetFor(encoding));
+    }
+
+    public StringDecoder(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public static boolean supports(String encoding) {
+        return charsetFor(encoding) != null;
+    }
+
+    private static Charset charsetFor(String encoding) {
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        switch (encoding.toLowerCase()) {
+            case "utf8":
+            case "utf-8":
+                return StandardCharsets.UTF_8;
+            case "ucs2":
+            case "ucs-2":
+            case "utf16le":
+            case "utf-16le":
+                return StandardCharsets.UTF_16LE;
+            default:
+                return null;
+        }
+    }
+
+    public String write(JSObject buffer) {
+        return write(Buffer.extract(buffer), 0, Buffer.bufLen(buffer));
+    }
+
+    public String write(ByteBuf buf, int start, int end) {
+        CharBuffer out = prepare(this.pendingLen + (end - start));
+
+        if (this.pendingLen > 0) {
+            start = completePending(buf, start, end, out);
+            if (start < 0) {
+                return drain(out);
+            }
+        }
+
+        if (start < end) {
+            ByteBuffer in = buf.nioBuffer(start, end - start);
+            this.decoder.decode(in, out, false);
+            int left = in.remaining();
+            if (left > 0) {
+                in.get(this.pending, 0, left);
+                this.pendingLen = left;
+            }
+        }
+        return drain(out);
+    }
+
+    /**
+     * Flush whatever partial character is pending, as replacement characters.
+     */
+    public String end() {
+        CharBuffer out = prepare(this.pendingLen + 1);
+        ByteBuffer in = ByteBuffer.wrap(this.pending, 0, this.pendingLen);
+        this.decoder.decode(in, out, true);
+        this.decoder.flush(out);
+        this.decoder.reset();
+        this.pendingLen = 0;
+        return drain(out);
+    }
+
+    /**
+     * Top up the pending bytes with the head of the new chunk and decode them.
+     *
+     * @return where decoding of the chunk should continue, or <code>-1</code>
+     *         if the chunk was too short to complete the pending character
+     */
+    private int completePending(ByteBuf buf, int start, int end, CharBuffer out) {
+        int pendingLen = this.pendingLen;
+        int take = Math.min(end - start, MAX_PENDING - pendingLen);
+        buf.getBytes(start, this.pending, pendingLen, take);
+
+        ByteBuffer in = ByteBuffer.wrap(this.pending, 0, pendingLen + take);
+        this.decoder.decode(in, out, false);
+        int consumed = in.position();
+
+        if (consumed < pendingLen) {
+            // still incomplete: everything taken stays pending
+            if (consumed > 0) {
+                System.arraycopy(this.pending, consumed, this.pending, 0, pendingLen + take - consumed);
+            }
+            this.pendingLen = pendingLen + take - consumed;
+            return -1;
+        }
+
+        this.pendingLen = 0;
+        return start + (consumed - pendingLen);
+    }
+
+    private CharBuffer prepare(int maxBytes) {
+        // every supported charset yields at most one char per byte, plus a replacement
+        int needed = maxBytes + 1;
+        if (this.chars.capacity() < needed) {
+            this.chars = CharBuffer.allocate(Math.max(needed, this.chars.capacity() * 2));
+        }
+        this.chars.clear();
+        return this.chars;
+    }
+
+    private String drain(CharBuffer out) {
+        if (out.position() == 0) {
+            return "";
+        }
+        return new String(out.array(), 0, out.position());
+    }
+}
@@ -2,33 +2,142 @@ package io.nodyn.crypto;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import org.bouncycastle.crypto.BlockCipher;
 import org.bouncycastle.crypto.BufferedBlockCipher;
 import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.InvalidCipherTextException;
-import org.bouncycastle.crypto.engines.DESEngine;
-import org.bouncycastle.crypto.modes.CBCBlockCipher;
-import org.bouncycastle.crypto.paddings.PKCS7Padding;
-import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
 
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Constructor;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * A node <code>Cipher</code>/<code>Decipher</code> handle, backed either by
+ * a JCA <code>javax.crypto.Cipher</code> or by a BouncyCastle lightweight
+ * cipher.
+ *
+ * <p>The JCA is preferred for the algorithms the JVM accelerates with
+ * AES-NI, CLMUL and friends (AES in CBC, ECB, CTR and GCM, and ChaCha20),
+ * see {@link #create(boolean, String, ByteBuf, ByteBuf)}. BouncyCastle
+ * remains for everything else, and for JVMs whose providers lack the
+ * transformation or, under a limited crypto policy, the key size. Setting
+ * the system property <code>nodyn.crypto.jca</code> to false uses
+ * BouncyCastle throughout.</p>
+ *
  * @author Bob McWhirter
  */
 public class Cipher {
 
+    private static final boolean JCA = Boolean.parseBoolean(System.getProperty("nodyn.crypto.jca", "true"));
+
+    private static final int GCM_TAG_LENGTH = 16;
+
+    private static final ConcurrentMap<String, Boolean> SUPPORTED = new ConcurrentHashMap<>();
+
     private BufferedBlockCipher cipher;
+    private javax.crypto.Cipher jca;
+    private boolean aead;
+    private boolean encipher;
+    private byte[] authTag;
     private ByteBuf outBuf;
 
+    /**
+     * Whether the JCA providers offer a transformation, such as
+     * <code>AES/CBC/PKCS5Padding</code>.
+     */
+    public static boolean isSupported(String transformation) {
+        if (!JCA) {
+            return false;
+        }
+        Boolean supported = SUPPORTED.get(transformation);
+        if (supported == null) {
+            try {
+                javax.crypto.Cipher.getInstance(transformation);
+                supported = true;
+            } catch (GeneralSecurityException e) {
+                supported = false;
+            }
+            SUPPORTED.put(transformation, supported);
+        }
+        return supported;
+    }
+
+    /**
+     * A JCA-backed cipher, or <code>null</code> if the providers cannot do
+     * the transformation with this key, so the caller falls back to
+     * BouncyCastle. The key and iv buffers are not consumed.
+     */
+    public static Cipher create(boolean encipher, String transformation, ByteBuf key, ByteBuf iv) {
+        if (!isSupported(transformation)) {
+            return null;
+        }
+        try {
+            return new Cipher(encipher, transformation, key, iv);
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
     public Cipher(boolean encipher, BufferedBlockCipher cipher, ByteBuf key, ByteBuf iv) throws InvalidKeyException {
         this.cipher = cipher;
         this.outBuf = Unpooled.buffer();
         initialize(encipher, key, iv);
     }
 
+    private Cipher(boolean encipher, String transformation, ByteBuf key, ByteBuf iv) throws GeneralSecurityException {
+        String algorithm = transformation.split("/")[0];
+        byte[] keyBytes = bytes(key);
+        byte[] ivBytes = bytes(iv);
+
+        AlgorithmParameterSpec params = null;
+        if (transformation.contains("/GCM/")) {
+            this.aead = true;
+            params = new GCMParameterSpec(GCM_TAG_LENGTH * 8, ivBytes);
+        } else if (algorithm.equals("ChaCha20")) {
+            params = chaCha20Parameters(ivBytes);
+        } else if (ivBytes.length > 0) {
+            params = new IvParameterSpec(ivBytes);
+        }
+
+        this.jca = javax.crypto.Cipher.getInstance(transformation);
+        this.jca.init(encipher ? javax.crypto.Cipher.ENCRYPT_MODE : javax.crypto.Cipher.DECRYPT_MODE,
+                new SecretKeySpec(keyBytes, algorithm), params);
+        this.encipher = encipher;
+        this.outBuf = Unpooled.buffer();
+    }
+
+    private static byte[] bytes(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+
+    // OpenSSL's chacha20 iv is a 32-bit little-endian block counter followed
+    // by the 96-bit nonce. ChaCha20ParameterSpec is Java 11, so reflected.
+    private static AlgorithmParameterSpec chaCha20Parameters(byte[] iv) throws GeneralSecurityException {
+        if (iv.length != 16) {
+            throw new InvalidKeyException("Invalid IV length");
+        }
+        int counter = (iv[0] & 0xff) | (iv[1] & 0xff) << 8 | (iv[2] & 0xff) << 16 | (iv[3] & 0xff) << 24;
+        byte[] nonce = new byte[12];
+        System.arraycopy(iv, 4, nonce, 0, nonce.length);
+        try {
+            Constructor<?> constructor = Class.forName("javax.crypto.spec.ChaCha20ParameterSpec")
+                    .getConstructor(byte[].class, int.class);
+            return (AlgorithmParameterSpec) constructor.newInstance(nonce, counter);
+        } catch (ReflectiveOperationException e) {
+            throw new NoSuchAlgorithmException("ChaCha20");
+        }
+    }
+
     private void initialize(boolean encipher, ByteBuf key, ByteBuf iv) throws InvalidKeyException {
         CipherParameters params = null;
 
@@ -46,19 +155,77 @@ public class Cipher {
         this.cipher.init(encipher, params);
     }
 
+    public boolean isJca() {
+        return this.jca != null;
+    }
+
     public void update(ByteBuf buf) {
-        byte[] outBytes = new byte[this.cipher.getUpdateOutputSize(buf.readableBytes())];
         byte[] inBytes = new byte[buf.readableBytes()];
         buf.readBytes(inBytes);
+        if (this.jca != null) {
+            byte[] outBytes = this.jca.update(inBytes);
+            if (outBytes != null) {
+                this.outBuf.writeBytes(outBytes);
+            }
+            return;
+        }
+        byte[] outBytes = new byte[this.cipher.getUpdateOutputSize(inBytes.length)];
         int len = this.cipher.processBytes(inBytes, 0, inBytes.length, outBytes, 0);
         this.outBuf.writeBytes(outBytes, 0, len);
     }
 
-    public ByteBuf doFinal() throws InvalidCipherTextException {
+    public ByteBuf doFinal() throws InvalidCipherTextException, GeneralSecurityException {
+        if (this.jca != null) {
+            doFinalJca();
+            return this.outBuf;
+        }
         byte[] outBytes = new byte[this.cipher.getOutputSize(0)];
         int len = this.cipher.doFinal(outBytes, 0);
         this.outBuf.writeBytes(outBytes, 0, len);
         return this.outBuf;
     }
 
+    private void doFinalJca() throws GeneralSecurityException {
+        if (!this.aead) {
+            this.outBuf.writeBytes(this.jca.doFinal());
+        } else if (this.encipher) {
+            // the JCA appends the tag; node hands it out through getAuthTag()
+            byte[] outBytes = this.jca.doFinal();
+            int len = outBytes.length - GCM_TAG_LENGTH;
+            this.outBuf.writeBytes(outBytes, 0, len);
+            this.authTag = new byte[GCM_TAG_LENGTH];
+            System.arraycopy(outBytes, len, this.authTag, 0, GCM_TAG_LENGTH);
+        } else {
+            if (this.authTag == null) {
+                throw new GeneralSecurityException("Unsupported state or unable to authenticate data");
+            }
+            // and expects it last when deciphering
+            this.outBuf.writeBytes(this.jca.doFinal(this.authTag));
+        }
+    }
+
+    /**
+     * Additional authenticated data; GCM only, before any update.
+     */
+    public void setAAD(ByteBuf aad) throws GeneralSecurityException {
+        if (!this.aead) {
+            throw new GeneralSecurityException("Attempting to set AAD in unsupported state");
+        }
+        this.jca.updateAAD(bytes(aad));
+    }
+
+    public ByteBuf getAuthTag() throws GeneralSecurityException {
+        if (!this.aead || !this.encipher || this.authTag == null) {
+            throw new GeneralSecurityException("Attempting to get auth tag in unsupported state");
+        }
+        return Unpooled.wrappedBuffer(this.authTag.clone());
+    }
+
+    public void setAuthTag(ByteBuf tag) throws GeneralSecurityException {
+        if (!this.aead || this.encipher) {
+            throw new GeneralSecurityException("Attempting to set auth tag in unsupported state");
+        }
+        this.authTag = bytes(tag);
+    }
+
 }
@@ -32,6 +32,8 @@ import java.util.List;
  */
 public abstract class AbstractQueryWrap extends EventSource {
 
+    private static final int COMPLETE = eventId("complete");
+
     protected final NodeProcess process;
     protected final String name;
 
@@ -54,18 +56,32 @@ public abstract class AbstractQueryWrap extends EventSource {
     public abstract void start();
 
     protected DnsClient dnsClient() {
-        return this.process.getVertx().createDnsClient(getServerAddresses());
+        return DnsCache.getInstance().client(this.process.getVertx());
     }
 
-    protected InetSocketAddress[] getServerAddresses() {
-        String[] serverNames = ResolverConfig.getCurrentConfig().servers();
-        InetSocketAddress[] servers = new InetSocketAddress[serverNames.length];
+    protected <T> void query(DnsCache.Type type, Handler<AsyncResult<T>> handler) {
+        DnsCache.getInstance().resolve(this.process.getVertx(), type, this.name, handler);
+    }
 
-        for (int i = 0; i < serverNames.length; ++i) {
-            servers[i] = new InetSocketAddress(serverNames[i], port());
-        }
+    protected static InetSocketAddress[] getServerAddresses() {
+        return ResolverConfig.getCurrentConfig().serverAddresses();
+    }
 
-        return servers;
+    protected static HostsFile hosts() {
+        return ResolverConfig.getCurrentConfig().hosts();
+    }
+
+    /**
+     * Cached answers arrive on the calling thread and fresh ones on a Vert.x
+     * thread; either way the callback runs on the user thread, after start() returns.
+     */
+    protected void complete(final CallbackResult result) {
+        this.process.getEventLoop().submitUserTask(new Runnable() {
+            @Override
+            public void run() {
+                emit(COMPLETE, result);
+            }
+        }, "dns-complete");
     }
 
     protected <T> Handler<AsyncResult<List<T>>> listHandler() {
@@ -73,9 +89,9 @@ public abstract class AbstractQueryWrap extends EventSource {
             @Override
             public void handle(AsyncResult<List<T>> event) {
                 if (event.failed()) {
-                    emit("complete", CallbackResult.createError(event.cause()));
+                    complete(CallbackResult.createError(event.cause()));
                 } else {
-                    emit("complete", CallbackResult.createSuccess(event.result()));
+                    complete(CallbackResult.createSuccess(event.result()));
                 }
             }
         };
@@ -86,11 +102,11 @@ public abstract class AbstractQueryWrap extends EventSource {
             @Override
             public void handle(AsyncResult<T> event) {
                 if (event.failed()) {
-                    emit("complete", CallbackResult.createError(event.cause()));
+                    complete(CallbackResult.createError(event.cause()));
                 } else {
                     final T result = event.result();
                     final CallbackResult success = CallbackResult.createSuccess(result);
-                    emit("complete", success);
+                    complete(success);
                 }
             }
         };
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.dns;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.dns.DnsClient;
+import org.vertx.java.core.dns.DnsException;
+import org.vertx.java.core.dns.DnsResponseCode;
+import org.vertx.java.core.dns.MxRecord;
+import org.vertx.java.core.dns.SrvRecord;
+import org.vertx.java.core.impl.DefaultFutureResult;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache in front of a single, long-lived {@link DnsClient}.
+ *
+ * <p>Answers are kept for one configured TTL, and NXDOMAIN answers for a
+ * separate negative TTL. Vert.x's client does not surface the TTLs of the
+ * records it decodes, so those are not honoured. Identical lookups issued
+ * while a query is outstanding wait for that query instead of sending their
+ * own.</p>
+ *
+ * <p>Tuned with system properties, in seconds unless noted:
+ * <code>nodyn.dns.cache</code> (true/false), <code>nodyn.dns.ttl</code>,
+ * <code>nodyn.dns.ttl.negative</code> and <code>nodyn.dns.cache.size</code>
+ * (entries).</p>
+ */
+public class DnsCache {
+
+    public enum Type {
+        LOOKUP {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.lookup(name, Type.<InetAddress>adapt(handler));
+            }
+        },
+        LOOKUP4 {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.lookup4(name, Type.<Inet4Address>adapt(handler));
+            }
+        },
+        LOOKUP6 {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.lookup6(name, Type.<Inet6Address>adapt(handler));
+            }
+        },
+        A {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveA(name, Type.<List<Inet4Address>>adapt(handler));
+            }
+        },
+        AAAA {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveAAAA(name, Type.<List<Inet6Address>>adapt(handler));
+            }
+        },
+        CNAME {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveCNAME(name, Type.<List<String>>adapt(handler));
+            }
+        },
+        MX {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveMX(name, Type.<List<MxRecord>>adapt(handler));
+            }
+        },
+        NS {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveNS(name, Type.<List<String>>adapt(handler));
+            }
+        },
+        SRV {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveSRV(name, Type.<List<SrvRecord>>adapt(handler));
+            }
+        },
+        TXT {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.resolveTXT(name, Type.<List<String>>adapt(handler));
+            }
+        },
+        REVERSE {
+            void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler) {
+                client.reverseLookup(name, Type.<InetAddress>adapt(handler));
+            }
+        };
+
+        abstract void query(DnsClient client, String name, Handler<AsyncResult<Object>> handler);
+
+        /**
+         * Hands a typed client answer to the cache, which holds every kind as an Object.
+         */
+        static <T> Handler<AsyncResult<T>> adapt(final Handler<AsyncResult<Object>> handler) {
+            return new Handler<AsyncResult<T>>() {
+                @Override
+                public void handle(AsyncResult<T> event) {
+                    if (event.succeeded()) {
+                        handler.handle(new DefaultFutureResult<Object>(event.result()));
+                    } else {
+                        handler.handle(new DefaultFutureResult<Object>(event.cause()));
+                    }
+                }
+            };
+        }
+    }
+
+    private static final DnsCache INSTANCE = new DnsCache(
+            Boolean.parseBoolean(System.getProperty("nodyn.dns.cache", "true")),
+            seconds("nodyn.dns.ttl", 30),
+            seconds("nodyn.dns.ttl.negative", 5),
+            Integer.getInteger("nodyn.dns.cache.size", 4096));
+
+    public static DnsCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static long seconds(String property, long defaultValue) {
+        return TimeUnit.SECONDS.toNanos(Long.getLong(property, defaultValue));
+    }
+
+    private final boolean enabled;
+    private final long ttl;
+    private final long negativeTtl;
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries;
+    private final Map<String, List<Handler<AsyncResult<Object>>>> inFlight = new HashMap<>();
+
+    private Vertx clientVertx;
+    private InetSocketAddress[] clientServers;
+    private DnsClient client;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param ttl         nanoseconds to keep answers
+     * @param negativeTtl nanoseconds to keep NXDOMAIN answers
+     */
+    public DnsCache(boolean enabled, long ttl, long negativeTtl, final int maxEntries) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DnsCache.this.maxEntries;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> void resolve(Vertx vertx, Type type, String name, final Handler<AsyncResult<T>> handler) {
+        final Handler<AsyncResult<Object>> h = (Handler<AsyncResult<Object>>) (Handler<?>) handler;
+
+        if (!this.enabled) {
+            this.misses.incrementAndGet();
+            type.query(client(vertx), name, h);
+            return;
+        }
+
+        final String key = type.name() + ' ' + name.toLowerCase();
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+            if (entry != null && entry.expired(System.nanoTime())) {
+                this.entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                List<Handler<AsyncResult<Object>>> waiting = this.inFlight.get(key);
+                if (waiting != null) {
+                    this.coalesced.incrementAndGet();
+                    waiting.add(h);
+                    return;
+                }
+                waiting = new ArrayList<>(2);
+                waiting.add(h);
+                this.inFlight.put(key, waiting);
+            }
+        }
+
+        if (entry != null) {
+            if (entry.error != null) {
+                this.negativeHits.incrementAndGet();
+            } else {
+                this.hits.incrementAndGet();
+            }
+            h.handle(entry.asResult());
+            return;
+        }
+
+        this.misses.incrementAndGet();
+        try {
+            type.query(client(vertx), name, new Handler<AsyncResult<Object>>() {
+                @Override
+                public void handle(AsyncResult<Object> event) {
+                    complete(key, event);
+                }
+            });
+        } catch (RuntimeException e) {
+            // e.g. a malformed name; don't leave the waiters queued forever
+            complete(key, new DefaultFutureResult<>(e));
+        }
+    }
+
+    private void complete(String key, AsyncResult<Object> result) {
+        List<Handler<AsyncResult<Object>>> waiting;
+        synchronized (this) {
+            waiting = this.inFlight.remove(key);
+            long now = System.nanoTime();
+            if (result.succeeded()) {
+                if (this.ttl > 0) {
+                    this.entries.put(key, new Entry(result.result(), null, now + this.ttl));
+                }
+            } else if (isNameError(result.cause()) && this.negativeTtl > 0) {
+                this.entries.put(key, new Entry(null, result.cause(), now + this.negativeTtl));
+            }
+        }
+        if (waiting == null) {
+            return;
+        }
+        for (Handler<AsyncResult<Object>> each : waiting) {
+            each.handle(result);
+        }
+    }
+
+    private static boolean isNameError(Throwable t) {
+        return t instanceof DnsException && ((DnsException) t).code() == DnsResponseCode.NXDOMAIN;
+    }
+
+    /**
+     * The shared client, rebuilt only when the resolver snapshot or Vert.x instance change.
+     */
+    public synchronized DnsClient client(Vertx vertx) {
+        InetSocketAddress[] servers = AbstractQueryWrap.getServerAddresses();
+        if (this.client == null || this.clientVertx != vertx || servers != this.clientServers) {
+            this.client = vertx.createDnsClient(servers);
+            this.clientVertx = vertx;
+            this.clientServers = servers;
+        }
+        return this.client;
+    }
+
+    /**
+     * Drop every cached answer, e.g. when the resolver configuration changes.
+     */
+    public synchronized void invalidate() {
+        this.entries.clear();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getNegativeHits() {
+        return this.negativeHits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getCoalesced() {
+        return this.coalesced.get();
+    }
+
+    private static class Entry {
+        private final Object result;
+        private final Throwable error;
+        private final long expires;
+
+        Entry(Object result, Throwable error, long expires) {
+            this.result = result;
+            this.error = error;
+            this.expires = expires;
+        }
+
+        boolean expired(long now) {
+            return now - this.expires >= 0;
+        }
+
+        AsyncResult<Object> asResult() {
+            if (this.error != null) {
+                return new DefaultFutureResult<>(this.error);
+            }
+            return new DefaultFutureResult<>(this.result);
+        }
+    }
+}
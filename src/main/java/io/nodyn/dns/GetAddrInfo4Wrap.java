@@ -35,7 +35,10 @@ public class GetAddrInfo4Wrap extends AbstractQueryWrap {
 
     @Override
     public void start() {
-        if (this.name.equals("localhost")) {
+        InetAddress listed = hosts().lookup4(this.name);
+        if (listed != null) {
+            complete(CallbackResult.createSuccess(listed));
+        } else if (this.name.equals("localhost")) {
             process.getEventLoop().getEventLoopGroup().submit(new Runnable() {
                 @Override
                 public void run() {
@@ -44,21 +47,21 @@ public class GetAddrInfo4Wrap extends AbstractQueryWrap {
                         InetAddress[] addrs = InetAddress.getAllByName(name);
                         for ( int i = 0 ; i < addrs.length ; ++i ) {
                             if ( addrs[i] instanceof Inet4Address ) {
-                                emit("complete", CallbackResult.createSuccess(addrs[i]));
+                                complete(CallbackResult.createSuccess(addrs[i]));
                                 found = true;
                                 break;
                             }
                         }
                         if ( ! found ) {
-                            emit("complete", CallbackResult.createError(new UnknownHostException()));
+                            complete(CallbackResult.createError(new UnknownHostException()));
                         }
                     } catch (UnknownHostException e) {
-                        emit("complete", CallbackResult.createError(e));
+                        complete(CallbackResult.createError(e));
                     }
                 }
             });
         } else {
-            dnsClient().lookup4(this.name, this.<Inet4Address>handler());
+            query(DnsCache.Type.LOOKUP4, this.<Inet4Address>handler());
         }
     }
 
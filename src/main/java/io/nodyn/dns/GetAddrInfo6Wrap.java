@@ -36,7 +36,10 @@ public class GetAddrInfo6Wrap extends AbstractQueryWrap {
 
     @Override
     public void start() {
-        if (this.name.equals("localhost")) {
+        InetAddress listed = hosts().lookup6(this.name);
+        if (listed != null) {
+            complete(CallbackResult.createSuccess(listed));
+        } else if (this.name.equals("localhost")) {
             process.getEventLoop().getEventLoopGroup().submit(new Runnable() {
                 @Override
                 public void run() {
@@ -46,21 +49,21 @@ public class GetAddrInfo6Wrap extends AbstractQueryWrap {
                         for ( int i = 0 ; i < addrs.length ; ++i ) {
                             if ( addrs[i] instanceof Inet6Address) {
                                 final CallbackResult success = CallbackResult.createSuccess(addrs[i]);
-                                emit("complete", success);
+                                complete(success);
                                 found = true;
                                 break;
                             }
                         }
                         if ( ! found ) {
-                            emit("complete", CallbackResult.createError(new UnknownHostException()));
+                            complete(CallbackResult.createError(new UnknownHostException()));
                         }
                     } catch (UnknownHostException e) {
-                        emit("complete", CallbackResult.createError(e));
+                        complete(CallbackResult.createError(e));
                     }
                 }
             });
         } else {
-            dnsClient().lookup6(this.name, this.<Inet6Address>handler());
+            query(DnsCache.Type.LOOKUP6, this.<Inet6Address>handler());
         }
     }
 }
@@ -35,7 +35,10 @@ public class GetAddrInfoWrap extends AbstractQueryWrap {
 
     @Override
     public void start() {
-        if (this.name.equals("localhost")) {
+        InetAddress listed = hosts().lookup(this.name);
+        if (listed != null) {
+            complete(CallbackResult.createSuccess(listed));
+        } else if (this.name.equals("localhost")) {
             process.getEventLoop().getEventLoopGroup().submit(new Runnable() {
                 @Override
                 public void run() {
@@ -43,20 +46,20 @@ public class GetAddrInfoWrap extends AbstractQueryWrap {
                         boolean found = false;
                         InetAddress[] addrs = InetAddress.getAllByName(name);
                         for ( int i = 0 ; i < addrs.length ; ++i ) {
-                            emit("complete", CallbackResult.createSuccess(addrs[i]));
+                            complete(CallbackResult.createSuccess(addrs[i]));
                             found = true;
                             break;
                         }
                         if ( ! found ) {
-                            emit("complete", CallbackResult.createError(new UnknownHostException()));
+                            complete(CallbackResult.createError(new UnknownHostException()));
                         }
                     } catch (UnknownHostException e) {
-                        emit("complete", CallbackResult.createError(e));
+                        complete(CallbackResult.createError(e));
                     }
                 }
             });
         } else {
-            dnsClient().lookup(this.name, this.<InetAddress>handler());
+            query(DnsCache.Type.LOOKUP, this.<InetAddress>handler());
         }
     }
 
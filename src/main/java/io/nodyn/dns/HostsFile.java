@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.dns;
+
+import io.netty.util.NetUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Immutable view of a hosts file, mapping lower-cased names to the addresses
+ * listed for them, in file order.
+ */
+public class HostsFile {
+
+    public static final HostsFile EMPTY = new HostsFile(Collections.<String, InetAddress[]>emptyMap());
+
+    private final Map<String, InetAddress[]> entries;
+
+    HostsFile(Map<String, InetAddress[]> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * The platform hosts file, overridable with the <code>nodyn.hosts</code> property.
+     */
+    public static File systemFile() {
+        String path = System.getProperty("nodyn.hosts");
+        if (path != null) {
+            return new File(path);
+        }
+        if (System.getProperty("os.name", "").contains("Windows")) {
+            String root = System.getenv("SystemRoot");
+            return new File(root == null ? "C:\\Windows" : root, "System32\\drivers\\etc\\hosts");
+        }
+        return new File("/etc/hosts");
+    }
+
+    public static HostsFile load(File file) {
+        if (!file.isFile()) {
+            return EMPTY;
+        }
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return parse(in);
+        } catch (IOException e) {
+            return EMPTY;
+        }
+    }
+
+    public static HostsFile parse(Reader in) throws IOException {
+        Map<String, List<InetAddress>> parsed = new HashMap<>();
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int hash = line.indexOf('#');
+            if (hash >= 0) {
+                line = line.substring(0, hash);
+            }
+            StringTokenizer st = new StringTokenizer(line);
+            if (!st.hasMoreTokens()) {
+                continue;
+            }
+            String ip = st.nextToken();
+            byte[] bytes = NetUtil.createByteArrayFromIpAddressString(ip);
+            if (bytes == null) {
+                continue;
+            }
+            while (st.hasMoreTokens()) {
+                String name = st.nextToken();
+                InetAddress address;
+                try {
+                    address = InetAddress.getByAddress(name, bytes);
+                } catch (UnknownHostException e) {
+                    continue;
+                }
+                String key = name.toLowerCase(Locale.ENGLISH);
+                List<InetAddress> addresses = parsed.get(key);
+                if (addresses == null) {
+                    addresses = new ArrayList<>(2);
+                    parsed.put(key, addresses);
+                }
+                addresses.add(address);
+            }
+        }
+
+        if (parsed.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, InetAddress[]> entries = new HashMap<>(parsed.size() * 2);
+        for (Map.Entry<String, List<InetAddress>> each : parsed.entrySet()) {
+            entries.put(each.getKey(), each.getValue().toArray(new InetAddress[each.getValue().size()]));
+        }
+        return new HostsFile(entries);
+    }
+
+    /**
+     * @return the addresses for <code>name</code>, or <code>null</code> if it is not listed.
+     */
+    public InetAddress[] lookupAll(String name) {
+        return this.entries.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    public InetAddress lookup(String name) {
+        InetAddress[] addresses = lookupAll(name);
+        return addresses == null ? null : addresses[0];
+    }
+
+    public InetAddress lookup4(String name) {
+        return first(lookupAll(name), Inet4Address.class);
+    }
+
+    public InetAddress lookup6(String name) {
+        return first(lookupAll(name), Inet6Address.class);
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    private static InetAddress first(InetAddress[] addresses, Class<? extends InetAddress> type) {
+        if (addresses == null) {
+            return null;
+        }
+        for (InetAddress address : addresses) {
+            if (type.isInstance(address)) {
+                return address;
+            }
+        }
+        return null;
+    }
+}
@@ -28,6 +28,6 @@ public class QueryCnameWrap extends AbstractQueryWrap {
     }
 
     public void start() {
-        dnsClient().resolveCNAME( this.name, this.<String>listHandler());
+        query(DnsCache.Type.CNAME, this.<String>listHandler());
     }
 }
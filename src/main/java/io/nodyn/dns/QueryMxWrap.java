@@ -29,6 +29,6 @@ public class QueryMxWrap extends AbstractQueryWrap {
     }
 
     public void start() {
-        dnsClient().resolveMX(this.name, this.<MxRecord>listHandler());
+        query(DnsCache.Type.MX, this.<MxRecord>listHandler());
     }
 }
@@ -28,6 +28,6 @@ public class QueryNsWrap extends AbstractQueryWrap {
     }
 
     public void start() {
-        dnsClient().resolveNS( this.name, this.<String>listHandler());
+        query(DnsCache.Type.NS, this.<String>listHandler());
     }
 }
@@ -29,6 +29,6 @@ public class QuerySrvWrap extends AbstractQueryWrap {
     }
 
     public void start() {
-        dnsClient().resolveSRV(name, this.<SrvRecord>listHandler());
+        query(DnsCache.Type.SRV, this.<SrvRecord>listHandler());
     }
 }
@@ -28,6 +28,6 @@ public class QueryTxtWrap extends AbstractQueryWrap {
     }
 
     public void start() {
-        dnsClient().resolveTXT( name, this.<String>listHandler());
+        query(DnsCache.Type.TXT, this.<String>listHandler());
     }
 }
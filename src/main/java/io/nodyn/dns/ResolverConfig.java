@@ -4,7 +4,9 @@ package io.nodyn.dns;
 
 import java.io.*;
 import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class that tries to locate name servers and the search path to
@@ -25,6 +27,12 @@ import java.util.*;
  * These routines will be called internally when creating Resolvers/Lookups
  * without explicitly specifying server names, and can also be called
  * directly if desired.
+ * <p/>
+ * Each instance is an immutable snapshot that also carries the resolved
+ * server addresses and the parsed hosts file. The current snapshot is read
+ * without locking; at most every <code>nodyn.dns.recheck</code> milliseconds
+ * a reader compares the modification times of resolv.conf and the hosts
+ * file, and installs a fresh snapshot if either changed.
  *
  * @author Brian Wellington
  * @author <a href="mailto:yannick@meudal.net">Yannick Meudal</a>
@@ -33,16 +41,44 @@ import java.util.*;
 
 public class ResolverConfig {
 
+    private static final String RESOLV_CONF = "/etc/resolv.conf";
+
+    private static final long RECHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(Long.getLong("nodyn.dns.recheck", 2000));
+
     private String[] servers = null;
     private int ndots = -1;
 
-    private static ResolverConfig currentConfig;
+    private final InetSocketAddress[] serverAddresses;
+    private final HostsFile hosts;
+    private final long resolvConfModified;
+    private final long hostsModified;
+    private volatile long checked;
+
+    private static volatile ResolverConfig currentConfig;
 
     static {
         refresh();
     }
 
     public ResolverConfig() {
+        this.resolvConfModified = new File(RESOLV_CONF).lastModified();
+        File hostsFile = HostsFile.systemFile();
+        this.hostsModified = hostsFile.lastModified();
+        this.hosts = HostsFile.load(hostsFile);
+        this.checked = System.nanoTime();
+
+        findServers();
+        if (this.servers == null) {
+            this.servers = new String[]{"localhost"};
+        }
+        int port = AbstractQueryWrap.port();
+        this.serverAddresses = new InetSocketAddress[this.servers.length];
+        for (int i = 0; i < this.servers.length; ++i) {
+            this.serverAddresses[i] = new InetSocketAddress(this.servers[i], port);
+        }
+    }
+
+    private void findServers() {
         if (findProperty()) {
             return;
         }
@@ -214,7 +250,7 @@ public class ResolverConfig {
 
     private void
     findUnix() {
-        findResolvConf("/etc/resolv.conf");
+        findResolvConf(RESOLV_CONF);
     }
 
     private void
@@ -387,6 +423,21 @@ public class ResolverConfig {
         return servers;
     }
 
+    /**
+     * Returns the located servers, resolved against the configured DNS port.
+     * The array is shared by every caller and must not be modified.
+     */
+    public InetSocketAddress[] serverAddresses() {
+        return serverAddresses;
+    }
+
+    /**
+     * Returns the hosts file parsed when this snapshot was taken
+     */
+    public HostsFile hosts() {
+        return hosts;
+    }
+
     /**
      * Returns the first located server
      */
@@ -410,21 +461,33 @@ public class ResolverConfig {
         return ndots;
     }
 
+    private boolean isStale() {
+        return new File(RESOLV_CONF).lastModified() != this.resolvConfModified
+                || HostsFile.systemFile().lastModified() != this.hostsModified;
+    }
+
     /**
      * Gets the current configuration
      */
-    public static synchronized ResolverConfig getCurrentConfig() {
-        return currentConfig;
+    public static ResolverConfig getCurrentConfig() {
+        ResolverConfig config = currentConfig;
+        long now = System.nanoTime();
+        if (now - config.checked >= RECHECK_INTERVAL) {
+            config.checked = now;
+            if (config.isStale()) {
+                refresh();
+                config = currentConfig;
+            }
+        }
+        return config;
     }
 
     /**
-     * Gets the current configuration
+     * Replaces the current configuration with a freshly located one
      */
     public static void refresh() {
-        ResolverConfig newConfig = new ResolverConfig();
-        synchronized (ResolverConfig.class) {
-            currentConfig = newConfig;
-        }
+        currentConfig = new ResolverConfig();
+        DnsCache.getInstance().invalidate();
     }
 
 }
\ No newline at end of file
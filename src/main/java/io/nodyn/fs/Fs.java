@@ -17,13 +17,61 @@
 package io.nodyn.fs;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.nodyn.CallbackResult;
+import jnr.constants.platform.Errno;
+import jnr.constants.platform.OpenFlags;
+import jnr.posix.FileStat;
 import jnr.posix.POSIX;
 import jnr.posix.POSIXFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * @author Lance Ball
  */
 public class Fs {
+
+    /**
+     * Length of a compact stat array, which holds the arguments of the
+     * <code>Stats</code> constructor in order: dev, mode, nlink, uid, gid,
+     * rdev, blksize, ino, size, blocks, atime, mtime, ctime, birthtime.
+     */
+    public static final int STAT_LENGTH = 14;
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final Map<String, Errno> ERRNO_BY_DESCRIPTION = new HashMap<>();
+
+    static {
+        for (Errno each : Errno.values()) {
+            if (!ERRNO_BY_DESCRIPTION.containsKey(each.description())) {
+                ERRNO_BY_DESCRIPTION.put(each.description(), each);
+            }
+        }
+    }
+
     public static int read(POSIX posix, int fd, ByteBuf buf, int offset, int length) {
         byte[] input = new byte[length];
         int read = posix.read(fd, input, length);
@@ -43,4 +91,232 @@ public class Fs {
         }
         return read;
     }
+
+    /**
+     * A failure after the file was opened, naming the step that failed.
+     */
+    public static final class StepException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final String syscall;
+
+        StepException(String syscall, IOException cause) {
+            super(cause.getMessage(), cause);
+            this.syscall = syscall;
+        }
+
+        public String getSyscall() {
+            return this.syscall;
+        }
+    }
+
+    /**
+     * Read a whole file with one channel into one buffer sized from the
+     * channel, all in the calling thread. The buffer is handed to JavaScript,
+     * which never releases it, so it is not pooled.
+     *
+     * @return the contents, or the <code>IOException</code> as an error; a
+     *         {@link StepException} if it failed after opening
+     */
+    public static CallbackResult readFile(String path) {
+        FileChannel opened;
+        try {
+            opened = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return CallbackResult.createError(e);
+        }
+        try (FileChannel channel = opened) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new FileSystemException(path, null, Errno.EFBIG.description());
+            }
+            ByteBuf buf = Unpooled.buffer(size > 0 ? (int) size : CHUNK_SIZE);
+            if (size > 0) {
+                // like node, trust the size unless the file turns out shorter
+                while (buf.isWritable() && buf.writeBytes(channel, buf.writableBytes()) >= 0) {
+                    // keep reading
+                }
+            } else {
+                // procfs and friends report 0; read until EOF
+                while (buf.writeBytes(channel, CHUNK_SIZE) >= 0) {
+                    // keep reading
+                }
+            }
+            return CallbackResult.createSuccess(buf);
+        } catch (IOException e) {
+            return CallbackResult.createError(new StepException("read", e));
+        }
+    }
+
+    /**
+     * Open, write all of <code>data</code> and close, in the calling thread.
+     *
+     * @param flags <code>open(2)</code> flags
+     * @param mode  permissions for a newly created file, subject to the umask
+     * @return the number of bytes written, or the <code>IOException</code> as
+     *         an error; a {@link StepException} if it failed after opening
+     */
+    public static CallbackResult writeFile(String path, ByteBuf data, int flags, int mode) {
+        Set<OpenOption> options = openOptions(flags);
+        FileAttribute<?>[] attributes = new FileAttribute<?>[0];
+        if (options.contains(StandardOpenOption.CREATE) || options.contains(StandardOpenOption.CREATE_NEW)) {
+            attributes = new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(permissions(mode))};
+        }
+        FileChannel opened;
+        try {
+            opened = open(path, options, attributes);
+        } catch (IOException e) {
+            return CallbackResult.createError(e);
+        } catch (IllegalArgumentException e) {
+            // a flag combination NIO cannot express, such as O_APPEND|O_TRUNC
+            return CallbackResult.createError(new FileSystemException(path, null, Errno.EINVAL.description()));
+        }
+        try (FileChannel channel = opened) {
+            ByteBuffer nio = data.nioBuffer();
+            int length = nio.remaining();
+            while (nio.hasRemaining()) {
+                channel.write(nio);
+            }
+            return CallbackResult.createSuccess(length);
+        } catch (IOException e) {
+            return CallbackResult.createError(new StepException("write", e));
+        }
+    }
+
+    /**
+     * The system call node would name for a failed NIO file operation.
+     *
+     * @param syscall the call to name unless the error says otherwise
+     */
+    public static String syscall(Throwable error, String syscall) {
+        return error instanceof StepException ? ((StepException) error).getSyscall() : syscall;
+    }
+
+    /**
+     * The errno node would report for a failed NIO file operation.
+     */
+    public static Errno errno(Throwable error) {
+        if (error instanceof StepException) {
+            error = error.getCause();
+        }
+        if (error instanceof NoSuchFileException) {
+            return Errno.ENOENT;
+        }
+        if (error instanceof AccessDeniedException) {
+            return Errno.EACCES;
+        }
+        if (error instanceof FileAlreadyExistsException) {
+            return Errno.EEXIST;
+        }
+        if (error instanceof NotDirectoryException) {
+            return Errno.ENOTDIR;
+        }
+        if (error instanceof DirectoryNotEmptyException) {
+            return Errno.ENOTEMPTY;
+        }
+        if (error instanceof FileSystemLoopException) {
+            return Errno.ELOOP;
+        }
+        // otherwise the reason is the strerror() text, such as "Is a directory"
+        String reason = error instanceof FileSystemException ? ((FileSystemException) error).getReason() : error.getMessage();
+        Errno errno = reason == null ? null : ERRNO_BY_DESCRIPTION.get(reason);
+        return errno != null ? errno : Errno.EIO;
+    }
+
+    private static FileChannel open(String path, Set<OpenOption> options, FileAttribute<?>[] attributes) throws IOException {
+        try {
+            return FileChannel.open(Paths.get(path), options, attributes);
+        } catch (UnsupportedOperationException e) {
+            // no POSIX permissions on this file system
+            return FileChannel.open(Paths.get(path), options);
+        }
+    }
+
+    private static Set<OpenOption> openOptions(int flags) {
+        Set<OpenOption> options = new HashSet<>();
+        int access = flags & OpenFlags.O_ACCMODE.intValue();
+        if (access == OpenFlags.O_WRONLY.intValue() || access == OpenFlags.O_RDWR.intValue()) {
+            options.add(StandardOpenOption.WRITE);
+        }
+        if ((flags & OpenFlags.O_APPEND.intValue()) != 0) {
+            // NIO refuses READ with APPEND, and these channels only ever write
+            options.add(StandardOpenOption.APPEND);
+        } else if (access != OpenFlags.O_WRONLY.intValue()) {
+            options.add(StandardOpenOption.READ);
+        }
+        if ((flags & OpenFlags.O_CREAT.intValue()) != 0) {
+            boolean exclusive = (flags & OpenFlags.O_EXCL.intValue()) != 0;
+            options.add(exclusive ? StandardOpenOption.CREATE_NEW : StandardOpenOption.CREATE);
+        }
+        if ((flags & OpenFlags.O_TRUNC.intValue()) != 0) {
+            options.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        if ((flags & OpenFlags.O_SYNC.intValue()) != 0) {
+            options.add(StandardOpenOption.SYNC);
+        }
+        return options;
+    }
+
+    private static Set<PosixFilePermission> permissions(int mode) {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        PosixFilePermission[] bits = PosixFilePermission.values();
+        // OWNER_READ is 0400 down to OTHERS_EXECUTE at 01
+        for (int i = 0; i < bits.length; ++i) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(bits[i]);
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * @return a compact stat array, or <code>null</code> with errno set
+     */
+    public static double[] stat(POSIX posix, String path) {
+        FileStat stat = posix.allocateStat();
+        return posix.stat(path, stat) < 0 ? null : compact(stat);
+    }
+
+    /**
+     * @return a compact stat array, or <code>null</code> with errno set
+     */
+    public static double[] lstat(POSIX posix, String path) {
+        FileStat stat = posix.allocateStat();
+        return posix.lstat(path, stat) < 0 ? null : compact(stat);
+    }
+
+    /**
+     * @return a compact stat array, or <code>null</code> with errno set
+     */
+    public static double[] fstat(POSIX posix, int fd) {
+        FileStat stat = posix.allocateStat();
+        return posix.fstat(fd, stat) < 0 ? null : compact(stat);
+    }
+
+    /**
+     * Whether anything exists at the path, without building a stat at all.
+     */
+    public static boolean exists(String path) {
+        return new File(path).exists();
+    }
+
+    private static double[] compact(FileStat stat) {
+        double[] values = new double[STAT_LENGTH];
+        values[0] = stat.dev();
+        values[1] = stat.mode();
+        values[2] = stat.nlink();
+        values[3] = stat.uid();
+        values[4] = stat.gid();
+        values[5] = stat.rdev();
+        values[6] = stat.blockSize();
+        values[7] = stat.ino();
+        values[8] = stat.st_size();
+        values[9] = stat.blocks();
+        values[10] = stat.atime();
+        values[11] = stat.mtime();
+        values[12] = stat.ctime();
+        // no birthtime in jnr-posix
+        values[13] = stat.ctime();
+        return values;
+    }
 }
@@ -3,25 +3,21 @@ package io.nodyn.fs;
 import io.nodyn.CallbackResult;
 import io.nodyn.NodeProcess;
 import io.nodyn.handle.HandleWrap;
-import io.nodyn.loop.EventLoop;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.*;
-
-import static java.nio.file.StandardWatchEventKinds.*;
 
 /**
  * @author Lance Ball
  */
 public class FsEventWrap extends HandleWrap {
 
-    private final EventLoop eventLoop;
+    private static final int CHANGE = eventId("change");
+
     private boolean persistent;
 
     public FsEventWrap(NodeProcess process) {
         super(process, false);
-        eventLoop = process.getEventLoop();
     }
 
     public void start(String path, boolean persistent, boolean recursive) {
@@ -35,30 +31,14 @@ public class FsEventWrap extends HandleWrap {
             if (persistent) {
                 ref();
             }
-            Path toWatch = Paths.get(dir.getCanonicalPath());
-            watcher = toWatch.getFileSystem().newWatchService();
-            toWatch.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
-            this.eventLoop.submitBlockingTask(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        WatchKey key = watcher.take();
-                        while (key != null && key.isValid()) {
-                            for (final WatchEvent event : key.pollEvents()) {
-                                if (watched == null || watched.getName().equals(event.context().toString())) {
-                                    emit("change", CallbackResult.createSuccess(event.kind().toString(), event.context().toString()));
-                                }
-                            }
-                            key.reset();
-                            key = watcher.take();
+            // one shared WatchService and thread for every watcher
+            subscription = WatchMultiplexer.getInstance().watch(dir, watched == null ? null : watched.getName(),
+                    new WatchMultiplexer.Listener() {
+                        @Override
+                        public void onEvent(String kind, String name) {
+                            emit(CHANGE, CallbackResult.createSuccess(kind, name));
                         }
-                    } catch (Exception e) {
-                        // If a thread is currently blocked in the take or poll methods waiting for
-                        // a key to be queued then it immediately receives a ClosedWatchServiceException.
-                        // Any valid keys associated with this watch service are invalidated.
-                    }
-                }
-            });
+                    });
         } catch (IOException e) {
             this.getProcess().getNodyn().handleThrowable(e);
         }
@@ -69,13 +49,15 @@ public class FsEventWrap extends HandleWrap {
         try {
             // double-unref is always safe.
             unref();
-            this.watcher.close();
+            if (this.subscription != null) {
+                this.subscription.close();
+            }
         } catch (Exception e) {
             this.getProcess().getNodyn().handleThrowable(e);
         }
     }
 
-    private WatchService watcher;
+    private WatchMultiplexer.Subscription subscription;
     private File watched;
 
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import jnr.posix.FileStat;
+import jnr.posix.POSIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide, bounded cache of what module resolution asks about the
+ * file system: whether a candidate path is a file or a directory, and the
+ * real path of the file finally chosen.
+ *
+ * <p>Only paths that exist are cached, so a module created after a failed
+ * <code>require()</code>, by this process or any other, is found next time,
+ * just as node's resolution cache only holds successful resolutions.
+ * Entries live until evicted or invalidated. The fs bindings invalidate
+ * the paths they remove or rename; such changes made by other processes
+ * are only seen after an explicit {@link #invalidate()}.</p>
+ *
+ * <p>Tuned with the system properties <code>nodyn.fs.statCache</code>
+ * (true/false) and <code>nodyn.fs.statCache.size</code> (entries per map).</p>
+ */
+public class StatCache {
+
+    public static final int MISSING = 0;
+    public static final int FILE = 1;
+    public static final int DIRECTORY = 2;
+
+    private static final StatCache INSTANCE = new StatCache(
+            Boolean.parseBoolean(System.getProperty("nodyn.fs.statCache", "true")),
+            Integer.getInteger("nodyn.fs.statCache.size", 8192));
+
+    public static StatCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final boolean enabled;
+    private final Lru<Integer> kinds;
+    private final Lru<String> realPaths;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    StatCache(boolean enabled, int maxEntries) {
+        this.enabled = enabled;
+        this.kinds = new Lru<>(maxEntries);
+        this.realPaths = new Lru<>(maxEntries);
+    }
+
+    /**
+     * @return {@link #MISSING}, {@link #DIRECTORY} or, for anything else that exists, {@link #FILE}
+     */
+    public int kind(POSIX posix, String path) {
+        if (this.enabled) {
+            synchronized (this) {
+                Integer kind = this.kinds.get(path);
+                if (kind != null) {
+                    this.hits.incrementAndGet();
+                    return kind;
+                }
+            }
+        }
+        this.misses.incrementAndGet();
+        FileStat stat = posix.allocateStat();
+        if (posix.stat(path, stat) < 0) {
+            return MISSING;
+        }
+        int kind = stat.isDirectory() ? DIRECTORY : FILE;
+        if (this.enabled) {
+            synchronized (this) {
+                this.kinds.put(path, kind);
+            }
+        }
+        return kind;
+    }
+
+    /**
+     * @return the path with all symbolic links resolved, or <code>null</code> if that fails
+     */
+    public String realpath(String path) {
+        if (this.enabled) {
+            synchronized (this) {
+                String realPath = this.realPaths.get(path);
+                if (realPath != null) {
+                    this.hits.incrementAndGet();
+                    return realPath;
+                }
+            }
+        }
+        this.misses.incrementAndGet();
+        String realPath;
+        try {
+            realPath = Paths.get(path).toRealPath().toString();
+        } catch (IOException e) {
+            return null;
+        }
+        if (this.enabled) {
+            synchronized (this) {
+                this.realPaths.put(path, realPath);
+            }
+        }
+        return realPath;
+    }
+
+    /**
+     * Forget a file or directory that was created or written. Nothing can be
+     * cached beneath a path that did not exist, so the rest of the cache stays valid.
+     */
+    public synchronized void invalidate(String path) {
+        this.kinds.remove(path);
+        this.realPaths.remove(path);
+    }
+
+    /**
+     * Forget a path that was removed, renamed or made a symbolic link, along
+     * with everything cached beneath it.
+     */
+    public synchronized void invalidateTree(String path) {
+        String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+        this.kinds.removeTree(path, prefix);
+        this.realPaths.removeTree(path, prefix);
+    }
+
+    /**
+     * Forget everything, as after changes made outside this process.
+     */
+    public synchronized void invalidate() {
+        this.kinds.clear();
+        this.realPaths.clear();
+    }
+
+    public synchronized int size() {
+        return this.kinds.size() + this.realPaths.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * A least-recently-used map whose keys are also kept sorted, so that
+     * everything beneath a directory is found without a scan.
+     */
+    private static final class Lru<V> extends LinkedHashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+        private final TreeSet<String> sorted = new TreeSet<>();
+
+        Lru(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        public V put(String key, V value) {
+            this.sorted.add(key);
+            return super.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            this.sorted.remove(key);
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            this.sorted.clear();
+            super.clear();
+        }
+
+        void removeTree(String path, String prefix) {
+            remove(path);
+            if (isEmpty()) {
+                return;
+            }
+            for (String each : new ArrayList<>(this.sorted.subSet(prefix, prefix + Character.MAX_VALUE))) {
+                remove(each);
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            if (size() > this.maxEntries) {
+                this.sorted.remove(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    }
+}
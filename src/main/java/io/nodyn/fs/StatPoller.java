@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import io.nodyn.loop.EventLoop;
+import io.nodyn.loop.WorkerPool;
+import jnr.posix.POSIX;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stat polling for <code>fs.watchFile</code>, which works on any file system,
+ * network and bind mounts included, unlike a <code>WatchService</code>.
+ *
+ * <p>Paths watched with the same interval share one timer, and each tick
+ * stats all of them in a single worker pool task. A path reports only real
+ * changes, with the new and previous compact stat arrays, following
+ * libuv's <code>uv_fs_poll</code>: the first successful stat sets the
+ * baseline, access time alone is not a change, and a failing stat reports
+ * zeroes once until it succeeds again.</p>
+ */
+public class StatPoller {
+
+    /**
+     * Status reported while the path cannot be stat'ed, as node 0.12's
+     * <code>StatWatcher</code> expects.
+     */
+    public static final int FAILED = -1;
+
+    private static final int ATIME = 10;
+
+    /**
+     * Receives changes on a worker pool thread.
+     */
+    public interface Listener {
+        void onChange(double[] current, double[] previous, int status);
+    }
+
+    private final EventLoop loop;
+    private final POSIX posix;
+    private final Map<Integer, Group> groups = new HashMap<>();
+
+    public StatPoller(EventLoop loop, POSIX posix) {
+        this.loop = loop;
+        this.posix = posix;
+    }
+
+    /**
+     * Poll a path every <code>interval</code> milliseconds. The baseline is
+     * taken straight away, not at the first tick.
+     */
+    public Watch watch(String path, int interval, Listener listener) {
+        final Watch watch = new Watch(path, Math.max(interval, 1), listener);
+        synchronized (this) {
+            Group group = this.groups.get(watch.interval);
+            if (group == null) {
+                group = new Group(watch.interval);
+                this.groups.put(watch.interval, group);
+                group.schedule();
+            }
+            group.watches.add(watch);
+        }
+        this.loop.submitWork(WorkerPool.Category.FS, new Runnable() {
+            @Override
+            public void run() {
+                watch.poll();
+            }
+        });
+        return watch;
+    }
+
+    public synchronized int getGroups() {
+        return this.groups.size();
+    }
+
+    public class Watch {
+        private final String path;
+        private final int interval;
+        private final Listener listener;
+        private double[] previous = new double[Fs.STAT_LENGTH];
+        // 0 before the first stat, 1 while it succeeds, FAILED while it fails
+        private int status;
+        private volatile boolean closed;
+
+        Watch(String path, int interval, Listener listener) {
+            this.path = path;
+            this.interval = interval;
+            this.listener = listener;
+        }
+
+        // the baseline task may overlap the first tick
+        synchronized void poll() {
+            if (this.closed) {
+                return;
+            }
+            double[] current = Fs.stat(StatPoller.this.posix, this.path);
+            if (current == null) {
+                if (this.status != FAILED) {
+                    this.listener.onChange(new double[Fs.STAT_LENGTH], this.previous, FAILED);
+                    this.status = FAILED;
+                }
+                return;
+            }
+            if (this.status == FAILED || (this.status != 0 && changed(this.previous, current))) {
+                this.listener.onChange(current, this.previous, 0);
+            }
+            this.previous = current;
+            this.status = 1;
+        }
+
+        public void close() {
+            this.closed = true;
+            synchronized (StatPoller.this) {
+                Group group = StatPoller.this.groups.get(this.interval);
+                if (group != null) {
+                    group.watches.remove(this);
+                }
+            }
+        }
+    }
+
+    private static boolean changed(double[] previous, double[] current) {
+        for (int i = 0; i < Fs.STAT_LENGTH; ++i) {
+            if (i != ATIME && previous[i] != current[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Group implements Runnable {
+        private final int interval;
+        private final List<Watch> watches = new CopyOnWriteArrayList<>();
+
+        Group(int interval) {
+            this.interval = interval;
+        }
+
+        // called holding the poller's lock
+        void schedule() {
+            try {
+                StatPoller.this.loop.scheduleUserTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        StatPoller.this.loop.submitWork(WorkerPool.Category.FS, Group.this);
+                    }
+                }, this.interval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // the loop has shut down
+                StatPoller.this.groups.remove(this.interval);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (Watch each : this.watches) {
+                each.poll();
+            }
+            synchronized (StatPoller.this) {
+                if (this.watches.isEmpty()) {
+                    StatPoller.this.groups.remove(this.interval);
+                } else {
+                    // the next tick counts from the end of this one, so slow
+                    // stats never pile up
+                    schedule();
+                }
+            }
+        }
+    }
+}
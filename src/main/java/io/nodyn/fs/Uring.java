@@ -0,0 +1,586 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import com.kenai.jffi.MemoryIO;
+import io.netty.buffer.ByteBuf;
+import io.nodyn.Callback;
+import io.nodyn.CallbackResult;
+import io.nodyn.loop.EventLoop;
+import io.nodyn.loop.RefHandle;
+import jnr.constants.platform.Errno;
+import jnr.ffi.LibraryLoader;
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.types.off_t;
+import jnr.ffi.types.size_t;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Asynchronous file operations on a Linux io_uring, as an alternative to
+ * running blocking jnr-posix calls on the worker pool.
+ *
+ * <p>Reads, writes, fsyncs, opens and stats are written to the submission
+ * ring by the calling thread, and everything written during one turn of
+ * the event loop is handed to the kernel together at its end. Without
+ * <code>SQPOLL</code> the kernel only looks at the submission ring inside
+ * <code>io_uring_enter</code>, so plain stores through jnr-ffi are enough
+ * to publish entries. A single
+ * reaper thread waits on the completion ring and queues each callback as a
+ * user task on the event loop, so an operation costs one thread handoff
+ * instead of two. Callbacks receive <code>[res, value]</code>: a negative
+ * <code>res</code> is <code>-errno</code>, otherwise it is the byte count or
+ * descriptor and <code>value</code> holds a compact stat array where there
+ * is one.</p>
+ *
+ * <p>Needs a 64-bit Linux 5.6 or later that lets the process create a ring;
+ * {@link #create(EventLoop)} returns <code>null</code> elsewhere, and the fs
+ * bindings keep using the worker pool. Enabled with the system property
+ * <code>nodyn.fs.uring</code>; <code>nodyn.fs.uring.entries</code> sizes the
+ * submission ring.</p>
+ */
+public class Uring {
+
+    public interface LibC {
+        long syscall(long number, long arg1, long arg2, long arg3, long arg4, long arg5, long arg6);
+
+        // Pointers, as an all-primitive mmap is not passed its arguments intact
+        Pointer mmap(Pointer address, @size_t long length, int protection, int flags, int fd, @off_t long offset);
+
+        int munmap(Pointer address, @size_t long length);
+
+        int close(int fd);
+    }
+
+    private static final boolean ENABLED = Boolean.getBoolean("nodyn.fs.uring");
+    private static final int ENTRIES = Integer.getInteger("nodyn.fs.uring.entries", 256);
+
+    private static final int SYS_IO_URING_SETUP = 425;
+    private static final int SYS_IO_URING_ENTER = 426;
+
+    private static final int IORING_FEAT_SINGLE_MMAP = 1;
+    private static final int IORING_FEAT_RW_CUR_POS = 1 << 3;
+    private static final int IORING_ENTER_GETEVENTS = 1;
+    private static final long IORING_OFF_SQ_RING = 0L;
+    private static final long IORING_OFF_SQES = 0x10000000L;
+
+    private static final int IORING_OP_NOP = 0;
+    private static final int IORING_OP_FSYNC = 3;
+    private static final int IORING_OP_OPENAT = 18;
+    private static final int IORING_OP_STATX = 21;
+    private static final int IORING_OP_READ = 22;
+    private static final int IORING_OP_WRITE = 23;
+    private static final int IORING_FSYNC_DATASYNC = 1;
+
+    private static final int AT_FDCWD = -100;
+    private static final int AT_SYMLINK_NOFOLLOW = 0x100;
+    private static final int AT_EMPTY_PATH = 0x1000;
+    private static final int STATX_BASIC_STATS_AND_BTIME = 0xfff;
+    private static final int STATX_BTIME = 0x800;
+
+    private static final int PROT_READ_WRITE = 0x1 | 0x2;
+    private static final int MAP_SHARED_POPULATE = 0x01 | 0x8000;
+
+    private static final int ECANCELED = 125;
+    private static final int EBUSY = Errno.EBUSY.intValue();
+
+    // struct io_uring_params and the ring offsets within it
+    private static final int PARAMS_SIZE = 120;
+    private static final int SQ_OFF = 40;
+    private static final int CQ_OFF = 80;
+    private static final int SQE_SIZE = 64;
+    private static final int CQE_SIZE = 16;
+    private static final int STATX_SIZE = 256;
+
+    // malloc'd buffers the kernel reads from or writes to until completion
+    private static final MemoryIO IO = MemoryIO.getInstance();
+
+    /**
+     * The ring for the event loop if <code>nodyn.fs.uring</code> is set and
+     * the kernel supports it, otherwise <code>null</code>.
+     */
+    public static Uring create(EventLoop loop) {
+        if (!ENABLED) {
+            return null;
+        }
+        return open(loop, ENTRIES);
+    }
+
+    /**
+     * A ring with at least the given number of submission entries, or
+     * <code>null</code> if this platform or kernel cannot provide one.
+     */
+    public static Uring open(EventLoop loop, int entries) {
+        if (!System.getProperty("os.name", "").startsWith("Linux")
+                || !"64".equals(System.getProperty("sun.arch.data.model"))) {
+            return null;
+        }
+        try {
+            LibC libc = LibraryLoader.create(LibC.class).load("c");
+            Runtime runtime = Runtime.getRuntime(libc);
+            Pointer params = Memory.allocateDirect(runtime, PARAMS_SIZE, true);
+            int fd = (int) libc.syscall(SYS_IO_URING_SETUP, entries, params.address(), 0, 0, 0, 0);
+            if (fd < 0) {
+                // ENOSYS, or EPERM under a seccomp policy or io_uring_disabled
+                return null;
+            }
+            int features = params.getInt(20);
+            int required = IORING_FEAT_SINGLE_MMAP | IORING_FEAT_RW_CUR_POS;
+            if ((features & required) != required) {
+                // older than 5.6, which added read, write, openat and statx
+                libc.close(fd);
+                return null;
+            }
+            return new Uring(loop, libc, runtime, fd, params);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private final EventLoop loop;
+    private final LibC libc;
+    private final Runtime runtime;
+    private final int ringFd;
+
+    private final Pointer ring;
+    private final long ringSize;
+    private final Pointer sqes;
+    private final long sqesSize;
+
+    // offsets into the ring
+    private final int sqHead;
+    private final int sqTail;
+    private final int sqArray;
+    private final int sqMask;
+    private final int sqEntries;
+
+    private final int cqHead;
+    private final int cqTail;
+    private final int cqes;
+    private final int cqMask;
+    private final int cqEntries;
+
+    private final Map<Long, Op> inflight = new HashMap<>();
+    private final ArrayDeque<Op> backlog = new ArrayDeque<>();
+    private long nextId;
+    private boolean flushScheduled;
+    private boolean closed;
+    // why the kernel last refused submissions, while the ring stays full
+    private int failure = EBUSY;
+
+    // one io_uring_enter for everything submitted during a turn
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (Uring.this) {
+                Uring.this.flushScheduled = false;
+                flush();
+            }
+        }
+    };
+
+    private Uring(EventLoop loop, LibC libc, Runtime runtime, int ringFd, Pointer params) throws IOException {
+        this.loop = loop;
+        this.libc = libc;
+        this.runtime = runtime;
+        this.ringFd = ringFd;
+
+        this.sqEntries = params.getInt(0);
+        this.cqEntries = params.getInt(4);
+
+        long sqSize = params.getInt(SQ_OFF + 24) + this.sqEntries * 4L;
+        long cqSize = params.getInt(CQ_OFF + 20) + this.cqEntries * (long) CQE_SIZE;
+        this.ringSize = Math.max(sqSize, cqSize);
+        this.ring = map(this.ringSize, IORING_OFF_SQ_RING);
+        if (this.ring == null) {
+            libc.close(ringFd);
+            throw new IOException("io_uring ring mmap failed: " + runtime.getLastError());
+        }
+        this.sqesSize = this.sqEntries * (long) SQE_SIZE;
+        this.sqes = map(this.sqesSize, IORING_OFF_SQES);
+        if (this.sqes == null) {
+            libc.munmap(this.ring, this.ringSize);
+            libc.close(ringFd);
+            throw new IOException("io_uring sqes mmap failed: " + runtime.getLastError());
+        }
+
+        this.sqHead = params.getInt(SQ_OFF);
+        this.sqTail = params.getInt(SQ_OFF + 4);
+        this.sqMask = this.ring.getInt(params.getInt(SQ_OFF + 8));
+        this.sqArray = params.getInt(SQ_OFF + 24);
+
+        this.cqHead = params.getInt(CQ_OFF);
+        this.cqTail = params.getInt(CQ_OFF + 4);
+        this.cqMask = this.ring.getInt(params.getInt(CQ_OFF + 8));
+        this.cqes = params.getInt(CQ_OFF + 20);
+
+        Thread reaper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reap();
+            }
+        }, "fs-uring-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    // null on MAP_FAILED
+    private Pointer map(long size, long offset) {
+        Pointer pointer = this.libc.mmap(null, size, PROT_READ_WRITE, MAP_SHARED_POPULATE, this.ringFd, offset);
+        return pointer == null || pointer.address() == -1L ? null : pointer;
+    }
+
+    public int getSubmissionEntries() {
+        return this.sqEntries;
+    }
+
+    public synchronized int getInflight() {
+        return this.inflight.size();
+    }
+
+    public synchronized int getBacklog() {
+        return this.backlog.size();
+    }
+
+    /**
+     * Read into <code>buf</code> at <code>offset</code>; a negative position
+     * reads from, and advances, the descriptor's file position.
+     */
+    public void read(int fd, final ByteBuf buf, final int offset, int length, long position, Callback callback) {
+        final long data = IO.allocateMemory(Math.max(length, 1), false);
+        submit(new Op(callback, IORING_OP_READ, fd, position, data, length, 0) {
+            @Override
+            Object value(int res) {
+                byte[] bytes = new byte[res];
+                IO.getByteArray(data, bytes, 0, res);
+                buf.setBytes(offset, bytes);
+                buf.writerIndex(Math.max(buf.writerIndex(), offset + res));
+                return null;
+            }
+        }.owning(data, 0));
+    }
+
+    /**
+     * Write <code>length</code> bytes of <code>buf</code> from
+     * <code>offset</code>; a negative position writes at, and advances, the
+     * descriptor's file position.
+     */
+    public void write(int fd, ByteBuf buf, int offset, int length, long position, Callback callback) {
+        byte[] bytes = new byte[length];
+        buf.getBytes(offset, bytes);
+        long data = IO.allocateMemory(Math.max(length, 1), false);
+        IO.putByteArray(data, bytes, 0, length);
+        submit(new Op(callback, IORING_OP_WRITE, fd, position, data, length, 0).owning(data, 0));
+    }
+
+    public void fsync(int fd, boolean datasync, Callback callback) {
+        submit(new Op(callback, IORING_OP_FSYNC, fd, 0, 0, 0, datasync ? IORING_FSYNC_DATASYNC : 0));
+    }
+
+    public void open(String path, int flags, int mode, Callback callback) {
+        long name = cString(path);
+        submit(new Op(callback, IORING_OP_OPENAT, AT_FDCWD, 0, name, mode, flags).owning(0, name));
+    }
+
+    public void stat(String path, Callback callback) {
+        statx(AT_FDCWD, path, 0, callback);
+    }
+
+    public void lstat(String path, Callback callback) {
+        statx(AT_FDCWD, path, AT_SYMLINK_NOFOLLOW, callback);
+    }
+
+    public void fstat(int fd, Callback callback) {
+        statx(fd, "", AT_EMPTY_PATH, callback);
+    }
+
+    private void statx(int dirfd, String path, int flags, Callback callback) {
+        long name = cString(path);
+        final long statx = IO.allocateMemory(STATX_SIZE, true);
+        submit(new Op(callback, IORING_OP_STATX, dirfd, statx, name, STATX_BASIC_STATS_AND_BTIME, flags) {
+            @Override
+            Object value(int res) {
+                return compact(statx);
+            }
+        }.owning(statx, name));
+    }
+
+    /**
+     * Stop accepting work. Operations already submitted still complete;
+     * queued ones are cancelled. The ring is unmapped once the kernel is
+     * done with every buffer it was given.
+     */
+    public void close() {
+        List<Op> cancelled;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            cancelled = new ArrayList<>(this.backlog);
+            this.backlog.clear();
+            // wakes the reaper, which exits when nothing is left in flight
+            push(new Op(null, IORING_OP_NOP, -1, 0, 0, 0, 0));
+            flush();
+        }
+        for (Op each : cancelled) {
+            complete(each, -ECANCELED);
+        }
+    }
+
+    private void submit(Op op) {
+        if (op.callback != null) {
+            op.handle = this.loop.newHandle("fs-uring");
+        }
+        synchronized (this) {
+            if (!this.closed) {
+                if (this.inflight.size() < this.cqEntries) {
+                    if (!push(op)) {
+                        complete(op, -this.failure);
+                    } else if (!this.flushScheduled) {
+                        this.flushScheduled = true;
+                        this.loop.submitTurnEndTask(this.flushTask, "fs-uring");
+                    }
+                } else {
+                    // the completion ring must never overflow
+                    this.backlog.add(op);
+                }
+                return;
+            }
+        }
+        complete(op, -ECANCELED);
+    }
+
+    // Called holding the lock; this is the only submission-ring producer.
+    // False if the kernel refuses to take entries off a full ring.
+    private boolean push(Op op) {
+        int tail = this.ring.getInt(this.sqTail);
+        if (tail - this.ring.getInt(this.sqHead) >= this.sqEntries) {
+            flush();
+            if (tail - this.ring.getInt(this.sqHead) >= this.sqEntries) {
+                return false;
+            }
+        }
+        long id = ++this.nextId;
+        this.inflight.put(id, op);
+
+        int index = tail & this.sqMask;
+        long sqe = index * (long) SQE_SIZE;
+        this.sqes.setMemory(sqe, SQE_SIZE, (byte) 0);
+        this.sqes.putByte(sqe, (byte) op.opcode);
+        this.sqes.putInt(sqe + 4, op.fd);
+        this.sqes.putLong(sqe + 8, op.off);
+        this.sqes.putLong(sqe + 16, op.addr);
+        this.sqes.putInt(sqe + 24, op.length);
+        this.sqes.putInt(sqe + 28, op.flags);
+        this.sqes.putLong(sqe + 32, id);
+        this.ring.putInt(this.sqArray + index * 4L, index);
+        // seen by the kernel at the next io_uring_enter
+        this.ring.putInt(this.sqTail, tail + 1);
+        return true;
+    }
+
+    // Called holding the lock; hands everything in the submission ring over.
+    // Should the kernel refuse, the waiting operations complete with its
+    // errno and their entries become no-ops nobody waits for.
+    private void flush() {
+        for (;;) {
+            int head = this.ring.getInt(this.sqHead);
+            int tail = this.ring.getInt(this.sqTail);
+            if (tail - head <= 0) {
+                return;
+            }
+            if (enter(tail - head, 0, 0) >= 0) {
+                continue;
+            }
+            int errno = this.runtime.getLastError();
+            if (errno == Errno.EINTR.intValue() || errno == Errno.EAGAIN.intValue() || errno == EBUSY) {
+                Thread.yield();
+                continue;
+            }
+            this.failure = errno;
+            for (int i = head; i != tail; ++i) {
+                long sqe = (i & this.sqMask) * (long) SQE_SIZE;
+                Op op = this.inflight.remove(this.sqes.getLong(sqe + 32));
+                this.sqes.setMemory(sqe, SQE_SIZE, (byte) 0);
+                if (op != null) {
+                    complete(op, -errno);
+                }
+            }
+            return;
+        }
+    }
+
+    private long enter(int toSubmit, int minComplete, int flags) {
+        return this.libc.syscall(SYS_IO_URING_ENTER, this.ringFd, toSubmit, minComplete, flags, 0, 0);
+    }
+
+    private void reap() {
+        List<Op> ops = new ArrayList<>();
+        List<Integer> results = new ArrayList<>();
+        for (;;) {
+            synchronized (this) {
+                if (this.closed && this.inflight.isEmpty()) {
+                    break;
+                }
+            }
+            enter(0, 1, IORING_ENTER_GETEVENTS);
+
+            synchronized (this) {
+                // read after io_uring_enter returned, which orders it for us
+                int head = this.ring.getInt(this.cqHead);
+                int tail = this.ring.getInt(this.cqTail);
+                for (; head != tail; ++head) {
+                    long cqe = this.cqes + (head & this.cqMask) * (long) CQE_SIZE;
+                    Op op = this.inflight.remove(this.ring.getLong(cqe));
+                    if (op != null) {
+                        ops.add(op);
+                        results.add(this.ring.getInt(cqe + 8));
+                    }
+                }
+                this.ring.putInt(this.cqHead, head);
+
+                while (!this.backlog.isEmpty() && this.inflight.size() < this.cqEntries) {
+                    Op op = this.backlog.poll();
+                    if (!push(op)) {
+                        complete(op, -this.failure);
+                    }
+                }
+                flush();
+            }
+
+            for (int i = 0; i < ops.size(); ++i) {
+                complete(ops.get(i), results.get(i));
+            }
+            ops.clear();
+            results.clear();
+        }
+        this.libc.munmap(this.sqes, this.sqesSize);
+        this.libc.munmap(this.ring, this.ringSize);
+        this.libc.close(this.ringFd);
+    }
+
+    private void complete(final Op op, final int res) {
+        if (op.callback == null) {
+            return;
+        }
+        this.loop.submitUserTask(new Runnable() {
+            @Override
+            public void run() {
+                Object value;
+                try {
+                    value = res < 0 ? null : op.value(res);
+                } finally {
+                    op.release();
+                }
+                try {
+                    op.callback.call(CallbackResult.createSuccess(res, value));
+                } finally {
+                    op.handle.unref();
+                }
+            }
+        }, "fs-uring");
+    }
+
+    private static long cString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long address = IO.allocateMemory(bytes.length + 1, false);
+        IO.putZeroTerminatedByteArray(address, bytes, 0, bytes.length);
+        return address;
+    }
+
+    // struct statx, in the order of Fs.STAT_LENGTH; times in whole seconds
+    // like the jnr-posix stats, but with a real birthtime where there is one
+    private static double[] compact(long statx) {
+        double[] values = new double[Fs.STAT_LENGTH];
+        int mask = IO.getInt(statx);
+        values[0] = makedev(IO.getInt(statx + 136), IO.getInt(statx + 140));
+        values[1] = IO.getShort(statx + 28) & 0xffff;
+        values[2] = IO.getInt(statx + 16) & 0xffffffffL;
+        values[3] = IO.getInt(statx + 20) & 0xffffffffL;
+        values[4] = IO.getInt(statx + 24) & 0xffffffffL;
+        values[5] = makedev(IO.getInt(statx + 128), IO.getInt(statx + 132));
+        values[6] = IO.getInt(statx + 4) & 0xffffffffL;
+        values[7] = IO.getLong(statx + 32);
+        values[8] = IO.getLong(statx + 40);
+        values[9] = IO.getLong(statx + 48);
+        values[10] = IO.getLong(statx + 64);
+        values[11] = IO.getLong(statx + 112);
+        values[12] = IO.getLong(statx + 96);
+        values[13] = (mask & STATX_BTIME) != 0 ? IO.getLong(statx + 80) : values[12];
+        return values;
+    }
+
+    // glibc's encoding of st_dev and st_rdev
+    private static long makedev(int major, int minor) {
+        long ma = major & 0xffffffffL;
+        long mi = minor & 0xffffffffL;
+        return ((ma & 0xfffff000L) << 32) | ((ma & 0xfffL) << 8)
+                | ((mi & 0xffffff00L) << 12) | (mi & 0xffL);
+    }
+
+    private static class Op {
+        final Callback callback;
+        final int opcode;
+        final int fd;
+        final long off;
+        final long addr;
+        final int length;
+        final int flags;
+        // native memory the kernel uses until completion
+        long data;
+        long name;
+        RefHandle handle;
+
+        Op(Callback callback, int opcode, int fd, long off, long addr, int length, int flags) {
+            this.callback = callback;
+            this.opcode = opcode;
+            this.fd = fd;
+            this.off = off;
+            this.addr = addr;
+            this.length = length;
+            this.flags = flags;
+        }
+
+        Op owning(long data, long name) {
+            this.data = data;
+            this.name = name;
+            return this;
+        }
+
+        void release() {
+            if (this.data != 0) {
+                IO.freeMemory(this.data);
+            }
+            if (this.name != 0) {
+                IO.freeMemory(this.name);
+            }
+        }
+
+        Object value(int res) {
+            return null;
+        }
+    }
+}
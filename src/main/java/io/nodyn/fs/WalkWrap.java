@@ -0,0 +1,257 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import io.nodyn.CallbackResult;
+import io.nodyn.NodeProcess;
+import io.nodyn.async.AsyncWrap;
+import io.nodyn.loop.RefHandle;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Walks a directory tree in one blocking task, reading each entry's type
+ * and size from the same pass, and streams the entries to JavaScript in
+ * batches.
+ *
+ * <p>Each batch is an <code>entries</code> event carrying three parallel
+ * arrays: paths relative to the root, types ({@link #FILE},
+ * {@link #DIRECTORY}, {@link #SYMLINK} or {@link #OTHER}) and sizes. At most
+ * <code>maxPendingBatches</code> batches are in flight; the walk waits for
+ * {@link #ack()} before sending more. Entries that cannot be read, such as
+ * unreadable directories, are skipped and counted. The walk finishes with an
+ * <code>end</code> event carrying the number of entries sent and skipped, or
+ * an <code>error</code> event if the root itself cannot be walked.</p>
+ */
+public class WalkWrap extends AsyncWrap {
+
+    public static final int FILE = 0;
+    public static final int DIRECTORY = 1;
+    public static final int SYMLINK = 2;
+    public static final int OTHER = 3;
+
+    private static final int ENTRIES = eventId("entries");
+    private static final int END = eventId("end");
+    private static final int ERROR = eventId("error");
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private int batchSize = 1024;
+    private int maxPendingBatches = 4;
+    private boolean followSymlinks;
+    private PathMatcher glob;
+    private final List<PathMatcher> ignores = new ArrayList<>();
+
+    private Semaphore permits = new Semaphore(this.maxPendingBatches);
+    private volatile boolean aborted;
+
+    public WalkWrap(NodeProcess process) {
+        super(process);
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public void setMaxPendingBatches(int maxPendingBatches) {
+        this.maxPendingBatches = Math.max(1, maxPendingBatches);
+        this.permits = new Semaphore(this.maxPendingBatches);
+    }
+
+    public void setFollowSymlinks(boolean followSymlinks) {
+        this.followSymlinks = followSymlinks;
+    }
+
+    /**
+     * Only report entries whose relative path matches the glob. Directories
+     * are still descended into.
+     */
+    public void setGlob(String glob) {
+        this.glob = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    /**
+     * Neither report nor descend into entries whose relative path matches the glob.
+     */
+    public void addIgnore(String glob) {
+        this.ignores.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    public void start(final String root) {
+        final RefHandle handle = this.process.getEventLoop().newHandle("fs-walk");
+        this.process.getEventLoop().submitBlockingTask(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    walk(Paths.get(root));
+                } finally {
+                    handle.unref();
+                }
+            }
+        });
+    }
+
+    /**
+     * Acknowledge a delivered batch, letting the walk send another.
+     */
+    public void ack() {
+        this.permits.release();
+    }
+
+    /**
+     * Stop walking; no further batches are sent, but <code>end</code> still is.
+     */
+    public void abort() {
+        this.aborted = true;
+        this.permits.release(this.maxPendingBatches);
+    }
+
+    void walk(Path root) {
+        Visitor visitor = new Visitor(root);
+        try {
+            Set<FileVisitOption> options = this.followSymlinks
+                    ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+                    : EnumSet.noneOf(FileVisitOption.class);
+            // fail on a missing or unreadable root rather than skipping it
+            Files.readAttributes(root, BasicFileAttributes.class);
+            Files.walkFileTree(root, options, this.maxDepth, visitor);
+            visitor.flush();
+        } catch (IOException e) {
+            emit(ERROR, CallbackResult.createError(e));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        emit(END, CallbackResult.createSuccess(visitor.sent, visitor.skipped));
+    }
+
+    private static int type(BasicFileAttributes attrs) {
+        if (attrs.isDirectory()) {
+            return DIRECTORY;
+        }
+        if (attrs.isRegularFile()) {
+            return FILE;
+        }
+        if (attrs.isSymbolicLink()) {
+            return SYMLINK;
+        }
+        return OTHER;
+    }
+
+    private final class Visitor extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private String[] paths = new String[WalkWrap.this.batchSize];
+        private int[] types = new int[WalkWrap.this.batchSize];
+        private double[] sizes = new double[WalkWrap.this.batchSize];
+        private int count;
+
+        private long sent;
+        private long skipped;
+
+        Visitor(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            if (dir.equals(this.root)) {
+                return FileVisitResult.CONTINUE;
+            }
+            return visit(dir, attrs, FileVisitResult.SKIP_SUBTREE);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            return visit(file, attrs, FileVisitResult.CONTINUE);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            ++this.skipped;
+            return WalkWrap.this.aborted ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+            if (exc != null) {
+                ++this.skipped;
+            }
+            return WalkWrap.this.aborted ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        private FileVisitResult visit(Path path, BasicFileAttributes attrs, FileVisitResult ignored) throws IOException {
+            if (WalkWrap.this.aborted) {
+                return FileVisitResult.TERMINATE;
+            }
+            Path relative = this.root.relativize(path);
+            for (PathMatcher each : WalkWrap.this.ignores) {
+                if (each.matches(relative)) {
+                    return ignored;
+                }
+            }
+            if (WalkWrap.this.glob == null || WalkWrap.this.glob.matches(relative)) {
+                this.paths[this.count] = relative.toString();
+                this.types[this.count] = type(attrs);
+                this.sizes[this.count] = attrs.size();
+                if (++this.count == this.paths.length) {
+                    try {
+                        flush();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return FileVisitResult.TERMINATE;
+                    }
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        void flush() throws InterruptedException {
+            if (this.count == 0 || WalkWrap.this.aborted) {
+                return;
+            }
+            WalkWrap.this.permits.acquire();
+            if (WalkWrap.this.aborted) {
+                return;
+            }
+            emit(ENTRIES, CallbackResult.createSuccess(
+                    Arrays.copyOf(this.paths, this.count),
+                    Arrays.copyOf(this.types, this.count),
+                    Arrays.copyOf(this.sizes, this.count)));
+            this.sent += this.count;
+            this.count = 0;
+        }
+    }
+}
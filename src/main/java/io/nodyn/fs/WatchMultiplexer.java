@@ -0,0 +1,279 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Process-wide multiplexer for directory watches. All watchers share one
+ * <code>WatchService</code> (one inotify instance on Linux) and one daemon
+ * thread; each directory is registered once however many handles watch it,
+ * and its events are dispatched to every interested subscription.
+ *
+ * <p>Bursts are coalesced: repeats of an event, same directory, kind and
+ * name, are delivered once after the directory has been quiet for the
+ * debounce delay, and never later than four delays after the first. Tuned
+ * with the system property <code>nodyn.fs.watch.debounce</code>
+ * (milliseconds, 0 delivers every event at once).</p>
+ */
+public class WatchMultiplexer {
+
+    private static final int MAX_DELAYS = 4;
+
+    private static final WatchMultiplexer INSTANCE = new WatchMultiplexer(
+            Long.getLong("nodyn.fs.watch.debounce", 50));
+
+    public static WatchMultiplexer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Receives events on the multiplexer thread; implementations hand them
+     * over rather than doing work there.
+     */
+    public interface Listener {
+        void onEvent(String kind, String name);
+    }
+
+    private final long debounceNanos;
+    private final Map<Path, Directory> directories = new HashMap<>();
+    private final Map<WatchKey, Directory> byKey = new HashMap<>();
+    // only touched by the multiplexer thread
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private WatchService service;
+
+    WatchMultiplexer(long debounceMillis) {
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+    }
+
+    /**
+     * Watch a directory for entries being created, deleted or modified.
+     *
+     * @param name only report this entry, or every entry if <code>null</code>
+     */
+    public synchronized Subscription watch(File dir, String name, Listener listener) throws IOException {
+        if (this.service == null) {
+            this.service = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    dispatch();
+                }
+            }, "fs-watch");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Path path = Paths.get(dir.getCanonicalPath());
+        Directory directory = this.directories.get(path);
+        if (directory != null && !directory.key.isValid()) {
+            // deleted, and possibly recreated, before the thread noticed
+            drop(directory);
+            directory = null;
+        }
+        if (directory == null) {
+            directory = new Directory(path, path.register(this.service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY));
+            this.directories.put(path, directory);
+            this.byKey.put(directory.key, directory);
+        }
+        Subscription subscription = new Subscription(directory, name, listener);
+        directory.subscriptions.add(subscription);
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        Directory directory = subscription.directory;
+        if (directory.subscriptions.remove(subscription) && directory.subscriptions.isEmpty()) {
+            directory.key.cancel();
+            drop(directory);
+        }
+    }
+
+    // A directory whose key went invalid may already have been replaced.
+    private synchronized void drop(Directory directory) {
+        if (this.directories.get(directory.path) == directory) {
+            this.directories.remove(directory.path);
+        }
+        this.byKey.remove(directory.key);
+    }
+
+    public synchronized int getWatchedDirectories() {
+        return this.directories.size();
+    }
+
+    public long getDelivered() {
+        return this.delivered.get();
+    }
+
+    public long getCoalesced() {
+        return this.coalesced.get();
+    }
+
+    private void dispatch() {
+        WatchService service;
+        synchronized (this) {
+            service = this.service;
+        }
+        try {
+            for (;;) {
+                WatchKey key;
+                if (this.pending.isEmpty()) {
+                    key = service.take();
+                } else {
+                    long wait = Long.MAX_VALUE;
+                    long now = System.nanoTime();
+                    for (Pending each : this.pending.values()) {
+                        wait = Math.min(wait, each.deadline - now);
+                    }
+                    key = wait > 0 ? service.poll(wait, TimeUnit.NANOSECONDS) : service.poll();
+                }
+                if (key != null) {
+                    Directory directory;
+                    synchronized (this) {
+                        directory = this.byKey.get(key);
+                    }
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (directory != null && event.context() != null) {
+                            queue(directory, event.kind().toString(), event.context().toString());
+                        }
+                    }
+                    if (!key.reset() && directory != null) {
+                        // the directory is gone; a later watch registers afresh
+                        drop(directory);
+                    }
+                }
+                deliverDue(System.nanoTime());
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the daemon thread dies with the process
+        }
+    }
+
+    private void queue(Directory directory, String kind, String name) {
+        if (this.debounceNanos == 0) {
+            deliver(directory, kind, name);
+            return;
+        }
+        long now = System.nanoTime();
+        String id = directory.path + "\u0000" + kind + "\u0000" + name;
+        Pending existing = this.pending.get(id);
+        if (existing == null) {
+            this.pending.put(id, new Pending(directory, kind, name, now + this.debounceNanos, now));
+        } else {
+            this.coalesced.incrementAndGet();
+            existing.deadline = Math.min(now + this.debounceNanos, existing.first + MAX_DELAYS * this.debounceNanos);
+        }
+    }
+
+    private void deliverDue(long now) {
+        List<Pending> due = null;
+        Iterator<Pending> iterator = this.pending.values().iterator();
+        while (iterator.hasNext()) {
+            Pending each = iterator.next();
+            if (each.deadline - now <= 0) {
+                iterator.remove();
+                if (due == null) {
+                    due = new ArrayList<>();
+                }
+                due.add(each);
+            }
+        }
+        if (due != null) {
+            for (Pending each : due) {
+                deliver(each.directory, each.kind, each.name);
+            }
+        }
+    }
+
+    private void deliver(Directory directory, String kind, String name) {
+        this.delivered.incrementAndGet();
+        for (Subscription each : directory.subscriptions) {
+            if (each.name == null || each.name.equals(name)) {
+                try {
+                    each.listener.onEvent(kind, name);
+                } catch (Throwable t) {
+                    // keep the thread alive for the other watchers
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, t);
+                }
+            }
+        }
+    }
+
+    public class Subscription {
+        private final Directory directory;
+        private final String name;
+        private final Listener listener;
+
+        Subscription(Directory directory, String name, Listener listener) {
+            this.directory = directory;
+            this.name = name;
+            this.listener = listener;
+        }
+
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+
+    private static class Directory {
+        final Path path;
+        final WatchKey key;
+        final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+        Directory(Path path, WatchKey key) {
+            this.path = path;
+            this.key = key;
+        }
+    }
+
+    private static class Pending {
+        final Directory directory;
+        final String kind;
+        final String name;
+        final long first;
+        long deadline;
+
+        Pending(Directory directory, String kind, String name, long deadline, long first) {
+            this.directory = directory;
+            this.kind = kind;
+            this.name = name;
+            this.deadline = deadline;
+            this.first = first;
+        }
+    }
+}
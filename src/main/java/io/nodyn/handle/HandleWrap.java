@@ -18,6 +18,7 @@ package io.nodyn.handle;
 
 import io.nodyn.CallbackResult;
 import io.nodyn.async.AsyncWrap;
+import io.nodyn.loop.EventLoop;
 import io.nodyn.loop.RefHandle;
 import io.nodyn.NodeProcess;
 
@@ -26,6 +27,8 @@ import io.nodyn.NodeProcess;
  */
 public class HandleWrap extends AsyncWrap {
 
+    private static final int CLOSE = eventId("close");
+
     private final RefHandle handle;
 
     public HandleWrap(NodeProcess process, boolean count) {
@@ -35,7 +38,7 @@ public class HandleWrap extends AsyncWrap {
 
     public void close() {
         this.handle.unref();
-        emit( "close", CallbackResult.EMPTY_SUCCESS );
+        emit( CLOSE, CallbackResult.EMPTY_SUCCESS, EventLoop.Phase.CLOSE );
     }
 
     public void ref() {
@@ -30,6 +30,10 @@ import java.util.*;
  */
 public class HTTPParser extends EventSource {
 
+    private static final int ON_HEADERS_COMPLETE = eventId("headersComplete");
+    private static final int ON_BODY = eventId("body");
+    private static final int ON_MESSAGE_COMPLETE = eventId("messageComplete");
+
     public static final String[] METHODS = new String[]{
             "DELETE",
             "GET",
@@ -283,7 +287,7 @@ public class HTTPParser extends EventSource {
                 case HEADERS:
                     int headerResult = readHeaders();
                     if (headerResult == 0) {
-                        Object result = emit("headersComplete", CallbackResult.EMPTY_SUCCESS);
+                        Object result = emit(ON_HEADERS_COMPLETE, CallbackResult.EMPTY_SUCCESS);
                         this.state = State.BODY;
                         if (result instanceof Boolean && ((Boolean) result).booleanValue()) {
                             this.skipBody = true;
@@ -318,7 +322,7 @@ public class HTTPParser extends EventSource {
                         continue LOOP;
                     }
                     ByteBuf body = readBody();
-                    emit("body", CallbackResult.createSuccess(body));
+                    emit(ON_BODY, CallbackResult.createSuccess(body));
                     if ( this.length == 0 ) {
                         finish();
                         break LOOP;
@@ -336,7 +340,7 @@ public class HTTPParser extends EventSource {
                     continue LOOP;
                 case CHUNK_BODY:
                     ByteBuf chunkBody = readBody();
-                    emit("body", CallbackResult.createSuccess(chunkBody));
+                    emit(ON_BODY, CallbackResult.createSuccess(chunkBody));
                     if (this.length == 0) {
                         this.state = State.CHUNK_END;
                     }
@@ -690,7 +694,7 @@ public class HTTPParser extends EventSource {
             return;
         }
 
-        emit("messageComplete", CallbackResult.EMPTY_SUCCESS);
+        emit(ON_MESSAGE_COMPLETE, CallbackResult.EMPTY_SUCCESS);
         this.shouldReinitialize = true;
 
     }
@@ -38,6 +38,23 @@ public class Blocking {
         });
     }
 
+    /**
+     * Submit short work of a worker pool category, such as <code>fs</code> or <code>crypto</code>.
+     */
+    public void submit(final Runnable action, String category) {
+        final RefHandle handle = this.eventLoop.newHandle( "blocking-" + category );
+        this.eventLoop.submitWork(WorkerPool.Category.valueOf(category.toUpperCase()), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    action.run();
+                } finally {
+                    handle.unref();
+                }
+            }
+        });
+    }
+
     public void unblock(final Runnable action) {
         this.eventLoop.submitUserTask( action, "blocking" );
     }
@@ -19,12 +19,16 @@ package io.nodyn.loop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.*;
 import io.nodyn.NodeProcess;
+import io.nodyn.timer.TimerWheel;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -34,15 +38,36 @@ public class EventLoop implements RefCounted {
 
     private final ScheduledExecutorService userTaskExecutor;
     private final ExecutorService blockingTaskExecutor;
+    private final WorkerPool workerPool = WorkerPool.create();
     private CountDownLatch latch = new CountDownLatch(1);
     private EventLoopGroup eventLoopGroup;
     private final boolean controlLifecycle;
     private final AtomicInteger taskCounter = new AtomicInteger();
 
+    private final PhaseQueue[] phases;
+    private final PhaseQueue turnEnd = new PhaseQueue();
+    private final List<ImmediateCheckHandle> checkHandles = new ArrayList<>();
+    private final AtomicBoolean turnScheduled = new AtomicBoolean();
+    private final RefHandle pendingHandle;
+    private final Runnable turn = new Runnable() {
+        @Override
+        public void run() {
+            runTurn();
+        }
+    };
+
+    /**
+     * The phases of a single turn, in the order they run.
+     */
+    public enum Phase {
+        TIMERS, PENDING, CHECK, CLOSE
+    }
+
     private Set<RefHandle> handles = new HashSet<>();
 
     protected int counter;
     private NodeProcess process;
+    private TimerWheel timerWheel;
 
     public EventLoop(EventLoopGroup eventLoopGroup) {
         this(eventLoopGroup, true);
@@ -83,6 +108,12 @@ public class EventLoop implements RefCounted {
                 return t;
             }
         });
+
+        this.phases = new PhaseQueue[Phase.values().length];
+        for (int i = 0; i < this.phases.length; ++i) {
+            this.phases[i] = new PhaseQueue();
+        }
+        this.pendingHandle = new RefHandle(this, false, "pending-user-tasks");
     }
 
     public void setProcess(NodeProcess process) {
@@ -93,30 +124,139 @@ public class EventLoop implements RefCounted {
         return this.eventLoopGroup;
     }
 
-    public Future<?> submitUserTask(final Runnable task, String name) {
-        final RefHandle handle = newHandle("user-task#" + name );
-        this.taskCounter.incrementAndGet();
-        return this.userTaskExecutor.submit(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    task.run();
-                } finally {
-                    try {
-                        taskComplete();
-                    } catch (Throwable t) {
-                        EventLoop.this.process.getNodyn().handleThrowable(t);
+    public synchronized TimerWheel getTimerWheel() {
+        if (this.timerWheel == null) {
+            this.timerWheel = new TimerWheel(this);
+        }
+        return this.timerWheel;
+    }
+
+    public void submitUserTask(Runnable task, String name) {
+        submitUserTask(task, name, Phase.PENDING);
+    }
+
+    /**
+     * Queue a task to run on the user-task thread during the given phase of
+     * the next turn. The name is informational only.
+     */
+    public void submitUserTask(Runnable task, String name, Phase phase) {
+        enqueue(this.phases[phase.ordinal()], task);
+    }
+
+    /**
+     * Queue a task to run once the current turn has been through every
+     * phase, or at the end of the next turn if none is running. Meant for
+     * batching work done during a turn, not for callbacks into user code.
+     * The name is informational only.
+     */
+    public void submitTurnEndTask(Runnable task, String name) {
+        enqueue(this.turnEnd, task);
+    }
+
+    private void enqueue(PhaseQueue queue, Runnable task) {
+        synchronized (this.pendingHandle) {
+            if (this.taskCounter.getAndIncrement() == 0) {
+                this.pendingHandle.ref();
+            }
+        }
+        queue.add(task);
+        requestTurn();
+    }
+
+    void registerCheck(ImmediateCheckHandle handle) {
+        this.checkHandles.add(handle);
+    }
+
+    void requestTurn() {
+        if (this.turnScheduled.compareAndSet(false, true)) {
+            this.userTaskExecutor.execute(this.turn);
+        }
+    }
+
+    private boolean hasWork() {
+        for (PhaseQueue each : this.phases) {
+            if (!each.isEmpty()) {
+                return true;
+            }
+        }
+        if (!this.turnEnd.isEmpty()) {
+            return true;
+        }
+        for (ImmediateCheckHandle each : this.checkHandles) {
+            if (each.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One pass through the phases: expired timers, pending I/O callbacks,
+     * check (immediates), close callbacks, then turn-end tasks. Each phase
+     * runs only what was queued when it began; anything queued meanwhile
+     * waits for the next turn. The nextTick queue is drained after every
+     * callback.
+     */
+    private void runTurn() {
+        try {
+            runPhase(this.phases[Phase.TIMERS.ordinal()]);
+            runPhase(this.phases[Phase.PENDING.ordinal()]);
+            runChecks();
+            runPhase(this.phases[Phase.CLOSE.ordinal()]);
+            runPhase(this.turnEnd);
+        } finally {
+            this.turnScheduled.set(false);
+            if (hasWork() && !this.userTaskExecutor.isShutdown()) {
+                requestTurn();
+            }
+        }
+    }
+
+    private void runPhase(PhaseQueue queue) {
+        for (int i = queue.size(); i > 0; --i) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                runTask(task);
+            } finally {
+                synchronized (this.pendingHandle) {
+                    if (this.taskCounter.decrementAndGet() == 0) {
+                        this.pendingHandle.unref();
                     }
                 }
-                handle.unref();
             }
-        });
+        }
+    }
+
+    private void runChecks() {
+        for (int i = 0; i < this.checkHandles.size(); ++i) {
+            ImmediateCheckHandle each = this.checkHandles.get(i);
+            if (each.isActive()) {
+                runTask(each);
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            handleThrowable(t);
+        }
+        try {
+            if (this.process != null) {
+                this.process.doNextTick();
+            }
+        } catch (Throwable t) {
+            handleThrowable(t);
+        }
     }
 
-    private void taskComplete() {
-        int val = this.taskCounter.decrementAndGet();
-        if (val == 0) {
-            this.process.doNextTick();
+    private void handleThrowable(Throwable t) {
+        if (this.process != null) {
+            this.process.getNodyn().handleThrowable(t);
         }
     }
 
@@ -124,6 +264,31 @@ public class EventLoop implements RefCounted {
         return this.userTaskExecutor.schedule(task, time, units);
     }
 
+    /**
+     * Run short blocking work of the given category on the bounded worker pool.
+     */
+    public void submitWork(WorkerPool.Category category, final Runnable task) {
+        this.workerPool.submit(category, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    EventLoop.this.process.getNodyn().handleThrowable(t);
+                }
+            }
+        });
+    }
+
+    public WorkerPool getWorkerPool() {
+        return this.workerPool;
+    }
+
+    /**
+     * Run blocking work on an unbounded pool. Use this for long-lived work,
+     * such as waiting on a process or pumping a stream, and
+     * {@link #submitWork} for short requests.
+     */
     public Future<?> submitBlockingTask(final Runnable task) {
         return this.blockingTaskExecutor.submit(new Runnable() {
             @Override
@@ -174,6 +339,11 @@ public class EventLoop implements RefCounted {
     }
 
     protected void doShutdown() {
+        synchronized (this) {
+            if (this.timerWheel != null) {
+                this.timerWheel.stop();
+            }
+        }
         if (this.eventLoopGroup != null) {
             if (this.controlLifecycle) {
                 io.netty.util.concurrent.Future<?> future = this.eventLoopGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
@@ -182,6 +352,7 @@ public class EventLoop implements RefCounted {
                     public void operationComplete(io.netty.util.concurrent.Future<Object> future) throws Exception {
                         EventLoop.this.userTaskExecutor.shutdown();
                         EventLoop.this.blockingTaskExecutor.shutdown();
+                        EventLoop.this.workerPool.shutdown();
                         EventLoop.this.latch.countDown();
                     }
                 });
@@ -189,6 +360,7 @@ public class EventLoop implements RefCounted {
             } else {
                 this.userTaskExecutor.shutdown();
                 this.blockingTaskExecutor.shutdown();
+                this.workerPool.shutdown();
                 this.latch.countDown();
             }
 
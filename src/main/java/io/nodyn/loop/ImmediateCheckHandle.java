@@ -14,53 +14,52 @@
  * limitations under the License.
  */
 
-package io.nodyn.loop;
-
-import io.netty.channel.EventLoopGroup;
 
-import java.util.concurrent.Future;
+package io.nodyn.loop;
 
 /**
+ * A check-phase handle: while active, its callback runs once per turn of the
+ * loop, after pending I/O callbacks, and keeps the loop alive.
+ *
  * @author Bob McWhirter
  */
 public class ImmediateCheckHandle implements Runnable {
 
-
     private final EventLoop loop;
     private final Runnable callback;
-    private Future<?> future;
+    private final RefHandle handle;
+    private boolean active;
 
     public ImmediateCheckHandle(EventLoop loop, Runnable callback) {
         this.loop = loop;
         this.callback = callback;
+        this.handle = new RefHandle(loop, false, "immediate-check");
+        this.loop.registerCheck(this);
     }
 
     public boolean isActive() {
-        return this.future != null;
+        return this.active;
     }
 
     public void start() {
-        if ( this.future != null ) {
+        if ( this.active ) {
             return;
         }
-        this.future = this.loop.submitUserTask(this, "immediate-check");
+        this.active = true;
+        this.handle.ref();
+        this.loop.requestTurn();
     }
 
     public void stop() {
-        if ( this.future != null ) {
-            this.future.cancel( true );
-            this.future = null;
+        if ( ! this.active ) {
+            return;
         }
+        this.active = false;
+        this.handle.unref();
     }
 
     @Override
     public void run() {
-        try {
-            this.callback.run();
-        } catch (Throwable t){
-            this.loop.getProcess().getNodyn().handleThrowable(t);
-        } finally {
-            this.future = null;
-        }
+        this.callback.run();
     }
 }
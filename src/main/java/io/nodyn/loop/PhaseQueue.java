@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.loop;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tasks queued for one phase of the loop, with a constant-time size so a
+ * phase can bound itself to what was queued when it started.
+ */
+class PhaseQueue {
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    void add(Runnable task) {
+        this.tasks.add(task);
+        this.size.incrementAndGet();
+    }
+
+    Runnable poll() {
+        Runnable task = this.tasks.poll();
+        if (task != null) {
+            this.size.decrementAndGet();
+        }
+        return task;
+    }
+
+    int size() {
+        return this.size.get();
+    }
+
+    boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.loop;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded pool for short blocking work, the counterpart of libuv's
+ * threadpool. Long-lived blocking work, such as waiting on a child process
+ * or pumping a stream, belongs on {@link EventLoop#submitBlockingTask}
+ * instead, since it would pin a worker indefinitely.
+ *
+ * <p>Each {@link Category} has its own queue. Idle workers serve the queues
+ * round-robin, and while there is more than one worker no category may
+ * occupy all of them, so a flood of fs requests cannot starve zlib or
+ * crypto.</p>
+ *
+ * <p>The number of workers comes from <code>UV_THREADPOOL_SIZE</code>
+ * (default 4, at most 128), or the <code>nodyn.threadpool.size</code> system
+ * property. With <code>nodyn.threadpool.virtual=true</code> on a JVM that has
+ * virtual threads, fs work runs on virtual threads instead, up to
+ * <code>nodyn.threadpool.virtual.max</code> (default 256) at once, leaving the
+ * workers to the other categories. Native fs calls pin their carrier thread,
+ * so this helps most when fs work is mostly JDK I/O.</p>
+ */
+public class WorkerPool {
+
+    public enum Category {
+        FS,
+        DNS,
+        CRYPTO,
+        ZLIB,
+    }
+
+    private static final int DEFAULT_SIZE = 4;
+    private static final int MAX_SIZE = 128;
+    private static final int CATEGORIES = Category.values().length;
+
+    private final int size;
+    private final int categoryLimit;
+    private final ExecutorService virtualExecutor;
+    private final int virtualLimit;
+
+    private final ArrayDeque<Task>[] queues;
+    private final int[] active = new int[CATEGORIES];
+    private final long[] submitted = new long[CATEGORIES];
+    private final long[] completed = new long[CATEGORIES];
+    private final long[] waitNanos = new long[CATEGORIES];
+    private final long[] runNanos = new long[CATEGORIES];
+
+    private Thread[] workers;
+    private int cursor;
+    private boolean shutdown;
+
+    public static WorkerPool create() {
+        return new WorkerPool(
+                Integer.getInteger("nodyn.threadpool.size", environmentSize()),
+                Boolean.getBoolean("nodyn.threadpool.virtual"),
+                Integer.getInteger("nodyn.threadpool.virtual.max", 256));
+    }
+
+    private static int environmentSize() {
+        String size = System.getenv("UV_THREADPOOL_SIZE");
+        if (size != null) {
+            try {
+                return Integer.parseInt(size.trim());
+            } catch (NumberFormatException e) {
+                // ignored, as libuv does
+            }
+        }
+        return DEFAULT_SIZE;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    WorkerPool(int size, boolean virtual, int virtualLimit) {
+        this.size = Math.min(Math.max(size, 1), MAX_SIZE);
+        this.categoryLimit = this.size > 1 ? this.size - 1 : 1;
+        this.virtualExecutor = virtual ? virtualExecutor() : null;
+        this.virtualLimit = Math.max(virtualLimit, 1);
+        this.queues = new ArrayDeque[CATEGORIES];
+        for (int i = 0; i < CATEGORIES; ++i) {
+            this.queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @return <code>Executors.newVirtualThreadPerTaskExecutor()</code>, or <code>null</code> before Java 21
+     */
+    private static ExecutorService virtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public void submit(String category, Runnable task) {
+        submit(Category.valueOf(category.toUpperCase()), task);
+    }
+
+    public void submit(Category category, Runnable task) {
+        int index = category.ordinal();
+        Task entry = new Task(category, task);
+        synchronized (this) {
+            if (this.shutdown) {
+                throw new IllegalStateException("worker pool is shut down");
+            }
+            ++this.submitted[index];
+            if (runsVirtual(category)) {
+                if (this.active[index] < this.virtualLimit) {
+                    ++this.active[index];
+                    startVirtual(entry);
+                } else {
+                    this.queues[index].add(entry);
+                }
+                return;
+            }
+            this.queues[index].add(entry);
+            if (this.workers == null) {
+                startWorkers();
+            }
+            notify();
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            this.shutdown = true;
+            notifyAll();
+        }
+        if (this.virtualExecutor != null) {
+            this.virtualExecutor.shutdown();
+        }
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public boolean isVirtual() {
+        return this.virtualExecutor != null;
+    }
+
+    public synchronized int getQueued(String category) {
+        return this.queues[index(category)].size();
+    }
+
+    public synchronized int getActive(String category) {
+        return this.active[index(category)];
+    }
+
+    public synchronized long getSubmitted(String category) {
+        return this.submitted[index(category)];
+    }
+
+    public synchronized long getCompleted(String category) {
+        return this.completed[index(category)];
+    }
+
+    /**
+     * @return total milliseconds that completed tasks of the category spent queued
+     */
+    public synchronized double getWaitTime(String category) {
+        return this.waitNanos[index(category)] / 1e6;
+    }
+
+    /**
+     * @return total milliseconds that completed tasks of the category spent running
+     */
+    public synchronized double getRunTime(String category) {
+        return this.runNanos[index(category)] / 1e6;
+    }
+
+    private static int index(String category) {
+        return Category.valueOf(category.toUpperCase()).ordinal();
+    }
+
+    private boolean runsVirtual(Category category) {
+        return category == Category.FS && this.virtualExecutor != null;
+    }
+
+    private void startWorkers() {
+        this.workers = new Thread[this.size];
+        for (int i = 0; i < this.size; ++i) {
+            this.workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "worker-pool-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while ((task = next()) == null) {
+                    if (this.shutdown) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            run(task);
+            synchronized (this) {
+                --this.active[task.category.ordinal()];
+                // a category that was at its limit may have become eligible
+                notify();
+            }
+        }
+    }
+
+    /**
+     * Take the next task round-robin across categories. Called with the lock held.
+     */
+    private Task next() {
+        for (int i = 0; i < CATEGORIES; ++i) {
+            int index = (this.cursor + i) % CATEGORIES;
+            if (this.queues[index].isEmpty() || this.active[index] >= this.categoryLimit) {
+                continue;
+            }
+            if (runsVirtual(Category.values()[index])) {
+                continue;
+            }
+            this.cursor = (index + 1) % CATEGORIES;
+            ++this.active[index];
+            return this.queues[index].poll();
+        }
+        return null;
+    }
+
+    private void startVirtual(final Task first) {
+        this.virtualExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Task task = first;
+                int index = first.category.ordinal();
+                while (task != null) {
+                    WorkerPool.this.run(task);
+                    synchronized (WorkerPool.this) {
+                        task = WorkerPool.this.queues[index].poll();
+                        if (task == null) {
+                            --WorkerPool.this.active[index];
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void run(Task task) {
+        long started = System.nanoTime();
+        try {
+            task.task.run();
+        } catch (Throwable t) {
+            // keep the worker alive
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, t);
+        } finally {
+            long finished = System.nanoTime();
+            int index = task.category.ordinal();
+            synchronized (this) {
+                ++this.completed[index];
+                this.waitNanos[index] += started - task.queued;
+                this.runNanos[index] += finished - started;
+            }
+        }
+    }
+
+    private static final class Task {
+        final Category category;
+        final Runnable task;
+        final long queued = System.nanoTime();
+
+        Task(Category category, Runnable task) {
+            this.category = category;
+            this.task = task;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package io.nodyn.netty;
 
 import io.netty.channel.ChannelDuplexHandler;
 import io.nodyn.CallbackResult;
+import io.nodyn.EventSource;
 import io.nodyn.NodeProcess;
 import io.nodyn.async.AsyncWrap;
 
@@ -34,15 +35,27 @@ public class AbstractEventSourceHandler extends ChannelDuplexHandler {
         this.eventSource = eventSource;
     }
 
+    protected static int eventId(String event) {
+        return EventSource.eventId( event );
+    }
+
     public void emit(String event) {
-         this.eventSource.emit( event, CallbackResult.EMPTY_SUCCESS );
+        emit( eventId( event ) );
     }
 
     public void emit(String event, Object value) {
-        this.eventSource.emit( event, CallbackResult.createSuccess( value ) );
+        emit( eventId( event ), value );
     }
-    
+
     public void emit(String event, Object...values) {
-        this.eventSource.emit( event, CallbackResult.createSuccess( values ) );
+        this.eventSource.emit( eventId( event ), CallbackResult.createSuccess( values ) );
+    }
+
+    public void emit(int event) {
+        this.eventSource.emit( event, CallbackResult.EMPTY_SUCCESS );
+    }
+
+    public void emit(int event, Object value) {
+        this.eventSource.emit( event, CallbackResult.createSuccess( value ) );
     }
 }
@@ -27,6 +27,8 @@ import io.nodyn.async.AsyncWrap;
  */
 public class DataEventHandler extends AbstractEventSourceHandler {
 
+    private static final int DATA = eventId("data");
+
     public DataEventHandler(NodeProcess process, AsyncWrap eventSource) {
         super(process, eventSource);
     }
@@ -34,7 +36,7 @@ public class DataEventHandler extends AbstractEventSourceHandler {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        emit("data", ReferenceCountUtil.retain(msg));
+        emit(DATA, ReferenceCountUtil.retain(msg));
         super.channelRead(ctx, msg);
     }
 }
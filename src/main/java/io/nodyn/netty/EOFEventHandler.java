@@ -17,7 +17,6 @@
 package io.nodyn.netty;
 
 import io.netty.channel.ChannelHandlerContext;
-import io.nodyn.CallbackResult;
 import io.nodyn.NodeProcess;
 import io.nodyn.async.AsyncWrap;
 
@@ -26,13 +25,15 @@ import io.nodyn.async.AsyncWrap;
  */
 public class EOFEventHandler extends AbstractEventSourceHandler {
 
+    private static final int EOF = eventId("eof");
+
     public EOFEventHandler(NodeProcess process, AsyncWrap eventSource) {
         super(process, eventSource);
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        emit("eof", CallbackResult.EMPTY_SUCCESS);
+        emit(EOF);
         super.channelInactive(ctx);
     }
 }
@@ -24,6 +24,7 @@ import io.nodyn.NodeProcess;
 
 import java.net.SocketAddress;
 import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
 
 /**
  * @author Bob McWhirter
@@ -35,7 +36,11 @@ public abstract class AbstractNioStreamChannel extends AbstractNioByteChannel {
     protected final ChannelMetadata metadata;
 
     protected AbstractNioStreamChannel(NodeProcess process, Pipe pipe) {
-        super(null, pipe.source());
+        this(process, pipe.source());
+    }
+
+    protected AbstractNioStreamChannel(NodeProcess process, SelectableChannel channel) {
+        super(null, channel);
         this.process = process;
         this.config = new DefaultChannelConfig(this);
         this.metadata = new ChannelMetadata(false);
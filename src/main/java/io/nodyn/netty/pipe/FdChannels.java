@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.netty.pipe;
+
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+import io.nodyn.fs.UnsafeFs;
+import jnr.posix.FileStat;
+import jnr.posix.POSIX;
+
+import java.io.FileDescriptor;
+import java.lang.reflect.Constructor;
+import java.nio.channels.Pipe;
+import java.nio.channels.spi.SelectorProvider;
+
+/**
+ * Wraps existing file descriptors in the JDK's selectable pipe channels, so
+ * they can be registered with the NIO event loop directly instead of being
+ * pumped through a blocking stream by a dedicated thread.
+ *
+ * <p>The channel implementations are not public, and are reached through
+ * their private constructors. That works on JDK 7 and 8. JDK 9 and later
+ * refuse the access unless <code>java.base/sun.nio.ch</code> and
+ * <code>java.base/java.io</code> are opened to nodyn with
+ * <code>--add-opens</code>; without that, and on platforms without these
+ * classes, the factories return <code>null</code> and callers keep the
+ * pumped channels. The fallback is logged once at debug level.</p>
+ */
+public final class FdChannels {
+
+    private static final InternalLogger LOG = InternalLoggerFactory.getInstance(FdChannels.class);
+
+    private static Throwable unavailable;
+
+    private static final Constructor<?> SOURCE = constructor("sun.nio.ch.SourceChannelImpl");
+    private static final Constructor<?> SINK = constructor("sun.nio.ch.SinkChannelImpl");
+
+    static {
+        if (!isSupported()) {
+            LOG.debug("Selectable descriptor channels are unavailable on Java " + System.getProperty("java.version")
+                    + "; pipes and IPC fall back to pump threads", unavailable);
+        }
+    }
+
+    private FdChannels() {
+    }
+
+    public static boolean isSupported() {
+        return SOURCE != null && SINK != null;
+    }
+
+    /**
+     * Whether <code>fd</code> is a pipe or socket, which the selector can
+     * wait on. Regular files cannot be registered and terminals are shared
+     * with the parent process, so neither qualifies.
+     */
+    public static boolean isSelectable(POSIX posix, int fd) {
+        if (!isSupported()) {
+            return false;
+        }
+        try {
+            FileStat stat = posix.fstat(fd);
+            return stat.isFifo() || stat.isSocket();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * A readable, selectable channel over <code>fd</code>, or <code>null</code>.
+     * Closing the channel closes the descriptor.
+     */
+    public static Pipe.SourceChannel openSource(int fd) {
+        return (Pipe.SourceChannel) open(SOURCE, fd);
+    }
+
+    /**
+     * A writable, selectable channel over <code>fd</code>, or <code>null</code>.
+     * Closing the channel closes the descriptor.
+     */
+    public static Pipe.SinkChannel openSink(int fd) {
+        return (Pipe.SinkChannel) open(SINK, fd);
+    }
+
+    static Object open(Constructor<?> constructor, int fd) {
+        if (constructor == null) {
+            return null;
+        }
+        try {
+            FileDescriptor fileDescriptor = UnsafeFs.createFileDescriptor(fd);
+            return constructor.newInstance(SelectorProvider.provider(), fileDescriptor);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static Constructor<?> constructor(String className) {
+        if (System.getProperty("os.name", "").contains("Windows")) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = Class.forName(className).getDeclaredConstructor(SelectorProvider.class, FileDescriptor.class);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (Exception | LinkageError e) {
+            // InaccessibleObjectException on JDK 9+ is a RuntimeException
+            if (unavailable == null) {
+                unavailable = e;
+            }
+            return null;
+        }
+    }
+}
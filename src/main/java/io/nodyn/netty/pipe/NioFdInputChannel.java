@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.netty.pipe;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import io.nodyn.NodeProcess;
+
+import java.nio.channels.Pipe;
+
+/**
+ * Reads a pipe or socket descriptor straight from the event loop's selector,
+ * without a pump thread or intermediate copies, where {@link FdChannels} can
+ * wrap the descriptor; on JDK 9 and later that needs <code>--add-opens</code>.
+ *
+ * @see FdChannels
+ * @see NioInputStreamChannel for descriptors that cannot be selected on
+ */
+public class NioFdInputChannel extends AbstractNioStreamChannel {
+
+    /**
+     * @return the channel, or <code>null</code> if <code>fd</code> cannot be selected on
+     */
+    public static NioFdInputChannel create(NodeProcess process, int fd) {
+        if (!FdChannels.isSelectable(process.getPosix(), fd)) {
+            return null;
+        }
+        Pipe.SourceChannel source = FdChannels.openSource(fd);
+        if (source == null) {
+            return null;
+        }
+        return new NioFdInputChannel(process, source);
+    }
+
+    protected NioFdInputChannel(NodeProcess process, Pipe.SourceChannel source) {
+        super(process, source);
+    }
+
+    @Override
+    protected Pipe.SourceChannel javaChannel() {
+        return (Pipe.SourceChannel) super.javaChannel();
+    }
+
+    @Override
+    protected long doWriteFileRegion(FileRegion region) throws Exception {
+        return 0;
+    }
+
+    @Override
+    protected int doReadBytes(ByteBuf byteBuf) throws Exception {
+        return byteBuf.writeBytes(javaChannel(), byteBuf.writableBytes());
+    }
+
+    @Override
+    protected int doWriteBytes(ByteBuf buf) throws Exception {
+        return 0;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        javaChannel().close();
+    }
+
+    @Override
+    public boolean isActive() {
+        return javaChannel().isOpen();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.netty.pipe;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import io.nodyn.NodeProcess;
+
+import java.nio.channels.Pipe;
+
+/**
+ * Writes a pipe or socket descriptor from the event loop, waiting on
+ * <code>OP_WRITE</code> when it is full, instead of handing every write to
+ * a blocking-pool thread. Only used where {@link FdChannels} can wrap the
+ * descriptor; on JDK 9 and later that needs <code>--add-opens</code>.
+ *
+ * @see FdChannels
+ * @see NioOutputStreamChannel for descriptors that cannot be selected on
+ */
+public class NioFdOutputChannel extends AbstractNioStreamChannel {
+
+    /**
+     * @return the channel, or <code>null</code> if <code>fd</code> cannot be selected on.
+     *         Standard output and error are never wrapped: making them
+     *         non-blocking would break <code>System.out</code> and <code>System.err</code>.
+     */
+    public static NioFdOutputChannel create(NodeProcess process, int fd) {
+        if (fd <= 2 || !FdChannels.isSelectable(process.getPosix(), fd)) {
+            return null;
+        }
+        Pipe.SinkChannel sink = FdChannels.openSink(fd);
+        if (sink == null) {
+            return null;
+        }
+        return new NioFdOutputChannel(process, sink);
+    }
+
+    protected NioFdOutputChannel(NodeProcess process, Pipe.SinkChannel sink) {
+        super(process, sink);
+    }
+
+    @Override
+    protected Pipe.SinkChannel javaChannel() {
+        return (Pipe.SinkChannel) super.javaChannel();
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        // write-only; a sink cannot be registered for OP_READ
+    }
+
+    @Override
+    protected long doWriteFileRegion(FileRegion region) throws Exception {
+        return region.transferTo(javaChannel(), region.transfered());
+    }
+
+    @Override
+    protected int doReadBytes(ByteBuf byteBuf) throws Exception {
+        return -1;
+    }
+
+    @Override
+    protected int doWriteBytes(ByteBuf buf) throws Exception {
+        return buf.readBytes(javaChannel(), buf.readableBytes());
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        javaChannel().close();
+    }
+
+    @Override
+    public boolean isActive() {
+        return javaChannel().isOpen();
+    }
+}
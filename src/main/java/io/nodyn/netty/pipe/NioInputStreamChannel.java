@@ -30,6 +30,8 @@ import java.nio.channels.Pipe;
  */
 public class NioInputStreamChannel extends AbstractNioStreamChannel {
 
+    private static final int PUMP_BUFFER_SIZE = 64 * 1024;
+
     private final InputStream in;
     private final Pipe pipe;
 
@@ -50,16 +52,26 @@ public class NioInputStreamChannel extends AbstractNioStreamChannel {
         return (Pipe.SourceChannel) super.javaChannel();
     }
 
+    /**
+     * Reads as much as the stream has available per call, so piped or
+     * redirected input moves in large chunks while a raw-mode terminal still
+     * hands over each keystroke as soon as it arrives.
+     */
     protected void startPump() {
         this.process.getEventLoop().submitBlockingTask(new Runnable() {
 
             @Override
             public void run() {
-                byte[] buf = new byte[1024];
+                byte[] buf = new byte[PUMP_BUFFER_SIZE];
+                ByteBuffer chunk = ByteBuffer.wrap(buf);
                 int numRead = 0;
                 try {
                     while ((numRead = NioInputStreamChannel.this.in.read(buf)) >= 0) {
-                        NioInputStreamChannel.this.pipe.sink().write(ByteBuffer.wrap(buf, 0, numRead));
+                        chunk.limit(numRead).position(0);
+                        while (chunk.hasRemaining()) {
+                            NioInputStreamChannel.this.pipe.sink().write(chunk);
+                        }
+                        chunk.clear();
                     }
                     NioInputStreamChannel.this.pipe.sink().close();
                 } catch (IOException e) {
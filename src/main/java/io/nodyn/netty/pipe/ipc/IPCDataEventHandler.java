@@ -28,19 +28,16 @@ import io.nodyn.netty.AbstractEventSourceHandler;
  */
 public class IPCDataEventHandler extends AbstractEventSourceHandler {
 
+    private static final int DATA_WITH_HANDLE = eventId("dataWithHandle");
+
     public IPCDataEventHandler(NodeProcess process, AsyncWrap eventSource) {
         super(process, eventSource);
     }
 
 
     @Override
-    public void channelRead(ChannelHandlerContext ctx, final Object msg) throws Exception {
-        this.process.getEventLoop().submitUserTask(new Runnable() {
-            @Override
-            public void run() {
-                emit("dataWithHandle", ReferenceCountUtil.retain(msg));
-            }
-        }, "ipc-data-with-handle" );
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        emit(DATA_WITH_HANDLE, ReferenceCountUtil.retain(msg));
         super.channelRead(ctx, msg);
     }
 }
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.netty.pipe.ipc;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelMetadata;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.DefaultChannelConfig;
+import io.netty.channel.nio.AbstractNioMessageChannel;
+import io.netty.channel.nio.NioTask;
+import io.nodyn.netty.pipe.FdChannels;
+import io.nodyn.pipe.PipeWrap;
+import jnr.constants.platform.Errno;
+import jnr.constants.platform.SocketLevel;
+import jnr.posix.CmsgHdr;
+import jnr.posix.MsgHdr;
+import jnr.posix.POSIX;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.util.List;
+
+/**
+ * IPC channel over a socketpair descriptor that is registered with the NIO
+ * event loop. Readiness comes from the selector; the reads and writes
+ * themselves go through <code>recvmsg</code>/<code>sendmsg</code> so that
+ * descriptors can travel alongside messages as <code>SCM_RIGHTS</code>.
+ *
+ * <p>The selectable wrapper is a pipe source, which only supports
+ * <code>OP_READ</code>. A write that would block instead waits for
+ * <code>OP_WRITE</code> on a pipe sink over a <code>dup()</code> of the same
+ * socket, registered with the event loop the first time it is needed.</p>
+ *
+ * <p>Both wrappers come from {@link FdChannels}, which reaches private JDK
+ * classes: available on JDK 7 and 8, and on JDK 9 and later only with
+ * <code>--add-opens</code>. Otherwise the thread-pumped channel is used.</p>
+ *
+ * @see DuplexIPCChannel the thread-pumped fallback
+ */
+public class NioIPCChannel extends AbstractNioMessageChannel {
+
+    private static final int SCM_RIGHTS = 0x01;
+    private static final int EAGAIN = Errno.EAGAIN.intValue();
+    private static final int EWOULDBLOCK = Errno.EWOULDBLOCK.intValue();
+
+    private final POSIX posix;
+    private final int fd;
+    private final Pipe.SinkChannel writeChannel;
+    private final ChannelConfig config;
+    private final ChannelMetadata metadata;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1024);
+
+    private boolean inputClosed;
+    private Object fdSentWith;
+    private boolean writeRegistered;
+    private SelectionKey writeKey;
+
+    private final NioTask<Pipe.SinkChannel> writeReady = new NioTask<Pipe.SinkChannel>() {
+        @Override
+        public void channelReady(Pipe.SinkChannel ch, SelectionKey key) throws Exception {
+            writeKey = key;
+            key.interestOps(0);
+            if (isOpen()) {
+                flush();
+            }
+        }
+
+        @Override
+        public void channelUnregistered(Pipe.SinkChannel ch, Throwable cause) throws Exception {
+            writeKey = null;
+            writeRegistered = false;
+        }
+    };
+
+    /**
+     * @return the channel, or <code>null</code> if the descriptor cannot be selected on
+     */
+    public static NioIPCChannel create(PipeWrap pipe, POSIX posix, int fd) {
+        NioIPCChannel channel = open(posix, fd);
+        if (channel != null) {
+            channel.pipeline().addLast("emit.data", new IPCDataEventHandler(pipe.getProcess(), pipe));
+        }
+        return channel;
+    }
+
+    /**
+     * The bare channel, delivering {@link IPCRecord}s to whatever handlers the caller adds.
+     */
+    static NioIPCChannel open(POSIX posix, int fd) {
+        Pipe.SourceChannel source = FdChannels.openSource(fd);
+        if (source == null) {
+            return null;
+        }
+        int writeFd = posix.dup(fd);
+        Pipe.SinkChannel sink = writeFd < 0 ? null : FdChannels.openSink(writeFd);
+        if (sink == null) {
+            if (writeFd >= 0) {
+                posix.close(writeFd);
+            }
+            return null;
+        }
+        return new NioIPCChannel(posix, fd, source, sink);
+    }
+
+    protected NioIPCChannel(POSIX posix, int fd, Pipe.SourceChannel channel, Pipe.SinkChannel writeChannel) {
+        super(null, channel, channel.validOps());
+        this.posix = posix;
+        this.fd = fd;
+        this.writeChannel = writeChannel;
+        this.config = new DefaultChannelConfig(this);
+        this.metadata = new ChannelMetadata(false);
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return this.config;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return this.metadata;
+    }
+
+    @Override
+    public boolean isActive() {
+        return javaChannel().isOpen();
+    }
+
+    @Override
+    protected int doReadMessages(List<Object> buf) throws Exception {
+        if (this.inputClosed) {
+            return -1;
+        }
+
+        this.readBuffer.clear();
+        MsgHdr message = this.posix.allocateMsgHdr();
+        CmsgHdr control = message.allocateControl(4);
+        message.setIov(new ByteBuffer[]{this.readBuffer});
+
+        int numRead = this.posix.recvmsg(this.fd, message, 0);
+        if (numRead < 0) {
+            int errno = this.posix.errno();
+            if (errno == EAGAIN || errno == EWOULDBLOCK) {
+                return 0;
+            }
+        }
+
+        // EOF, an error, or the single zero byte a closing peer sends
+        if (numRead <= 0 || (numRead == 1 && this.readBuffer.get(0) == 0)) {
+            this.inputClosed = true;
+            buf.add(new IPCRecord(null, -1));
+            return -1;
+        }
+
+        this.readBuffer.position(0).limit(numRead);
+        ByteBuf nettyBuf = alloc().buffer(numRead);
+        nettyBuf.writeBytes(this.readBuffer);
+
+        int passedFd = -1;
+        if (control.getType() == SCM_RIGHTS && control.getLevel() == SocketLevel.SOL_SOCKET.intValue()) {
+            passedFd = control.getData().order(ByteOrder.nativeOrder()).getInt();
+        }
+        buf.add(new IPCRecord(nettyBuf, passedFd));
+        return 1;
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        for (;;) {
+            Object msg = in.current();
+            if (msg == null) {
+                break;
+            }
+            if (!doWriteMessage(msg, in)) {
+                awaitWritable();
+                break;
+            }
+            in.remove();
+        }
+    }
+
+    @Override
+    protected boolean doWriteMessage(Object msg, ChannelOutboundBuffer in) throws Exception {
+        ByteBuf buf;
+        int sendFd = -1;
+        if (msg instanceof IPCRecord) {
+            buf = ((IPCRecord) msg).getBuffer();
+            sendFd = ((IPCRecord) msg).getFd();
+        } else if (msg instanceof ByteBuf) {
+            buf = (ByteBuf) msg;
+        } else {
+            return true;
+        }
+
+        if (buf == null || !buf.isReadable()) {
+            return true;
+        }
+
+        // after a partial write the descriptor has already gone with the first bytes
+        if (this.fdSentWith == msg) {
+            sendFd = -1;
+        }
+
+        int written = send(buf, sendFd);
+        if (written < 0) {
+            return false;
+        }
+        if (sendFd >= 0) {
+            this.fdSentWith = msg;
+        }
+        buf.skipBytes(written);
+        if (buf.isReadable()) {
+            return false;
+        }
+
+        this.fdSentWith = null;
+        if (msg instanceof IPCRecord) {
+            buf.release();
+        }
+        return true;
+    }
+
+    private int send(ByteBuf buf, int sendFd) throws IOException {
+        int length = buf.readableBytes();
+        if (this.writeBuffer.capacity() < length) {
+            this.writeBuffer = ByteBuffer.allocateDirect(Math.max(length, this.writeBuffer.capacity() * 2));
+        }
+        this.writeBuffer.clear();
+        buf.getBytes(buf.readerIndex(), this.writeBuffer.duplicate());
+        this.writeBuffer.limit(length);
+
+        MsgHdr message = this.posix.allocateMsgHdr();
+        message.setIov(new ByteBuffer[]{this.writeBuffer});
+        if (sendFd >= 0) {
+            attachFd(message, sendFd);
+        }
+
+        int result = this.posix.sendmsg(this.fd, message, 0);
+        if (result < 0) {
+            int errno = this.posix.errno();
+            if (errno == EAGAIN || errno == EWOULDBLOCK) {
+                return -1;
+            }
+            throw new IOException("sendmsg failed: " + Errno.valueOf(errno));
+        }
+        return result;
+    }
+
+    private static void attachFd(MsgHdr message, int fd) {
+        CmsgHdr control = message.allocateControl(4);
+        ByteBuffer fdBuf = ByteBuffer.allocateDirect(4);
+        fdBuf.order(ByteOrder.nativeOrder());
+        fdBuf.putInt(fd);
+        fdBuf.flip();
+        control.setData(fdBuf);
+        control.setType(SCM_RIGHTS);
+        control.setLevel(SocketLevel.SOL_SOCKET.intValue());
+    }
+
+    private void awaitWritable() throws IOException {
+        if (this.writeKey != null) {
+            this.writeKey.interestOps(SelectionKey.OP_WRITE);
+        } else if (!this.writeRegistered) {
+            this.writeRegistered = true;
+            this.writeChannel.configureBlocking(false);
+            eventLoop().register(this.writeChannel, SelectionKey.OP_WRITE, this.writeReady);
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (!this.inputClosed) {
+            // tell the peer we are going away, as DuplexIPCChannel does
+            MsgHdr message = this.posix.allocateMsgHdr();
+            ByteBuffer marker = ByteBuffer.allocateDirect(1);
+            marker.put((byte) 0);
+            marker.flip();
+            message.setIov(new ByteBuffer[]{marker});
+            this.posix.sendmsg(this.fd, message, 0);
+        }
+        this.writeChannel.close();
+        javaChannel().close();
+    }
+
+    @Override
+    protected boolean doConnect(SocketAddress remoteAddress, SocketAddress localAddress) throws Exception {
+        return true;
+    }
+
+    @Override
+    protected void doFinishConnect() throws Exception {
+        // empty
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return null;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return null;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        // empty
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        // empty
+    }
+}
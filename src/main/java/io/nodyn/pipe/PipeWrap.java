@@ -1,16 +1,21 @@
 package io.nodyn.pipe;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.nodyn.NodeProcess;
 import io.nodyn.fs.UnsafeFs;
 import io.nodyn.netty.DataEventHandler;
 import io.nodyn.netty.EOFEventHandler;
+import io.nodyn.netty.pipe.AbstractNioStreamChannel;
 import io.nodyn.netty.pipe.NioDuplexStreamChannel;
+import io.nodyn.netty.pipe.NioFdInputChannel;
+import io.nodyn.netty.pipe.NioFdOutputChannel;
 import io.nodyn.netty.pipe.NioInputStreamChannel;
 import io.nodyn.netty.pipe.NioOutputStreamChannel;
 import io.nodyn.netty.pipe.ipc.DuplexIPCChannel;
 import io.nodyn.netty.pipe.ipc.IPCRecord;
+import io.nodyn.netty.pipe.ipc.NioIPCChannel;
 import io.nodyn.stream.StreamWrap;
 import jnr.constants.platform.AddressFamily;
 import jnr.constants.platform.Sock;
@@ -92,9 +97,10 @@ public class PipeWrap extends StreamWrap {
     }
 
     protected void openInput(int fd, FileDescriptor fileDescriptor) throws IOException {
-        FileInputStream in = new FileInputStream(fileDescriptor);
-
-        NioInputStreamChannel nioChannel = NioInputStreamChannel.create(this.process, in);
+        AbstractNioStreamChannel nioChannel = NioFdInputChannel.create(this.process, fd);
+        if (nioChannel == null) {
+            nioChannel = NioInputStreamChannel.create(this.process, new FileInputStream(fileDescriptor));
+        }
         nioChannel.config().setAutoRead(false);
 
         //nioChannel.pipeline().addLast("debug", new DebugHandler("input:" + fd + " // " + process.getPosix().getpid()));
@@ -113,9 +119,10 @@ public class PipeWrap extends StreamWrap {
     }
 
     protected void openOutput(int fd, FileDescriptor fileDescriptor) throws IOException {
-        FileOutputStream out = new FileOutputStream(fileDescriptor);
-
-        NioOutputStreamChannel nioChannel = NioOutputStreamChannel.create(this.process, out);
+        Channel nioChannel = NioFdOutputChannel.create(this.process, fd);
+        if (nioChannel == null) {
+            nioChannel = NioOutputStreamChannel.create(this.process, new FileOutputStream(fileDescriptor));
+        }
         nioChannel.config().setAutoRead(false);
         this.channelFuture = nioChannel.newSucceededFuture();
         //nioChannel.pipeline().addLast("debug", new DebugHandler("output:" + fd + " // " + process.getPosix().getpid()));
@@ -126,7 +133,10 @@ public class PipeWrap extends StreamWrap {
 
     protected void openDuplex(int fd, FileDescriptor fileDescriptor) throws NoSuchFieldException, IllegalAccessException, IOException {
         if (this.ipc) {
-            DuplexIPCChannel channel = new DuplexIPCChannel(this, process.getPosix(), fd);
+            Channel channel = NioIPCChannel.create(this, process.getPosix(), fd);
+            if (channel == null) {
+                channel = new DuplexIPCChannel(this, process.getPosix(), fd);
+            }
             //channel.pipeline().addLast("debug", new DebugHandler("ipc"));
             this.channelFuture = channel.newSucceededFuture();
             process.getEventLoop().getEventLoopGroup().register(channel);
@@ -17,12 +17,15 @@
 package io.nodyn.process;
 
 import io.nodyn.CallbackResult;
+import io.nodyn.EventSource;
 
 /**
  * @author Bob McWhirter
  */
 public class ExitWaiter implements Runnable {
 
+    private static final int EXIT = EventSource.eventId("exit");
+
     private final ProcessWrap process;
 
     public ExitWaiter(ProcessWrap process) {
@@ -34,10 +37,10 @@ public class ExitWaiter implements Runnable {
         try {
             int exitCode = this.process.waitFor();
             int signal = this.process.getSignal();
-            this.process.emit("exit", CallbackResult.createSuccess(exitCode, signal));
+            this.process.emit(EXIT, CallbackResult.createSuccess(exitCode, signal));
         } catch (InterruptedException e) {
             this.process.getProcess().getNodyn().handleThrowable(e);
-            this.process.emit("exit", CallbackResult.createError(e));
+            this.process.emit(EXIT, CallbackResult.createError(e));
         }
     }
 }
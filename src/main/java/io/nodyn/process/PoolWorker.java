@@ -0,0 +1,321 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.process;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import jnr.constants.platform.Fcntl;
+import jnr.constants.platform.Signal;
+import jnr.constants.platform.WaitFlags;
+import jnr.posix.POSIX;
+import jnr.posix.SpawnFileAction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One long-running child of a {@link ProcessPool}, spoken to with
+ * length-prefixed frames over its stdin and stdout. Calls are blocking and
+ * only one may be outstanding at a time.
+ *
+ * <p>A frame larger than a pipe is sure to hold is written from another
+ * thread while the reply is read, so a worker that starts replying before
+ * it has read the whole request cannot leave both sides blocked.</p>
+ */
+final class PoolWorker {
+
+    static final int HEADER_LENGTH = 4;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // PIPE_BUF, the least a Linux pipe holds
+    private static final int INLINE_WRITE_SIZE = 4096;
+
+    private static final int WNOHANG = WaitFlags.WNOHANG.intValue();
+    private static final int FD_CLOEXEC = 1;
+    private static final long EXIT_GRACE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * A failed call, carrying the error code reported to JavaScript.
+     */
+    static final class Failure extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final String code;
+
+        Failure(String code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        String getCode() {
+            return this.code;
+        }
+    }
+
+    private final POSIX posix;
+    private final Executor writer;
+    private final int pid;
+    private final int input;
+    private final int output;
+    private final byte[] scratch = new byte[CHUNK_SIZE];
+    private final byte[] writeScratch = new byte[CHUNK_SIZE];
+    private final ByteBuf header = Unpooled.buffer(HEADER_LENGTH);
+
+    private int jobs;
+    private boolean calling;
+    private boolean timedOut;
+    private boolean dead;
+
+    private PoolWorker(POSIX posix, Executor writer, int pid, int input, int output) {
+        this.posix = posix;
+        this.writer = writer;
+        this.pid = pid;
+        this.input = input;
+        this.output = output;
+    }
+
+    /**
+     * @param writer runs the writes of large requests
+     * @return the worker, or <code>null</code> if the command could not be started
+     */
+    static PoolWorker spawn(POSIX posix, Executor writer, String file, List<String> argv, List<String> envp) {
+        int[] in = new int[2];
+        int[] out = new int[2];
+        if (posix.pipe(in) < 0) {
+            return null;
+        }
+        if (posix.pipe(out) < 0) {
+            posix.close(in[0]);
+            posix.close(in[1]);
+            return null;
+        }
+        // otherwise children spawned later inherit our ends and the worker never sees EOF
+        for (int fd : new int[]{in[0], in[1], out[0], out[1]}) {
+            posix.fcntlInt(fd, Fcntl.F_SETFD, FD_CLOEXEC);
+        }
+
+        List<SpawnFileAction> fileActions = new ArrayList<>();
+        fileActions.add(SpawnFileAction.dup(in[0], 0));
+        fileActions.add(SpawnFileAction.dup(out[1], 1));
+
+        long result = posix.posix_spawnp(file, fileActions, argv, envp);
+
+        posix.close(in[0]);
+        posix.close(out[1]);
+
+        if (result <= 0) {
+            posix.close(in[1]);
+            posix.close(out[0]);
+            return null;
+        }
+        return new PoolWorker(posix, writer, (int) result, in[1], out[0]);
+    }
+
+    int getPid() {
+        return this.pid;
+    }
+
+    int getJobs() {
+        return this.jobs;
+    }
+
+    boolean isDead() {
+        return this.dead;
+    }
+
+    /**
+     * Send one request frame and wait for its reply frame.
+     */
+    ByteBuf call(ByteBuf request) throws Failure {
+        if (this.dead) {
+            throw new Failure("EPIPE", "worker " + this.pid + " has exited");
+        }
+        synchronized (this) {
+            this.calling = true;
+        }
+        try {
+            FutureTask<Void> writing = null;
+            if (HEADER_LENGTH + request.readableBytes() <= INLINE_WRITE_SIZE) {
+                write(request);
+            } else {
+                writing = new FutureTask<>(new Writing(request));
+                this.writer.execute(writing);
+            }
+            ByteBuf reply = readReply();
+            if (writing != null) {
+                awaitWrite(writing);
+            }
+            ++this.jobs;
+            return reply;
+        } catch (Failure e) {
+            this.dead = true;
+            synchronized (this) {
+                if (this.timedOut) {
+                    throw new Failure("ETIMEDOUT", "worker " + this.pid + " timed out");
+                }
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                this.calling = false;
+            }
+        }
+    }
+
+    /**
+     * A zero-length request, which a healthy worker answers with a zero-length reply.
+     */
+    boolean ping() {
+        try {
+            ByteBuf reply = call(Unpooled.EMPTY_BUFFER);
+            // health checks are not jobs
+            --this.jobs;
+            return reply.readableBytes() == 0;
+        } catch (Failure e) {
+            return false;
+        }
+    }
+
+    /**
+     * Kill a worker whose call is taking too long; the blocked call fails with <code>ETIMEDOUT</code>.
+     */
+    synchronized void timeOut() {
+        if (this.calling) {
+            this.timedOut = true;
+            this.posix.kill(this.pid, Signal.SIGKILL.intValue());
+        }
+    }
+
+    /**
+     * Close the worker's stdin and wait for it to exit, killing it if it lingers.
+     */
+    void retire() throws InterruptedException {
+        this.dead = true;
+        this.posix.close(this.input);
+        this.posix.close(this.output);
+
+        int[] status = new int[1];
+        long deadline = System.nanoTime() + EXIT_GRACE_NANOS;
+        long backoff = 1;
+        while (this.posix.waitpid(this.pid, status, WNOHANG) == 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                this.posix.kill(this.pid, Signal.SIGKILL.intValue());
+                this.posix.waitpid(this.pid, status, 0);
+                break;
+            }
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, 16);
+        }
+    }
+
+    private ByteBuf readReply() throws Failure {
+        this.header.clear();
+        read(this.header, HEADER_LENGTH);
+        int length = this.header.getInt(0);
+        if (length < 0) {
+            throw new Failure("EPROTO", "worker " + this.pid + " sent a frame of " + (length & 0xFFFFFFFFL) + " bytes");
+        }
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+        // handed to JavaScript, which never releases it
+        ByteBuf reply = Unpooled.buffer(length);
+        read(reply, length);
+        return reply;
+    }
+
+    // Only once the reply has been read; a failed read leaves a writer
+    // blocked on a stuck worker to be released when retire() closes its input.
+    private void awaitWrite(FutureTask<Void> writing) throws Failure {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    writing.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Failure) {
+                        throw (Failure) e.getCause();
+                    }
+                    throw new Failure("EPIPE", "worker " + this.pid + ": " + e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Writing implements Callable<Void> {
+        private final ByteBuf request;
+
+        Writing(ByteBuf request) {
+            this.request = request;
+        }
+
+        @Override
+        public Void call() throws Failure {
+            write(this.request);
+            return null;
+        }
+    }
+
+    private void write(ByteBuf request) throws Failure {
+        int length = request.readableBytes();
+        this.writeScratch[0] = (byte) (length >>> 24);
+        this.writeScratch[1] = (byte) (length >>> 16);
+        this.writeScratch[2] = (byte) (length >>> 8);
+        this.writeScratch[3] = (byte) length;
+        int pending = HEADER_LENGTH;
+        int offset = request.readerIndex();
+        int remaining = length;
+        while (pending > 0 || remaining > 0) {
+            int chunk = Math.min(remaining, CHUNK_SIZE - pending);
+            request.getBytes(offset, this.writeScratch, pending, chunk);
+            offset += chunk;
+            remaining -= chunk;
+            pending += chunk;
+            int numWritten = this.posix.write(this.input, this.writeScratch, pending);
+            if (numWritten <= 0) {
+                throw new Failure("EPIPE", "worker " + this.pid + " closed its input");
+            }
+            pending -= numWritten;
+            System.arraycopy(this.writeScratch, numWritten, this.writeScratch, 0, pending);
+        }
+    }
+
+    private void read(ByteBuf into, int length) throws Failure {
+        while (length > 0) {
+            int numRead = this.posix.read(this.output, this.scratch, Math.min(length, CHUNK_SIZE));
+            if (numRead <= 0) {
+                throw new Failure("EOF", "worker " + this.pid + " exited before replying");
+            }
+            into.writeBytes(this.scratch, 0, numRead);
+            length -= numRead;
+        }
+    }
+
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.process;
+
+import io.netty.buffer.ByteBuf;
+import io.nodyn.CallbackResult;
+import io.nodyn.NodeProcess;
+import io.nodyn.handle.HandleWrap;
+import io.nodyn.loop.RefHandle;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of pre-started helper processes answering requests over their
+ * stdio, so that process creation stays out of request latency.
+ *
+ * <p>Every message is a 4-byte big-endian length followed by that many
+ * bytes. A request is written to an idle worker's stdin and its reply is
+ * read from the worker's stdout, while the request is still being written
+ * if need be, so a worker may stream its reply as it reads. Each worker
+ * handles one request at a time.
+ * A zero-length request is a health check and must be answered with a
+ * zero-length reply. Workers are retired by closing their stdin, after
+ * <code>maxJobs</code> requests, or when they fail a health check, and are
+ * replaced with fresh ones.</p>
+ *
+ * <p>Replies are emitted as <code>reply</code> events carrying the request
+ * id, an error code or <code>null</code>, and the reply bytes.</p>
+ */
+public class ProcessPool extends HandleWrap {
+
+    private static final int REPLY = eventId("reply");
+
+    private final List<String> envp = new ArrayList<>();
+    private final ArrayDeque<PoolWorker> idle = new ArrayDeque<>();
+    private final ArrayDeque<Job> pending = new ArrayDeque<>();
+    private final Executor writer = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            getProcess().getEventLoop().submitBlockingTask(task);
+        }
+    };
+
+    private String file;
+    private List<String> argv;
+    private int size = Runtime.getRuntime().availableProcessors();
+    private int maxJobs;
+    private int timeout;
+    private int healthCheckInterval = 30000;
+    private int healthCheckTimeout = 5000;
+
+    private int live;
+    private boolean closed;
+    private ScheduledFuture<?> healthCheck;
+
+    private long spawned;
+    private long recycled;
+    private long failed;
+    private long completed;
+
+    public ProcessPool(NodeProcess process) {
+        super(process, false);
+    }
+
+    public void addEnvPair(String pair) {
+        this.envp.add(pair);
+    }
+
+    public void setSize(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * @param maxJobs requests a worker serves before it is replaced, or 0 for no limit
+     */
+    public void setMaxJobs(int maxJobs) {
+        this.maxJobs = maxJobs;
+    }
+
+    /**
+     * @param timeout milliseconds a request may take before its worker is killed, or 0 for no limit
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param interval milliseconds between health checks of idle workers, or 0 to disable them
+     */
+    public void setHealthCheckInterval(int interval) {
+        this.healthCheckInterval = interval;
+    }
+
+    public void setHealthCheckTimeout(int timeout) {
+        this.healthCheckTimeout = timeout;
+    }
+
+    public void start(String file, String... args) throws IOException {
+        this.file = file != null ? file : args[0];
+        this.argv = Arrays.asList(args);
+        if (this.envp.isEmpty()) {
+            for (Map.Entry<String, String> each : System.getenv().entrySet()) {
+                this.envp.add(each.getKey() + "=" + each.getValue());
+            }
+        }
+        for (int i = 0; i < this.size; ++i) {
+            PoolWorker worker = spawnWorker();
+            if (worker == null) {
+                close();
+                throw new IOException("ENOENT: cannot spawn " + this.file);
+            }
+            synchronized (this.idle) {
+                this.idle.add(worker);
+            }
+        }
+        scheduleHealthCheck();
+    }
+
+    /**
+     * Queue a request for the next idle worker.
+     */
+    public void submit(int id, ByteBuf request) {
+        Job job = new Job(id, request.duplicate(), getProcess().getEventLoop().newHandle("process-pool-job"));
+        final PoolWorker worker;
+        synchronized (this.idle) {
+            if (this.closed) {
+                worker = null;
+            } else {
+                worker = this.idle.poll();
+                if (worker == null) {
+                    this.pending.add(job);
+                    return;
+                }
+            }
+        }
+        if (worker == null) {
+            reply(job, "ECANCELED", null);
+            return;
+        }
+        final Job first = job;
+        getProcess().getEventLoop().submitBlockingTask(new Runnable() {
+            @Override
+            public void run() {
+                work(worker, first);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        final List<PoolWorker> retiring;
+        List<Job> cancelled;
+        synchronized (this.idle) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            retiring = new ArrayList<>(this.idle);
+            this.idle.clear();
+            cancelled = new ArrayList<>(this.pending);
+            this.pending.clear();
+            if (this.healthCheck != null) {
+                this.healthCheck.cancel(false);
+            }
+        }
+        for (Job each : cancelled) {
+            reply(each, "ECANCELED", null);
+        }
+        // busy workers are retired as they finish their current request
+        if (!retiring.isEmpty()) {
+            getProcess().getEventLoop().submitBlockingTask(new Runnable() {
+                @Override
+                public void run() {
+                    for (PoolWorker each : retiring) {
+                        retire(each);
+                    }
+                }
+            });
+        }
+        super.close();
+    }
+
+    public synchronized long getSpawned() {
+        return this.spawned;
+    }
+
+    public synchronized long getRecycled() {
+        return this.recycled;
+    }
+
+    public synchronized long getFailed() {
+        return this.failed;
+    }
+
+    public synchronized long getCompleted() {
+        return this.completed;
+    }
+
+    public int getIdle() {
+        synchronized (this.idle) {
+            return this.idle.size();
+        }
+    }
+
+    public int getPending() {
+        synchronized (this.idle) {
+            return this.pending.size();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+
+    /**
+     * Run the job, then keep the worker busy with queued jobs until there are none.
+     */
+    private void work(PoolWorker worker, Job job) {
+        while (job != null) {
+            execute(worker, job);
+            worker = renew(worker);
+            if (worker == null) {
+                return;
+            }
+            job = next(worker);
+        }
+    }
+
+    private void execute(final PoolWorker worker, Job job) {
+        ScheduledFuture<?> watchdog = watch(worker, this.timeout);
+        try {
+            ByteBuf reply = worker.call(job.request);
+            synchronized (this) {
+                ++this.completed;
+            }
+            reply(job, null, reply);
+        } catch (PoolWorker.Failure e) {
+            synchronized (this) {
+                ++this.failed;
+            }
+            reply(job, e.getCode(), null);
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @return the worker if it may serve another job, a replacement if it was retired, or <code>null</code>
+     */
+    private PoolWorker renew(PoolWorker worker) {
+        boolean closed;
+        synchronized (this.idle) {
+            closed = this.closed;
+        }
+        if (closed) {
+            retire(worker);
+            return null;
+        }
+        if (worker.isDead()) {
+            retire(worker);
+            return replace();
+        }
+        if (this.maxJobs > 0 && worker.getJobs() >= this.maxJobs) {
+            retire(worker);
+            synchronized (this) {
+                ++this.recycled;
+            }
+            return replace();
+        }
+        return worker;
+    }
+
+    /**
+     * @return the next queued job, or <code>null</code> after parking the worker as idle
+     */
+    private Job next(PoolWorker worker) {
+        synchronized (this.idle) {
+            if (this.closed) {
+                retiring(worker);
+                return null;
+            }
+            Job job = this.pending.poll();
+            if (job == null) {
+                this.idle.add(worker);
+            }
+            return job;
+        }
+    }
+
+    private void retiring(final PoolWorker worker) {
+        getProcess().getEventLoop().submitBlockingTask(new Runnable() {
+            @Override
+            public void run() {
+                retire(worker);
+            }
+        });
+    }
+
+    private PoolWorker replace() {
+        PoolWorker worker = spawnWorker();
+        if (worker != null) {
+            return worker;
+        }
+        List<Job> stranded = null;
+        synchronized (this.idle) {
+            if (this.live == 0) {
+                // nothing left to serve them; the next health check tries again
+                stranded = new ArrayList<>(this.pending);
+                this.pending.clear();
+            }
+        }
+        if (stranded != null) {
+            for (Job each : stranded) {
+                reply(each, "ENOENT", null);
+            }
+        }
+        return null;
+    }
+
+    private PoolWorker spawnWorker() {
+        PoolWorker worker = PoolWorker.spawn(getProcess().getPosix(), this.writer, this.file, this.argv, this.envp);
+        if (worker == null) {
+            return null;
+        }
+        synchronized (this.idle) {
+            ++this.live;
+        }
+        synchronized (this) {
+            ++this.spawned;
+        }
+        return worker;
+    }
+
+    private void retire(PoolWorker worker) {
+        try {
+            worker.retire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this.idle) {
+            --this.live;
+        }
+    }
+
+    private ScheduledFuture<?> watch(final PoolWorker worker, int millis) {
+        if (millis <= 0) {
+            return null;
+        }
+        return getProcess().getEventLoop().scheduleUserTask(new Runnable() {
+            @Override
+            public void run() {
+                worker.timeOut();
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void reply(Job job, String error, ByteBuf reply) {
+        emit(REPLY, CallbackResult.createSuccess(job.id, error, reply));
+        job.handle.unref();
+    }
+
+    // ----------------------------------------------------------------------
+
+    private void scheduleHealthCheck() {
+        if (this.healthCheckInterval <= 0) {
+            return;
+        }
+        synchronized (this.idle) {
+            if (this.closed) {
+                return;
+            }
+            this.healthCheck = getProcess().getEventLoop().scheduleUserTask(new Runnable() {
+                @Override
+                public void run() {
+                    checkHealth();
+                }
+            }, this.healthCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Ping every idle worker, replacing those that do not answer, and top the pool back up.
+     */
+    private void checkHealth() {
+        final List<PoolWorker> checking;
+        final int missing;
+        synchronized (this.idle) {
+            if (this.closed) {
+                return;
+            }
+            checking = new ArrayList<>(this.idle);
+            this.idle.clear();
+            missing = this.size - this.live;
+        }
+        getProcess().getEventLoop().submitBlockingTask(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (PoolWorker each : checking) {
+                        PoolWorker worker = check(each);
+                        if (worker != null) {
+                            resume(worker);
+                        }
+                    }
+                    for (int i = 0; i < missing; ++i) {
+                        PoolWorker worker = replace();
+                        if (worker != null) {
+                            resume(worker);
+                        }
+                    }
+                } finally {
+                    scheduleHealthCheck();
+                }
+            }
+        });
+    }
+
+    private PoolWorker check(PoolWorker worker) {
+        ScheduledFuture<?> watchdog = watch(worker, this.healthCheckTimeout);
+        boolean healthy = worker.ping();
+        if (watchdog != null) {
+            watchdog.cancel(false);
+        }
+        if (healthy) {
+            return worker;
+        }
+        synchronized (this) {
+            ++this.failed;
+        }
+        retire(worker);
+        return replace();
+    }
+
+    /**
+     * Park a checked worker, or hand it a queued job on its own task, so the
+     * health check moves on and every worker returns to the pool.
+     */
+    private void resume(final PoolWorker worker) {
+        final Job job = next(worker);
+        if (job != null) {
+            getProcess().getEventLoop().submitBlockingTask(new Runnable() {
+                @Override
+                public void run() {
+                    work(worker, job);
+                }
+            });
+        }
+    }
+
+    private static final class Job {
+        final int id;
+        final ByteBuf request;
+        final RefHandle handle;
+
+        Job(int id, ByteBuf request, RefHandle handle) {
+            this.id = id;
+            this.request = request;
+            this.handle = handle;
+        }
+    }
+
+}
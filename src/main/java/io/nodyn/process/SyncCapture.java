@@ -0,0 +1,270 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.process;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.nodyn.netty.pipe.FdChannels;
+import jnr.constants.platform.Errno;
+import jnr.constants.platform.Fcntl;
+import jnr.constants.platform.OpenFlags;
+import jnr.posix.POSIX;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a child's stdin and drains its stdout and stderr from the calling
+ * thread, with every descriptor non-blocking.
+ *
+ * <p>When the descriptors can be wrapped as selectable channels the thread
+ * waits in a {@link Selector}; otherwise it backs off with short sleeps.
+ * Reads go through one reused scratch buffer.</p>
+ */
+final class SyncCapture {
+
+    enum Outcome {
+        COMPLETE,
+        TIMED_OUT,
+        MAX_BUFFER,
+    }
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int EAGAIN = Errno.EAGAIN.intValue();
+    private static final int EWOULDBLOCK = Errno.EWOULDBLOCK.intValue();
+    private static final int EINTR = Errno.EINTR.intValue();
+    private static final long MAX_BACKOFF_MILLIS = 16;
+
+    private final POSIX posix;
+    private final Pipe[] pipes;
+    private final Pipe stdin;
+    private final ByteBuf input;
+    private final long maxBuffer;
+    private final byte[] scratch = new byte[CHUNK_SIZE];
+    private final ByteBuffer writeScratch = ByteBuffer.allocateDirect(CHUNK_SIZE);
+
+    private Selector selector;
+    private long buffered;
+
+    /**
+     * @param stdinFd   write end of the child's stdin, or -1
+     * @param input     bytes to feed to stdin, or <code>null</code>
+     * @param maxBuffer limit on the total captured output, or 0 for none
+     */
+    SyncCapture(POSIX posix, int stdinFd, ByteBuf input, int stdoutFd, int stderrFd, long maxBuffer) {
+        this.posix = posix;
+        this.stdin = stdinFd >= 0 ? new Pipe(stdinFd, null) : null;
+        this.input = input;
+        this.pipes = new Pipe[]{
+                new Pipe(stdoutFd, Unpooled.buffer()),
+                new Pipe(stderrFd, Unpooled.buffer()),
+        };
+        this.maxBuffer = maxBuffer;
+    }
+
+    ByteBuf getStdout() {
+        return this.pipes[0].output;
+    }
+
+    ByteBuf getStderr() {
+        return this.pipes[1].output;
+    }
+
+    /**
+     * The pipes are left open on return so a child that is about to be
+     * killed does not die of <code>SIGPIPE</code> first; {@link #close()}
+     * them afterwards.
+     *
+     * @param deadline <code>System.nanoTime()</code> to give up at, or 0 for none
+     */
+    Outcome run(long deadline) throws IOException {
+        open();
+        long backoff = 1;
+        while (isOpen()) {
+            boolean progress = false;
+            if (this.stdin != null && this.stdin.open) {
+                progress |= writeInput();
+            }
+            for (Pipe each : this.pipes) {
+                if (each.open) {
+                    progress |= readInto(each);
+                    if (this.maxBuffer > 0 && this.buffered > this.maxBuffer) {
+                        return Outcome.MAX_BUFFER;
+                    }
+                }
+            }
+            if (progress || !isOpen()) {
+                backoff = 1;
+                continue;
+            }
+
+            long waitMillis = 0;
+            if (deadline != 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return Outcome.TIMED_OUT;
+                }
+                waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+            }
+            if (this.selector != null) {
+                this.selector.select(waitMillis);
+                this.selector.selectedKeys().clear();
+            } else {
+                sleep(waitMillis == 0 ? backoff : Math.min(backoff, waitMillis));
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        return Outcome.COMPLETE;
+    }
+
+    private void open() throws IOException {
+        boolean selectable = FdChannels.isSupported();
+        for (Pipe each : all()) {
+            if (selectable) {
+                each.channel = each.output == null ? FdChannels.openSink(each.fd) : FdChannels.openSource(each.fd);
+                selectable = each.channel != null;
+            }
+        }
+        if (selectable) {
+            this.selector = Selector.open();
+            for (Pipe each : all()) {
+                each.channel.configureBlocking(false);
+                each.channel.register(this.selector, each.output == null ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        } else {
+            for (Pipe each : all()) {
+                // any wrapper already made is dropped unused; the descriptor stays open
+                each.channel = null;
+                int flags = this.posix.fcntlInt(each.fd, Fcntl.F_GETFL, 0);
+                this.posix.fcntlInt(each.fd, Fcntl.F_SETFL, flags | OpenFlags.O_NONBLOCK.intValue());
+            }
+        }
+        if (this.stdin != null && (this.input == null || !this.input.isReadable())) {
+            this.stdin.close();
+        }
+    }
+
+    private boolean writeInput() throws IOException {
+        boolean progress = false;
+        while (this.input.isReadable()) {
+            int length = Math.min(this.input.readableBytes(), CHUNK_SIZE);
+            this.writeScratch.clear();
+            ByteBuffer chunk = this.writeScratch.duplicate();
+            chunk.limit(length);
+            this.input.getBytes(this.input.readerIndex(), chunk);
+            int written = this.posix.write(this.stdin.fd, this.writeScratch, length);
+            if (written < 0) {
+                int errno = this.posix.errno();
+                if (errno == EAGAIN || errno == EWOULDBLOCK || errno == EINTR) {
+                    return progress;
+                }
+                // the child stopped reading; node ignores EPIPE here as well
+                break;
+            }
+            this.input.skipBytes(written);
+            progress = true;
+        }
+        this.stdin.close();
+        return true;
+    }
+
+    private boolean readInto(Pipe pipe) throws IOException {
+        boolean progress = false;
+        for (;;) {
+            int numRead = this.posix.read(pipe.fd, this.scratch, this.scratch.length);
+            if (numRead > 0) {
+                pipe.output.writeBytes(this.scratch, 0, numRead);
+                this.buffered += numRead;
+                progress = true;
+                if (this.maxBuffer > 0 && this.buffered > this.maxBuffer) {
+                    return true;
+                }
+                continue;
+            }
+            if (numRead < 0) {
+                int errno = this.posix.errno();
+                if (errno == EAGAIN || errno == EWOULDBLOCK || errno == EINTR) {
+                    return progress;
+                }
+            }
+            pipe.close();
+            return true;
+        }
+    }
+
+    private boolean isOpen() {
+        for (Pipe each : this.pipes) {
+            if (each.open) {
+                return true;
+            }
+        }
+        return this.stdin != null && this.stdin.open;
+    }
+
+    private Pipe[] all() {
+        if (this.stdin == null) {
+            return this.pipes;
+        }
+        return new Pipe[]{this.stdin, this.pipes[0], this.pipes[1]};
+    }
+
+    void close() throws IOException {
+        for (Pipe each : all()) {
+            each.close();
+        }
+        if (this.selector != null) {
+            this.selector.close();
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private final class Pipe {
+        private final int fd;
+        private final ByteBuf output;
+        private SelectableChannel channel;
+        private boolean open = true;
+
+        Pipe(int fd, ByteBuf output) {
+            this.fd = fd;
+            this.output = output;
+        }
+
+        void close() throws IOException {
+            if (!this.open) {
+                return;
+            }
+            this.open = false;
+            if (this.channel != null) {
+                this.channel.close();
+            } else {
+                posix.close(this.fd);
+            }
+        }
+    }
+}
@@ -17,47 +17,237 @@
 package io.nodyn.process;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.nodyn.NodeProcess;
+import jnr.constants.platform.Signal;
+import jnr.constants.platform.WaitFlags;
+import jnr.posix.POSIX;
+import jnr.posix.SpawnFileAction;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Runs a child to completion for <code>spawnSync</code>, on
+ * <code>posix_spawnp</code> like {@link ProcessWrap}. Its output is captured
+ * by a {@link SyncCapture} on the calling thread.
+ *
+ * <p>Exceeding <code>maxBuffer</code> bytes of output or the timeout kills
+ * the child with the kill signal and records <code>ENOBUFS</code> or
+ * <code>ETIMEDOUT</code> as the error.</p>
+ *
  * @author Bob McWhirter
  */
 public class SyncProcessWrap {
 
-    private final NodeProcess process;
-    private Process subProcess;
-    private OutputConsumer stdOutConsumer;
-    private OutputConsumer stdErrConsumer;
+    private static final int WNOHANG = WaitFlags.WNOHANG.intValue();
+
+    // how long a killed child may take to exit while its pipes are still open
+    private static final long KILL_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final POSIX posix;
+    private final List<String> envp = new ArrayList<>();
+
+    private long timeout;
+    private long maxBuffer;
+    private int killSignal = Signal.SIGTERM.intValue();
+    private ByteBuf input;
+
+    private int pid;
+    private boolean reaped;
+    private int status;
+    private int termSignal;
+    private String error;
+    private ByteBuf stdout = Unpooled.EMPTY_BUFFER;
+    private ByteBuf stderr = Unpooled.EMPTY_BUFFER;
 
     public SyncProcessWrap(NodeProcess process) {
-        this.process = process;
+        this(process.getPosix());
+    }
+
+    SyncProcessWrap(POSIX posix) {
+        this.posix = posix;
+    }
+
+    public int getPid() {
+        return this.pid;
     }
 
-    public int getPid() throws NoSuchFieldException, IllegalAccessException {
-        return UnsafeProcess.getPid( this.subProcess );
+    public void addEnvPair(String pair) {
+        this.envp.add(pair);
     }
 
-    public int spawn(String file, String...args) throws IOException, InterruptedException {
-        ProcessBuilder builder = new ProcessBuilder( args );
-        this.subProcess = builder.start();
+    /**
+     * @param timeout milliseconds, or 0 for none
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param maxBuffer bytes of stdout and stderr combined, or 0 for no limit
+     */
+    public void setMaxBuffer(long maxBuffer) {
+        this.maxBuffer = maxBuffer;
+    }
+
+    public void setKillSignal(int killSignal) {
+        this.killSignal = killSignal;
+    }
+
+    public void setInput(ByteBuf input) {
+        this.input = input.duplicate();
+    }
+
+    /**
+     * @return the exit status, or -1 if the child was killed by a signal or could not be started
+     */
+    public int spawn(String file, String... args) throws IOException, InterruptedException {
+        long deadline = this.timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout) : 0;
+
+        int[] in = new int[2];
+        int[] out = new int[2];
+        int[] err = new int[2];
+        this.posix.pipe(in);
+        this.posix.pipe(out);
+        this.posix.pipe(err);
 
-        this.stdOutConsumer = new OutputConsumer( process, this.subProcess.getInputStream() );
-        this.stdErrConsumer = new OutputConsumer( process, this.subProcess.getErrorStream() );
+        List<SpawnFileAction> fileActions = new ArrayList<>();
+        fileActions.add(SpawnFileAction.close(in[1]));
+        fileActions.add(SpawnFileAction.close(out[0]));
+        fileActions.add(SpawnFileAction.close(err[0]));
+        fileActions.add(SpawnFileAction.dup(in[0], 0));
+        fileActions.add(SpawnFileAction.dup(out[1], 1));
+        fileActions.add(SpawnFileAction.dup(err[1], 2));
+        fileActions.add(SpawnFileAction.close(in[0]));
+        fileActions.add(SpawnFileAction.close(out[1]));
+        fileActions.add(SpawnFileAction.close(err[1]));
 
-        process.getEventLoop().submitBlockingTask( this.stdOutConsumer );
-        process.getEventLoop().submitBlockingTask( this.stdErrConsumer );
+        List<String> argv = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            argv.add(args[i]);
+        }
+
+        long result = this.posix.posix_spawnp(file != null ? file : args[0], fileActions, argv, environment());
+
+        this.posix.close(in[0]);
+        this.posix.close(out[1]);
+        this.posix.close(err[1]);
+
+        if (result <= 0) {
+            this.posix.close(in[1]);
+            this.posix.close(out[0]);
+            this.posix.close(err[0]);
+            this.error = "ENOENT";
+            return -1;
+        }
+        this.pid = (int) result;
+
+        SyncCapture capture = new SyncCapture(this.posix, in[1], this.input, out[0], err[0], this.maxBuffer);
+        try {
+            SyncCapture.Outcome outcome = capture.run(deadline);
+            if (outcome == SyncCapture.Outcome.TIMED_OUT) {
+                kill("ETIMEDOUT");
+            } else if (outcome == SyncCapture.Outcome.MAX_BUFFER) {
+                kill("ENOBUFS");
+            }
+            if (this.error != null) {
+                // closing the pipes first would let the child die of SIGPIPE instead
+                reap(System.nanoTime() + KILL_GRACE_NANOS);
+            }
+        } finally {
+            capture.close();
+        }
+        this.stdout = capture.getStdout();
+        this.stderr = capture.getStderr();
+
+        return waitFor(deadline);
+    }
+
+    private int waitFor(long deadline) throws InterruptedException {
+        if (deadline != 0 && this.error == null && !reap(deadline)) {
+            kill("ETIMEDOUT");
+        }
+        if (!this.reaped) {
+            int[] status = new int[1];
+            this.posix.waitpid(this.pid, status, 0);
+            this.status = status[0];
+            this.reaped = true;
+        }
+        return decode(this.status);
+    }
+
+    private boolean reap(long deadline) throws InterruptedException {
+        int[] status = new int[1];
+        long backoff = 1;
+        while (!this.reaped) {
+            long result = this.posix.waitpid(this.pid, status, WNOHANG);
+            if (result != 0) {
+                this.status = result > 0 ? status[0] : 0;
+                this.reaped = true;
+                break;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, 16);
+        }
+        return true;
+    }
+
+    private int decode(int status) {
+        int signal = status & 0x7F;
+        if (signal != 0) {
+            this.termSignal = signal;
+            return -1;
+        }
+        return (status & 0xFF00) >> 8;
+    }
+
+    private void kill(String error) {
+        this.error = error;
+        this.posix.kill(this.pid, this.killSignal);
+    }
+
+    private List<String> environment() {
+        if (!this.envp.isEmpty()) {
+            return this.envp;
+        }
+        List<String> inherited = new ArrayList<>();
+        for (Map.Entry<String, String> each : System.getenv().entrySet()) {
+            inherited.add(each.getKey() + "=" + each.getValue());
+        }
+        return inherited;
+    }
+
+    /**
+     * @return the terminating signal's name, such as <code>SIGTERM</code>, or <code>null</code>
+     */
+    public String getSignal() {
+        if (this.termSignal == 0) {
+            return null;
+        }
+        Signal signal = Signal.valueOf(this.termSignal);
+        return signal == null ? String.valueOf(this.termSignal) : signal.name();
+    }
 
-        return this.subProcess.waitFor();
+    /**
+     * @return <code>ETIMEDOUT</code>, <code>ENOBUFS</code>, <code>ENOENT</code> or <code>null</code>
+     */
+    public String getError() {
+        return this.error;
     }
 
     public ByteBuf getStdout() {
-        return this.stdOutConsumer.getBuffer();
+        return this.stdout;
     }
 
     public ByteBuf getStderr() {
-        return this.stdErrConsumer.getBuffer();
+        return this.stderr;
     }
 
 }
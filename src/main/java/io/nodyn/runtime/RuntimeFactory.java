@@ -66,6 +66,15 @@ public abstract class RuntimeFactory {
      */
     abstract public Nodyn newRuntime(Vertx vertx, NodynConfig config);
 
+    /**
+     * Creates a new runtime sharing the provided vertx instance
+     * @param vertx The vertx instance to use for vertx interop
+     * @param config The configuration options
+     * @param controlLifeCycle whether the runtime shuts down the vertx event-loop group on exit
+     * @return the new Nodyn runtime
+     */
+    abstract public Nodyn newRuntime(Vertx vertx, NodynConfig config, boolean controlLifeCycle);
+
     public enum RuntimeType {
       DYNJS, NASHORN
     }
@@ -43,4 +43,9 @@ public class DynJSFactory extends RuntimeFactory {
     public Nodyn newRuntime(Vertx vertx, NodynConfig config) {
         return new DynJSRuntime(vertx, config, true);
     }
+
+    @Override
+    public Nodyn newRuntime(Vertx vertx, NodynConfig config, boolean controlLifeCycle) {
+        return new DynJSRuntime(vertx, config, controlLifeCycle);
+    }
 }
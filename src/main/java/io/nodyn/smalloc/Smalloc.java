@@ -31,7 +31,8 @@ public class Smalloc {
             throw new Exception( "already has external data" );
         }
 
-        ByteBuf b = Unpooled.buffer(size);
+        // the entire allocation is the buffer's content
+        ByteBuf b = Unpooled.buffer(size, size).writerIndex(size);
         obj.setExternalIndexedData(new NettyExternalIndexedData(b));
         return obj;
     }
@@ -45,7 +46,6 @@ public class Smalloc {
         ByteBuf srcBuf = ((NettyExternalIndexedData)src.getExternalIndexedData()).buffer();
         int len = end - start;
         ByteBuf destBuf = srcBuf.slice( start, len );
-        destBuf.writerIndex(0);
         dest.setExternalIndexedData(new NettyExternalIndexedData(destBuf));
         return src;
     }
@@ -27,6 +27,8 @@ import io.nodyn.netty.DataEventHandler;
  */
 public class AfterConnectEventHandler extends AbstractEventSourceHandler {
 
+    private static final int AFTER_CONNECT = eventId("afterConnect");
+
     private final TCPWrap tcp;
 
     public AfterConnectEventHandler(NodeProcess process, TCPWrap tcp) {
@@ -37,7 +39,7 @@ public class AfterConnectEventHandler extends AbstractEventSourceHandler {
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         ctx.pipeline().addAfter(ctx.name(), "emit.data", new DataEventHandler(this.process, this.tcp));
-        emit("afterConnect", this.tcp );
+        emit(AFTER_CONNECT, this.tcp );
         super.channelActive(ctx);
     }
 
@@ -31,6 +31,8 @@ import io.nodyn.netty.EOFEventHandler;
  */
 public class ConnectionEventHandler extends AbstractEventSourceHandler {
 
+    private static final int CONNECTION = eventId("connection");
+
     public ConnectionEventHandler(NodeProcess process, AsyncWrap eventSource) {
         super(process, eventSource);
     }
@@ -40,7 +42,7 @@ public class ConnectionEventHandler extends AbstractEventSourceHandler {
         TCPWrap clientHandle = new TCPWrap(this.process, ctx.channel().newSucceededFuture());
         ctx.pipeline().addAfter(ctx.name(), "emit.close", new EOFEventHandler(this.process, clientHandle));
         ctx.pipeline().addAfter(ctx.name(), "emit.data", new DataEventHandler(this.process, clientHandle));
-        emit("connection", clientHandle);
+        emit(CONNECTION, clientHandle);
         super.channelActive(ctx);
     }
 
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single entry in a {@link TimerWheel}.
+ *
+ * <p>A timeout may be rescheduled any number of times; its task runs on the
+ * user-task thread of the owning loop.</p>
+ */
+public class Timeout {
+
+    private final TimerWheel wheel;
+    private final Runnable task;
+
+    // guarded by wheel
+    Timeout prev;
+    Timeout next;
+    TimerWheel.Bucket bucket;
+    long deadline;
+    long targetTick;
+    volatile long seq;
+    volatile boolean cancelled;
+
+    Timeout(TimerWheel wheel, Runnable task) {
+        this.wheel = wheel;
+        this.task = task;
+    }
+
+    public void reschedule(long delay, TimeUnit unit) {
+        this.wheel.schedule(this, delay, unit);
+    }
+
+    public void cancel() {
+        this.wheel.cancel(this);
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * @param seq the scheduling this expiry belongs to; stale expiries of a
+     *            since-rescheduled timeout are dropped
+     */
+    void fire(long seq) {
+        if (!this.cancelled && this.seq == seq) {
+            this.task.run();
+        }
+    }
+}
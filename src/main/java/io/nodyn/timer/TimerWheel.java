@@ -0,0 +1,273 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.timer;
+
+import io.nodyn.loop.EventLoop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timing wheel serving every timer of one {@link EventLoop}.
+ *
+ * <p>Timeouts live in doubly-linked buckets indexed by their deadline tick, so
+ * scheduling and cancelling are O(1). A single thread advances the wheel
+ * and hands all timeouts expiring on a tick to the loop as one user task,
+ * instead of one scheduled future per timer. The thread parks indefinitely
+ * while the wheel is empty.</p>
+ */
+public class TimerWheel {
+
+    public static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final Comparator<Timeout> BY_DEADLINE = new Comparator<Timeout>() {
+        @Override
+        public int compare(Timeout o1, Timeout o2) {
+            if (o1.deadline != o2.deadline) {
+                return o1.deadline < o2.deadline ? -1 : 1;
+            }
+            return o1.seq < o2.seq ? -1 : (o1.seq == o2.seq ? 0 : 1);
+        }
+    };
+
+    private final EventLoop loop;
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startTime;
+
+    private long tick;
+    private long seq;
+    private int pending;
+    private boolean stopped;
+    private Thread thread;
+
+    public TimerWheel(EventLoop loop) {
+        this(loop, DEFAULT_TICK_NANOS, DEFAULT_WHEEL_SIZE);
+    }
+
+    public TimerWheel(EventLoop loop, long tickNanos, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheel size must be a power of two: " + wheelSize);
+        }
+        this.loop = loop;
+        this.tickNanos = tickNanos;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; ++i) {
+            this.buckets[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+        this.startTime = System.nanoTime();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task);
+        schedule(timeout, delay, unit);
+        return timeout;
+    }
+
+    synchronized void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        if (this.stopped) {
+            return;
+        }
+        if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+            --this.pending;
+        }
+
+        if (this.pending == 0) {
+            // nothing was in the wheel, so it may have been idle for a while
+            this.tick = Math.max(this.tick, currentTick());
+        }
+
+        long deadline = System.nanoTime() - this.startTime + unit.toNanos(Math.max(0, delay));
+        long targetTick = Math.max(this.tick, (deadline + this.tickNanos - 1) / this.tickNanos);
+
+        timeout.deadline = deadline;
+        timeout.targetTick = targetTick;
+        timeout.seq = ++this.seq;
+        timeout.cancelled = false;
+        this.buckets[(int) (targetTick & this.mask)].add(timeout);
+
+        if (++this.pending == 1) {
+            ensureStarted();
+            notifyAll();
+        }
+    }
+
+    synchronized void cancel(Timeout timeout) {
+        timeout.cancelled = true;
+        if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+            --this.pending;
+        }
+    }
+
+    public synchronized int size() {
+        return this.pending;
+    }
+
+    public synchronized void stop() {
+        this.stopped = true;
+        notifyAll();
+    }
+
+    private void ensureStarted() {
+        if (this.thread != null) {
+            return;
+        }
+        this.thread = new Thread(new Worker(), "nodyn-timer-" + COUNTER.incrementAndGet());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - this.startTime) / this.tickNanos;
+    }
+
+    /**
+     * Wait for the next tick and collect everything that expired.
+     *
+     * @return the expired timeouts, or <code>null</code> once stopped
+     */
+    private synchronized Batch awaitExpired() throws InterruptedException {
+        List<Timeout> expired = new ArrayList<>();
+        while (!this.stopped) {
+            if (this.pending == 0) {
+                wait();
+                continue;
+            }
+
+            long nowTick = currentTick();
+            if (nowTick < this.tick) {
+                long sleep = this.startTime + (this.tick * this.tickNanos) - System.nanoTime();
+                if (sleep > 0) {
+                    wait(sleep / 1000000, (int) (sleep % 1000000));
+                }
+                continue;
+            }
+
+            if (nowTick - this.tick >= this.buckets.length) {
+                // fell far behind (suspend, long pause): one sweep catches up
+                for (Bucket bucket : this.buckets) {
+                    bucket.expire(nowTick, expired);
+                }
+            } else {
+                for (long t = this.tick; t <= nowTick; ++t) {
+                    this.buckets[(int) (t & this.mask)].expire(nowTick, expired);
+                }
+            }
+            this.tick = nowTick + 1;
+            this.pending -= expired.size();
+
+            if (!expired.isEmpty()) {
+                Collections.sort(expired, BY_DEADLINE);
+                return new Batch(expired);
+            }
+        }
+        return null;
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                Batch batch;
+                while ((batch = awaitExpired()) != null) {
+                    TimerWheel.this.loop.submitUserTask(batch, "timers", EventLoop.Phase.TIMERS);
+                }
+            } catch (InterruptedException e) {
+                // shutting down
+            }
+        }
+    }
+
+    /**
+     * Timeouts expired on one tick, with the scheduling each expiry belongs to.
+     */
+    private static class Batch implements Runnable {
+        private final List<Timeout> timeouts;
+        private final long[] seqs;
+
+        Batch(List<Timeout> timeouts) {
+            this.timeouts = timeouts;
+            this.seqs = new long[timeouts.size()];
+            for (int i = 0; i < this.seqs.length; ++i) {
+                this.seqs[i] = timeouts.get(i).seq;
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < this.seqs.length; ++i) {
+                this.timeouts.get(i).fire(this.seqs[i]);
+            }
+        }
+    }
+
+    static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = this.tail;
+            timeout.next = null;
+            if (this.tail == null) {
+                this.head = timeout;
+            } else {
+                this.tail.next = timeout;
+            }
+            this.tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                this.head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                this.tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire(long nowTick, List<Timeout> expired) {
+            Timeout cur = this.head;
+            while (cur != null) {
+                Timeout next = cur.next;
+                if (cur.targetTick <= nowTick) {
+                    remove(cur);
+                    expired.add(cur);
+                }
+                cur = next;
+            }
+        }
+    }
+}
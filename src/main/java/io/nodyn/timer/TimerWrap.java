@@ -14,12 +14,12 @@
  * limitations under the License.
  */
 
+
 package io.nodyn.timer;
 
 import io.nodyn.handle.HandleWrap;
 import io.nodyn.NodeProcess;
 
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -27,30 +27,71 @@ import java.util.concurrent.TimeUnit;
  */
 public class TimerWrap extends HandleWrap implements Runnable {
 
+    private static final long ORIGIN = System.nanoTime();
+
+    /**
+     * Monotonic milliseconds, unaffected by wall-clock adjustments.
+     */
     public static long now() {
-        return System.currentTimeMillis();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ORIGIN);
     }
 
-    private ScheduledFuture<?> future;
+    private Timeout timeout;
+    private long repeat;
 
     public TimerWrap(NodeProcess process) {
         super( process, true );
     }
 
-    public void start(int msec, int repeat) {
-        // repeat seems to never be used?!
-        if ( msec == 0 ) {
-            msec = 1;
-        }
-        this.future = this.process.getEventLoop().getEventLoopGroup().schedule(this, msec, TimeUnit.MILLISECONDS);
+    public void start(long msec, long repeat) {
+        this.repeat = repeat;
+        schedule( msec );
     }
 
     public void stop() {
-        this.future.cancel( false );
+        if ( this.timeout != null ) {
+            this.timeout.cancel();
+        }
+    }
+
+    public void again() {
+        if ( this.timeout == null ) {
+            return;
+        }
+        stop();
+        if ( this.repeat > 0 ) {
+            schedule( this.repeat );
+        }
+    }
+
+    public void setRepeat(long repeat) {
+        this.repeat = repeat;
+    }
+
+    public long getRepeat() {
+        return this.repeat;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        super.close();
+    }
+
+    private void schedule(long msec) {
+        if ( this.timeout == null ) {
+            this.timeout = this.process.getEventLoop().getTimerWheel().schedule( this, msec, TimeUnit.MILLISECONDS );
+        } else {
+            this.timeout.reschedule( msec, TimeUnit.MILLISECONDS );
+        }
     }
 
     @Override
     public void run() {
-        makeCallback(0);
+        // already on the user-task thread, as part of the tick's batch
+        if ( this.repeat > 0 ) {
+            schedule( this.repeat );
+        }
+        makeCallbackNow(0);
     }
 }
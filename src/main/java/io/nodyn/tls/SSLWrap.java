@@ -22,6 +22,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class SSLWrap extends AsyncWrap {
 
+    private static final int HANDSHAKE_START = eventId("handshakestart");
+    private static final int HANDSHAKE_DONE = eventId("handshakedone");
+    private static final int NEW_SESSION = eventId("newsession");
+
     private SSLEngine sslEngine;
     private StreamWrap stream;
     private SecureContext context;
@@ -63,12 +67,12 @@ public class SSLWrap extends AsyncWrap {
             @Override
             public void operationComplete(Future<? super Channel> future) throws Exception {
                 if (future.isSuccess()) {
-                    emit("handshakedone", CallbackResult.EMPTY_SUCCESS);
+                    emit(HANDSHAKE_DONE, CallbackResult.EMPTY_SUCCESS);
                     if (isServer) {
-                        emit("newsession", CallbackResult.createSuccess("foo", "bar"));
+                        emit(NEW_SESSION, CallbackResult.createSuccess("foo", "bar"));
                     }
                 } else {
-                    emit("handshakedone", CallbackResult.EMPTY_SUCCESS);
+                    emit(HANDSHAKE_DONE, CallbackResult.EMPTY_SUCCESS);
                 }
             }
         });
@@ -79,7 +83,7 @@ public class SSLWrap extends AsyncWrap {
             stream.getPipeline().addFirst(sslHandler);
         }
         started.set(true);
-        emit("handshakestart", CallbackResult.EMPTY_SUCCESS);
+        emit(HANDSHAKE_START, CallbackResult.EMPTY_SUCCESS);
 
     }
 
@@ -125,7 +125,8 @@ public class POSIXTerminalWrap extends AbstractTerminal {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
 
         Process p = Runtime.getRuntime().exec(cmd);
-        int c;
+        byte[] buf = new byte[1024];
+        int numRead;
         InputStream in = null;
         InputStream err = null;
         OutputStream out = null;
@@ -133,14 +134,14 @@ public class POSIXTerminalWrap extends AbstractTerminal {
         try {
             in = p.getInputStream();
 
-            while ((c = in.read()) != -1) {
-                bout.write(c);
+            while ((numRead = in.read(buf)) != -1) {
+                bout.write(buf, 0, numRead);
             }
 
             err = p.getErrorStream();
 
-            while ((c = err.read()) != -1) {
-                bout.write(c);
+            while ((numRead = err.read(buf)) != -1) {
+                bout.write(buf, 0, numRead);
             }
 
             out = p.getOutputStream();
@@ -16,9 +16,11 @@
 
 package io.nodyn.tty;
 
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
+import io.nodyn.netty.pipe.NioFdInputChannel;
 import io.nodyn.netty.pipe.NioInputStreamChannel;
 import io.nodyn.NodeProcess;
 import io.nodyn.stream.StreamWrap;
@@ -37,8 +39,12 @@ public class ReadStream {
             InputStream in = System.in;
             EventLoopGroup eventLoopGroup = process.getEventLoop().getEventLoopGroup();
 
-            Channel channel = NioInputStreamChannel.create(process, in);
+            Channel channel = NioFdInputChannel.create(process, fd);
+            if (channel == null) {
+                channel = NioInputStreamChannel.create(process, in);
+            }
             channel.config().setAutoRead(false);
+            channel.config().setRecvByteBufAllocator(new AdaptiveRecvByteBufAllocator(64, 8192, 64 * 1024));
             channel.pipeline().addLast( new DataEventHandler( process, handle ) );
             eventLoopGroup.register(channel);
 
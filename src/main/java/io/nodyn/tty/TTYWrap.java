@@ -138,7 +138,8 @@ public class TTYWrap extends StreamWrap {
         ByteArrayOutputStream bout = new ByteArrayOutputStream();
 
         Process p = Runtime.getRuntime().exec(cmd);
-        int c;
+        byte[] buf = new byte[1024];
+        int numRead;
         InputStream in = null;
         InputStream err = null;
         OutputStream out = null;
@@ -146,14 +147,14 @@ public class TTYWrap extends StreamWrap {
         try {
             in = p.getInputStream();
 
-            while ((c = in.read()) != -1) {
-                bout.write(c);
+            while ((numRead = in.read(buf)) != -1) {
+                bout.write(buf, 0, numRead);
             }
 
             err = p.getErrorStream();
 
-            while ((c = err.read()) != -1) {
-                bout.write(c);
+            while ((numRead = err.read(buf)) != -1) {
+                bout.write(buf, 0, numRead);
             }
 
             out = p.getOutputStream();
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.udp;
+
+import io.netty.buffer.ByteBuf;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Datagrams read from a socket in one pass, delivered to JavaScript in a
+ * single callback. Payloads are slices of one buffer sized to the batch.
+ */
+public final class DatagramBatch {
+
+    private final ByteBuf[] contents;
+    private final InetSocketAddress[] senders;
+
+    DatagramBatch(ByteBuf[] contents, InetSocketAddress[] senders) {
+        this.contents = contents;
+        this.senders = senders;
+    }
+
+    public int size() {
+        return this.contents.length;
+    }
+
+    public ByteBuf getContent(int i) {
+        return this.contents[i];
+    }
+
+    public InetSocketAddress getSender(int i) {
+        return this.senders[i];
+    }
+}
@@ -1,24 +1,90 @@
 package io.nodyn.udp;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.util.ReferenceCountUtil;
 import io.nodyn.CallbackResult;
+import io.nodyn.EventSource;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * Collects the datagrams of one read pass and hands them to JavaScript as a
+ * {@link DatagramBatch} on <code>channelReadComplete</code>.
+ *
+ * <p>Reads land in pooled buffers, which are copied into a single heap buffer
+ * per batch and released straight away. JavaScript buffers are never
+ * released explicitly, so they must not pin pooled memory.</p>
+ *
  * @author Lance Ball
  */
-class DatagramInboundHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+class DatagramInboundHandler extends ChannelInboundHandlerAdapter {
+    private static final int RECV = EventSource.eventId("recv");
+
     private final UDPWrap udpWrap;
+    private final List<DatagramPacket> pending = new ArrayList<>();
+    private int pendingBytes;
 
     public DatagramInboundHandler(UDPWrap udpWrap) {
         this.udpWrap = udpWrap;
     }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext channelHandlerContext, DatagramPacket datagramPacket) throws Exception {
-        // emit message received for JS side
-        udpWrap.emit("recv", CallbackResult.createSuccess(ReferenceCountUtil.retain(datagramPacket.content())));
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof DatagramPacket)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        DatagramPacket packet = (DatagramPacket) msg;
+        this.pending.add(packet);
+        this.pendingBytes += packet.content().readableBytes();
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (!this.pending.isEmpty()) {
+            this.udpWrap.emit(RECV, CallbackResult.createSuccess(drain()));
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (DatagramPacket packet : this.pending) {
+            ReferenceCountUtil.release(packet);
+        }
+        this.pending.clear();
+        this.pendingBytes = 0;
+        super.channelInactive(ctx);
+    }
+
+    private DatagramBatch drain() {
+        int count = this.pending.size();
+        ByteBuf slab = Unpooled.buffer(this.pendingBytes, this.pendingBytes);
+        ByteBuf[] contents = new ByteBuf[count];
+        InetSocketAddress[] senders = new InetSocketAddress[count];
+
+        for (int i = 0; i < count; ++i) {
+            DatagramPacket packet = this.pending.get(i);
+            try {
+                ByteBuf content = packet.content();
+                int start = slab.writerIndex();
+                int length = content.readableBytes();
+                slab.writeBytes(content, content.readerIndex(), length);
+                contents[i] = slab.slice(start, length);
+                senders[i] = packet.sender();
+            } finally {
+                packet.release();
+            }
+        }
+
+        this.pending.clear();
+        this.pendingBytes = 0;
+        return new DatagramBatch(contents, senders);
     }
 }
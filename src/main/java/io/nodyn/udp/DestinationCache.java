@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.udp;
+
+import io.netty.util.NetUtil;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small LRU of resolved send destinations for one socket.
+ *
+ * <p>dgram resolves host names before handing an address to the binding, so
+ * the addresses seen here are IP literals and can be cached for the life of
+ * the socket. Anything else is resolved on each call, as before.</p>
+ */
+final class DestinationCache {
+
+    private static final int MAX_ENTRIES = 64;
+
+    private final Map<Key, InetSocketAddress> entries = new LinkedHashMap<Key, InetSocketAddress>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, InetSocketAddress> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final Key probe = new Key();
+    private InetSocketAddress last;
+
+    synchronized InetSocketAddress get(String address, int port, Family family) throws UnknownHostException {
+        InetSocketAddress last = this.last;
+        if (last != null && last.getPort() == port && this.probe.matches(address, family)) {
+            return last;
+        }
+
+        this.probe.set(address, port, family);
+        InetSocketAddress destination = this.entries.get(this.probe);
+        if (destination == null) {
+            byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+            if (bytes == null) {
+                this.probe.set(null, 0, null);
+                this.last = null;
+                return new InetSocketAddress(resolve(address, family), port);
+            }
+            destination = new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+            this.entries.put(new Key().set(address, port, family), destination);
+        }
+        this.last = destination;
+        return destination;
+    }
+
+    private static InetAddress resolve(String address, Family family) throws UnknownHostException {
+        if (family == Family.IPv4) {
+            return Inet4Address.getByName(address);
+        }
+        return Inet6Address.getByName(address);
+    }
+
+    private static final class Key {
+        private String address;
+        private int port;
+        private Family family;
+
+        Key set(String address, int port, Family family) {
+            this.address = address;
+            this.port = port;
+            this.family = family;
+            return this;
+        }
+
+        boolean matches(String address, Family family) {
+            return this.family == family && address.equals(this.address);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return this.port == that.port && this.family == that.family && this.address.equals(that.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.address.hashCode() * 31 + this.port;
+        }
+    }
+}
@@ -3,10 +3,12 @@ package io.nodyn.udp;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ChannelFactory;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.InternetProtocolFamily;
@@ -17,20 +19,49 @@ import io.nodyn.handle.HandleWrap;
 
 import java.net.*;
 import java.util.Enumeration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Lance Ball (lball@redhat.com)
  */
 public class UDPWrap extends HandleWrap {
 
+    /**
+     * Receive buffers come from a shared heap pool; DatagramInboundHandler
+     * copies each read pass out of them, so they are returned right away.
+     */
+    private static final PooledByteBufAllocator RECV_ALLOCATOR = new PooledByteBufAllocator(false);
+
+    private static final int DEFAULT_RECV_BUFFER_SIZE = Integer.getInteger("nodyn.udp.recvBufferSize", 65536);
+
     private ChannelFuture channelFuture;
     private InetSocketAddress localAddress;
     private final Bootstrap bootstrap;
 
+    private final DestinationCache destinations = new DestinationCache();
+    private final Queue<DatagramPacket> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            Channel channel = channelFuture.channel();
+            DatagramPacket packet;
+            while ((packet = outbound.poll()) != null) {
+                channel.write(packet, channel.voidPromise());
+            }
+            channel.flush();
+        }
+    };
+
     public UDPWrap(NodeProcess process) {
         super(process, false);
         bootstrap = new Bootstrap();
         bootstrap.group(this.process.getEventLoop().getEventLoopGroup())
+                .option(ChannelOption.ALLOCATOR, RECV_ALLOCATOR)
+                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(DEFAULT_RECV_BUFFER_SIZE))
                 .handler(new DatagramChannelInitializer(UDPWrap.this));
     }
 
@@ -63,15 +94,7 @@ public class UDPWrap extends HandleWrap {
 
     public Object send(ByteBuf buf, int offset, int length, int port, String address, Family family) {
         try {
-            InetSocketAddress remoteAddress;
-            if (family == Family.IPv4) {
-                remoteAddress = new InetSocketAddress(Inet4Address.getByName(address), port);
-            } else {
-                remoteAddress = new InetSocketAddress(Inet6Address.getByName(address), port);
-            }
-
-            DatagramPacket packet = new DatagramPacket(ReferenceCountUtil.retain(buf.slice(offset, length)), remoteAddress, localAddress);
-            channelFuture.channel().writeAndFlush(packet);
+            write(buf, offset, length, this.destinations.get(address, port, family));
         } catch (UnknownHostException e) {
             UDPWrap.this.process.getNodyn().handleThrowable(e);
             return e;
@@ -79,6 +102,31 @@ public class UDPWrap extends HandleWrap {
         return null;
     }
 
+    /**
+     * Resolves a send destination once, so a batch of datagrams to the same
+     * peer can be written with {@link #write(ByteBuf, int, int, InetSocketAddress)}.
+     *
+     * @return the destination, or the exception if the address is invalid
+     */
+    public Object destination(String address, int port, Family family) {
+        try {
+            return this.destinations.get(address, port, family);
+        } catch (UnknownHostException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Queues a datagram. Queued datagrams are written and flushed together
+     * on the next turn of the channel's event loop.
+     */
+    public void write(ByteBuf buf, int offset, int length, InetSocketAddress remoteAddress) {
+        this.outbound.add(new DatagramPacket(ReferenceCountUtil.retain(buf.slice(offset, length)), remoteAddress, localAddress));
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            this.channelFuture.channel().eventLoop().execute(this.flushTask);
+        }
+    }
+
     public void recvStart() throws Exception {
         channelFuture.channel().config().setAutoRead(true);
     }
@@ -87,6 +135,13 @@ public class UDPWrap extends HandleWrap {
         channelFuture.channel().config().setAutoRead(false);
     }
 
+    /**
+     * Sets the size of the buffer each datagram is read into. Longer datagrams are truncated.
+     */
+    public void setRecvBufferSize(int size) {
+        setChannelOption(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(size));
+    }
+
     public void setBroadcast(int arg) {
         setChannelOption(ChannelOption.SO_BROADCAST, arg == 1);
     }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.worker;
+
+import io.nodyn.CallbackResult;
+import io.nodyn.NodeProcess;
+import io.nodyn.handle.HandleWrap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One end of a {@link WorkerChannel}, bound to the event-loop of the
+ * runtime that owns it.
+ *
+ * <p>Arriving messages are not emitted one by one. The first message to land
+ * in an empty inbox emits a single <code>messages</code> event; the JS side
+ * then calls {@link #receive()} to drain everything queued up to that point.</p>
+ */
+public class MessagePort extends HandleWrap {
+
+    private static final WorkerMessage[] EMPTY = new WorkerMessage[0];
+    private static final int MESSAGES = eventId("messages");
+
+    private final WorkerChannel channel;
+    private final boolean parentSide;
+    private final AtomicBoolean notified = new AtomicBoolean();
+    private boolean closed;
+
+    public MessagePort(NodeProcess process, WorkerChannel channel, boolean parentSide) {
+        super(process, false);
+        this.channel = channel;
+        this.parentSide = parentSide;
+        this.channel.attach(this, parentSide);
+    }
+
+    public boolean postMessage(WorkerMessage message) {
+        if (this.closed) {
+            return false;
+        }
+        return this.channel.send(this.parentSide, message);
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    public WorkerMessage[] receive() {
+        this.notified.set(false);
+        BlockingQueue<WorkerMessage> inbox = this.channel.inbox(this.parentSide);
+        if (inbox.isEmpty()) {
+            return EMPTY;
+        }
+        List<WorkerMessage> messages = new ArrayList<>(inbox.size());
+        inbox.drainTo(messages);
+        return messages.toArray(new WorkerMessage[messages.size()]);
+    }
+
+    void messageAvailable() {
+        if (this.notified.compareAndSet(false, true)) {
+            emit(MESSAGES, CallbackResult.EMPTY_SUCCESS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.channel.detach(this.parentSide);
+        List<WorkerMessage> pending = new ArrayList<>();
+        this.channel.inbox(this.parentSide).drainTo(pending);
+        for (WorkerMessage each : pending) {
+            each.release();
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.worker;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The pair of bounded queues connecting a parent runtime with one worker.
+ *
+ * <p>The parent-side port exists as soon as the worker is created; the
+ * worker-side port is attached once the worker runtime has booted far
+ * enough to ask for it. Messages posted before then simply wait in the
+ * queue.</p>
+ */
+public class WorkerChannel {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final BlockingQueue<WorkerMessage> toWorker;
+    private final BlockingQueue<WorkerMessage> toParent;
+
+    private volatile MessagePort parentPort;
+    private volatile MessagePort workerPort;
+
+    public WorkerChannel(int capacity) {
+        if (capacity <= 0) {
+            capacity = DEFAULT_CAPACITY;
+        }
+        this.toWorker = new ArrayBlockingQueue<>(capacity);
+        this.toParent = new ArrayBlockingQueue<>(capacity);
+    }
+
+    BlockingQueue<WorkerMessage> inbox(boolean parentSide) {
+        return parentSide ? this.toParent : this.toWorker;
+    }
+
+    boolean send(boolean fromParent, WorkerMessage message) {
+        BlockingQueue<WorkerMessage> queue = fromParent ? this.toWorker : this.toParent;
+        if (!queue.offer(message)) {
+            return false;
+        }
+        MessagePort target = fromParent ? this.workerPort : this.parentPort;
+        if (target != null) {
+            target.messageAvailable();
+        }
+        return true;
+    }
+
+    void attach(MessagePort port, boolean parentSide) {
+        if (parentSide) {
+            this.parentPort = port;
+        } else {
+            this.workerPort = port;
+        }
+        if (!inbox(parentSide).isEmpty()) {
+            port.messageAvailable();
+        }
+    }
+
+    void detach(boolean parentSide) {
+        if (parentSide) {
+            this.parentPort = null;
+        } else {
+            this.workerPort = null;
+        }
+    }
+
+    MessagePort getWorkerPort() {
+        return this.workerPort;
+    }
+}
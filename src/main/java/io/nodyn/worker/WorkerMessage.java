@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.worker;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single structured-clone message passed between runtimes.
+ *
+ * <p>The payload is the serialized (JSON) form of the cloned value. Buffers
+ * listed as transferable travel alongside it as their underlying
+ * {@link ByteBuf}s, so ownership moves without copying.</p>
+ */
+public class WorkerMessage {
+
+    private final String payload;
+    private final List<ByteBuf> transfers = new ArrayList<>(0);
+
+    public WorkerMessage(String payload) {
+        this.payload = payload;
+    }
+
+    public String getPayload() {
+        return this.payload;
+    }
+
+    public void addTransfer(ByteBuf buf) {
+        this.transfers.add(buf);
+    }
+
+    public int getTransferCount() {
+        return this.transfers.size();
+    }
+
+    public ByteBuf getTransfer(int index) {
+        return this.transfers.get(index);
+    }
+
+    void release() {
+        for (ByteBuf each : this.transfers) {
+            if (each.refCnt() > 0) {
+                each.release();
+            }
+        }
+        this.transfers.clear();
+    }
+
+    public String toString() {
+        return "[WorkerMessage: payload=" + this.payload + "; transfers=" + this.transfers.size() + "]";
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.worker;
+
+import io.nodyn.CallbackResult;
+import io.nodyn.NoOpExitHandler;
+import io.nodyn.NodeProcess;
+import io.nodyn.Nodyn;
+import io.nodyn.handle.HandleWrap;
+import io.nodyn.runtime.NodynConfig;
+import io.nodyn.runtime.RuntimeFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parent-side handle for a worker: a second runtime, with its own user-task
+ * thread and event-loop, running a script in the same JVM.
+ *
+ * <p>The worker shares the parent's Vert.x instance (and so its Netty
+ * event-loop group) but never shuts it down. The handle keeps the parent
+ * alive until the worker exits, at which point <code>exit</code> is emitted
+ * with the worker's exit code.</p>
+ */
+public class WorkerWrap extends HandleWrap {
+
+    private static final int ERROR = eventId("error");
+    private static final int EXIT = eventId("exit");
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final WorkerChannel channel;
+    private final MessagePort port;
+    private volatile Nodyn worker;
+    private Thread thread;
+
+    public WorkerWrap(NodeProcess process, int capacity) {
+        super(process, true);
+        this.channel = new WorkerChannel(capacity);
+        this.port = new MessagePort(process, this.channel, true);
+    }
+
+    public MessagePort getPort() {
+        return this.port;
+    }
+
+    public void start(String script, String... args) {
+        String[] argv = new String[args.length + 1];
+        argv[0] = script;
+        System.arraycopy(args, 0, argv, 1, args.length);
+
+        NodynConfig config = new NodynConfig(argv);
+        RuntimeFactory factory = RuntimeFactory.init(getClass().getClassLoader(), RuntimeFactory.RuntimeType.DYNJS);
+
+        this.worker = factory.newRuntime(this.process.getVertx(), config, false);
+        this.worker.setExitHandler(new NoOpExitHandler());
+        this.worker.setWorkerChannel(this.channel);
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int exitCode;
+                try {
+                    exitCode = WorkerWrap.this.worker.run();
+                } catch (Throwable t) {
+                    emit(ERROR, CallbackResult.createError(t));
+                    exitCode = 1;
+                }
+                exited(exitCode);
+            }
+        }, "nodyn-worker-" + COUNTER.incrementAndGet());
+        this.thread.start();
+    }
+
+    public void terminate() {
+        final Nodyn worker = this.worker;
+        if (worker == null) {
+            return;
+        }
+        worker.getEventLoop().submitUserTask(new Runnable() {
+            @Override
+            public void run() {
+                NodeProcess process = worker.getEventLoop().getProcess();
+                process.setExitCode(1);
+                process.reallyExit();
+            }
+        }, "worker-terminate");
+    }
+
+    private void exited(int exitCode) {
+        this.worker = null;
+        emit(EXIT, CallbackResult.createSuccess(exitCode));
+        unref();
+    }
+}
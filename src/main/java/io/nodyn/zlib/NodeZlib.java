@@ -20,6 +20,7 @@ import io.netty.buffer.ByteBuf;
 import io.nodyn.CallbackResult;
 import io.nodyn.NodeProcess;
 import io.nodyn.handle.HandleWrap;
+import io.nodyn.loop.WorkerPool;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -37,6 +38,10 @@ import java.util.zip.*;
  */
 public class NodeZlib extends HandleWrap {
 
+    private static final int CLOSE = eventId("close");
+    private static final int ERROR = eventId("error");
+    private static final int AFTER = eventId("after");
+
     public NodeZlib(NodeProcess process, int mode) {
         super(process, false);
         this.mode = Mode.values()[mode];
@@ -70,13 +75,13 @@ public class NodeZlib extends HandleWrap {
         }
         this.mode = Mode.NONE;
         this.closed.set(true);
-        emit("close", CallbackResult.createSuccess());
+        emit(CLOSE, CallbackResult.createSuccess());
 //        System.err.println("Unrefing NodeZlib instance");
         this.unref();
     }
 
     public void write(final int flush, final byte[] chunk, final int inOffset, final int inLen, final ByteBuf buffer, final int outOffset, final int outLen) {
-        process.getEventLoop().submitBlockingTask(new Runnable() {
+        process.getEventLoop().submitWork(WorkerPool.Category.ZLIB, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -84,7 +89,7 @@ public class NodeZlib extends HandleWrap {
                 } catch (Throwable t) {
                     System.err.println("Got error " + t);
                     t.printStackTrace();
-                    NodeZlib.this.emit("error", CallbackResult.createError(t));
+                    NodeZlib.this.emit(ERROR, CallbackResult.createError(t));
                 }
             }
         });
@@ -167,14 +172,14 @@ public class NodeZlib extends HandleWrap {
         int inflatedLen = inflater.inflate(output);
         if (inflater.needsDictionary()) {
             if (ctx.dictionary == null) {
-                ctx.emit("error", CallbackResult.createError(new RuntimeException("Missing dictionary")));
+                ctx.emit(ERROR, CallbackResult.createError(new RuntimeException("Missing dictionary")));
                 return;
             } else {
                 try {
                     inflater.setDictionary(ctx.dictionary);
                     inflatedLen = inflater.inflate(output);
                 } catch(Throwable t) {
-                    ctx.emit("error", CallbackResult.createError(new RuntimeException("Bad dictionary")));
+                    ctx.emit(ERROR, CallbackResult.createError(new RuntimeException("Bad dictionary")));
                 }
             }
         }
@@ -202,12 +207,12 @@ public class NodeZlib extends HandleWrap {
         result.put("output", output);
         result.put("inAfter", inAfter);
         result.put("outAfter", outAfter);
-        ctx.emit("after", CallbackResult.createSuccess(result));
+        ctx.emit(AFTER, CallbackResult.createSuccess(result));
     }
 
     private boolean check(boolean bool, String msg) {
         if (!bool) {
-            emit("error", CallbackResult.createError(new RuntimeException(msg)));
+            emit(ERROR, CallbackResult.createError(new RuntimeException(msg)));
         }
         return bool;
     }
@@ -0,0 +1,91 @@
+
+
+// Native search, in the spirit of later node releases
+Buffer.prototype.indexOf = function(val, byteOffset, encoding) {
+  byteOffset = byteOffset | 0;
+  if ( byteOffset < 0 ) {
+    byteOffset = Math.max( this.length + byteOffset, 0 );
+  }
+  if ( typeof val === 'number' ) {
+    return io.nodyn.buffer.Buffer.indexOf( this, val & 0xFF, byteOffset );
+  }
+  if ( typeof val === 'string' ) {
+    if ( val.length === 0 ) {
+      return -1;
+    }
+    val = new Buffer( val, encoding );
+  }
+  if ( Buffer.isBuffer( val ) ) {
+    if ( val.length === 0 ) {
+      return -1;
+    }
+    return io.nodyn.buffer.Buffer.indexOf( this, val, byteOffset );
+  }
+  throw new TypeError('val must be string, number or Buffer');
+};
+
+// A single allocation filled by native copies
+Buffer.concat = function(list, length) {
+  if ( ! util.isArray( list ) ) {
+    throw new TypeError('Usage: Buffer.concat(list[, length])');
+  }
+
+  if ( list.length === 0 ) {
+    return new Buffer(0);
+  }
+  if ( list.length === 1 ) {
+    return list[0];
+  }
+
+  var i;
+  if ( util.isUndefined( length ) ) {
+    length = 0;
+    for ( i = 0 ; i < list.length ; ++i ) {
+      length += list[i].length;
+    }
+  } else {
+    length = length >>> 0;
+  }
+
+  var result = new Buffer( length );
+  var pos = 0;
+  for ( i = 0 ; i < list.length && pos < length ; ++i ) {
+    pos += io.nodyn.buffer.Buffer.copy( list[i], result, pos, 0, list[i].length );
+  }
+  return result;
+};
+
+// URL-safe base64; decoding already accepts either alphabet, so writes
+// take the base64 path and only toString needs its own slice
+function isBase64url(encoding) {
+  return util.isString( encoding ) && encoding.toLowerCase() === 'base64url';
+}
+
+var _write = Buffer.prototype.write;
+Buffer.prototype.write = function() {
+  var args = Array.prototype.slice.call( arguments );
+  for ( var i = 1 ; i < args.length ; ++i ) {
+    if ( isBase64url( args[i] ) ) {
+      args[i] = 'base64';
+    }
+  }
+  return _write.apply( this, args );
+};
+
+var _toString = Buffer.prototype.toString;
+Buffer.prototype.toString = function(encoding, start, end) {
+  if ( isBase64url( encoding ) ) {
+    start = start >>> 0;
+    end = util.isUndefined( end ) ? this.length : Math.min( end >>> 0, this.length );
+    if ( end <= start ) {
+      return '';
+    }
+    return this.base64urlSlice( start, end );
+  }
+  return _toString.apply( this, arguments );
+};
+
+var _isEncoding = Buffer.isEncoding;
+Buffer.isEncoding = function(encoding) {
+  return isBase64url( encoding ) || _isEncoding( encoding );
+};
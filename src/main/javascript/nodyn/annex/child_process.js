@@ -0,0 +1,109 @@
+
+
+// A pool of pre-started helper processes for commands that are run over and
+// over. Each message is a 4-byte big-endian length followed by that many
+// bytes: a request goes to an idle worker's stdin and its reply is read from
+// the worker's stdout, which is read even while a large request is still
+// being written. A zero-length request is a health check and must be
+// answered with a zero-length reply; a worker should exit when its stdin
+// closes.
+function ProcessPool(file, args, options) {
+  EventEmitter.call(this);
+
+  var self = this;
+  options = options || {};
+
+  this._callbacks = {};
+  this._nextId = 0;
+  this._pool = new io.nodyn.process.ProcessPool( process._process );
+  this._pool.on( 'reply', function(result) {
+    self._onReply( result.result[0], result.result[1], result.result[2] );
+  });
+
+  var env = options.env;
+  if (env) {
+    Object.keys(env).forEach( function(key) {
+      self._pool.addEnvPair( key + '=' + env[key] );
+    });
+  }
+  if (options.size > 0) {
+    this._pool.setSize( options.size );
+  }
+  if (options.maxJobs > 0) {
+    this._pool.setMaxJobs( options.maxJobs );
+  }
+  if (options.timeout > 0) {
+    this._pool.setTimeout( options.timeout );
+  }
+  if (typeof options.healthCheckInterval === 'number') {
+    this._pool.setHealthCheckInterval( options.healthCheckInterval );
+  }
+  if (options.healthCheckTimeout > 0) {
+    this._pool.setHealthCheckTimeout( options.healthCheckTimeout );
+  }
+
+  this._pool.start( file, [file].concat( args || [] ) );
+}
+util.inherits(ProcessPool, EventEmitter);
+
+// Sends one request to the next idle worker; callback(err, reply)
+ProcessPool.prototype.exec = function(request, callback) {
+  if (util.isString(request)) {
+    request = new Buffer(request);
+  }
+  if (!util.isBuffer(request)) {
+    throw new TypeError('Request must be a buffer or a string.');
+  }
+  if (request.length === 0) {
+    throw new RangeError('Zero-length requests are reserved for health checks.');
+  }
+  var id = this._nextId++;
+  this._callbacks[id] = callback;
+  this._pool.submit( id, request._nettyBuffer() );
+};
+
+ProcessPool.prototype._onReply = function(id, error, reply) {
+  var callback = this._callbacks[id];
+  delete this._callbacks[id];
+  if (!util.isFunction(callback)) {
+    return;
+  }
+  if (error) {
+    callback( util._errnoException( process.binding('uv')['UV_' + error], 'exec' ) );
+    return;
+  }
+  callback( null, process.binding('buffer').createBuffer( reply ) );
+};
+
+ProcessPool.prototype.stats = function() {
+  return {
+    spawned: this._pool.spawned,
+    recycled: this._pool.recycled,
+    failed: this._pool.failed,
+    completed: this._pool.completed,
+    idle: this._pool.idle,
+    pending: this._pool.pending
+  };
+};
+
+// Retires the workers; queued requests fail with ECANCELED
+ProcessPool.prototype.close = function(callback) {
+  if (util.isFunction(callback)) {
+    this.once( 'close', callback );
+  }
+  var self = this;
+  this._pool.on( 'close', function() {
+    self.emit( 'close' );
+  });
+  this._pool.close();
+};
+
+exports.ProcessPool = ProcessPool;
+
+exports.createPool = function(file, args, options) {
+  if (!Array.isArray(args)) {
+    options = args;
+    args = [];
+  }
+  return new ProcessPool(file, args, options);
+};
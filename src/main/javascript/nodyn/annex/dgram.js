@@ -0,0 +1,89 @@
+
+
+// Sends several datagrams to one destination with a single address lookup.
+// Until the socket is bound, falls back to individual sends, which handle
+// implicit binding and queueing.
+Socket.prototype.sendBatch = function(buffers, port, address, callback) {
+  var self = this;
+
+  if (!Array.isArray(buffers)) {
+    throw new TypeError('First argument must be an array of buffers or strings.');
+  }
+  buffers = buffers.map(function(buffer) {
+    if (util.isString(buffer)) {
+      return new Buffer(buffer);
+    }
+    if (!util.isBuffer(buffer)) {
+      throw new TypeError('First argument must be an array of buffers or strings.');
+    }
+    return buffer;
+  });
+
+  port = port | 0;
+  if (port <= 0 || port > 65535) {
+    throw new RangeError('Port should be > 0 and < 65536');
+  }
+
+  if (!util.isFunction(callback)) {
+    callback = undefined;
+  }
+
+  self._healthCheck();
+
+  if (buffers.length === 0) {
+    if (callback) {
+      process.nextTick(function() {
+        callback(null);
+      });
+    }
+    return;
+  }
+
+  if (self._bindState != BIND_STATE_BOUND) {
+    var remaining = buffers.length,
+        failed = false;
+    buffers.forEach(function(buffer) {
+      self.send(buffer, 0, buffer.length, port, address, function(err) {
+        if (failed) {
+          return;
+        }
+        if (err) {
+          failed = true;
+          if (callback) {
+            callback(err);
+          }
+        } else if (--remaining === 0 && callback) {
+          callback(null);
+        }
+      });
+    });
+    return;
+  }
+
+  self._handle.lookup(address, function(ex, ip) {
+    if (ex) {
+      if (callback) {
+        callback(ex);
+      }
+      self.emit('error', ex);
+      return;
+    }
+    if (!self._handle) {
+      return;
+    }
+    var err = self._handle.sendBatch(buffers, port, ip);
+    if (callback) {
+      callback(err || null);
+    }
+  });
+};
+
+// Size of the buffer each datagram is read into; longer datagrams are truncated
+Socket.prototype.setRecvBufferSize = function(size) {
+  size = size | 0;
+  if (size <= 0) {
+    throw new RangeError('Receive buffer size should be > 0');
+  }
+  this._healthCheck();
+  this._handle.setRecvBufferSize(size);
+};
@@ -0,0 +1,172 @@
+
+
+// Whole-file reads and writes go to the binding as one task each, instead
+// of a chain of open, fstat, read and close calls. Reads with flags other
+// than 'r' keep the stock implementation.
+var streamingReadFile     = fs.readFile,
+    streamingReadFileSync = fs.readFileSync;
+
+function fileOptions(options, defaultEncoding, defaultFlag) {
+  if (util.isFunction(options) || !options) {
+    options = { encoding: defaultEncoding, mode: 438 /*=0666*/, flag: defaultFlag };
+  } else if (util.isString(options)) {
+    options = { encoding: options, mode: 438 /*=0666*/, flag: defaultFlag };
+  } else if (!util.isObject(options)) {
+    throw new TypeError('Bad arguments');
+  }
+  assertEncoding(options.encoding);
+  return options;
+}
+
+fs.readFile = function(path, options, callback_) {
+  var callback = maybeCallback(arguments[arguments.length - 1]);
+  var opts = fileOptions(options, null, 'r');
+  if ((opts.flag || 'r') !== 'r') {
+    return streamingReadFile.apply(fs, arguments);
+  }
+  if (!nullCheck(path, callback)) return;
+
+  binding.readFile(pathModule._makeLong(path), function(err, buffer) {
+    if (err) return callback(err);
+    if (opts.encoding) buffer = buffer.toString(opts.encoding);
+    callback(null, buffer);
+  });
+};
+
+fs.readFileSync = function(path, options) {
+  var opts = fileOptions(options, null, 'r');
+  if ((opts.flag || 'r') !== 'r') {
+    return streamingReadFileSync.apply(fs, arguments);
+  }
+  nullCheck(path);
+
+  var buffer = binding.readFile(pathModule._makeLong(path));
+  if (opts.encoding) buffer = buffer.toString(opts.encoding);
+  return buffer;
+};
+
+fs.writeFile = function(path, data, options, callback) {
+  var callback = maybeCallback(arguments[arguments.length - 1]);
+  var opts = fileOptions(options, 'utf8', 'w');
+  if (!nullCheck(path, callback)) return;
+
+  var buffer = util.isBuffer(data) ? data : new Buffer('' + data, opts.encoding || 'utf8');
+  binding.writeFile(pathModule._makeLong(path), buffer,
+                    stringToFlags(opts.flag || 'w'), modeNum(opts.mode, 438 /*=0666*/),
+                    function(err) {
+    callback(err || null);
+  });
+};
+
+fs.writeFileSync = function(path, data, options) {
+  var opts = fileOptions(options, 'utf8', 'w');
+  nullCheck(path);
+
+  var buffer = util.isBuffer(data) ? data : new Buffer('' + data, opts.encoding || 'utf8');
+  binding.writeFile(pathModule._makeLong(path), buffer,
+                    stringToFlags(opts.flag || 'w'), modeNum(opts.mode, 438 /*=0666*/));
+};
+
+// Existence checks ask only whether the path exists, without a full stat
+fs.exists = function(path, callback) {
+  if (!nullCheck(path, cb)) return;
+  binding.exists(pathModule._makeLong(path), cb);
+  function cb(err, exists) {
+    if (callback) callback(err ? false : exists);
+  }
+};
+
+fs.existsSync = function(path) {
+  try {
+    nullCheck(path);
+    return binding.exists(pathModule._makeLong(path));
+  } catch (e) {
+    return false;
+  }
+};
+
+// Walks a directory tree natively in one pass, emitting 'entries' with arrays
+// of { path, type, size } (paths relative to the root, type one of 'file',
+// 'directory', 'symlink' or 'other'), then 'end', or 'error' if the root
+// cannot be walked. Unreadable entries below the root are skipped.
+//
+// Options: glob (report only matching relative paths), ignore (a glob or an
+// array of globs neither reported nor descended into), maxDepth (levels below
+// the root), batchSize, followSymlinks.
+var WALK_TYPES = ['file', 'directory', 'symlink', 'other'];
+
+function Walker(root, options) {
+  EventEmitter.call(this);
+  options = options || {};
+
+  var self = this;
+  var wrap = this._wrap = new io.nodyn.fs.WalkWrap(process._process);
+
+  if (options.glob) wrap.setGlob(options.glob);
+  if (options.ignore) {
+    [].concat(options.ignore).forEach(function(glob) {
+      wrap.addIgnore(glob);
+    });
+  }
+  if (options.maxDepth >= 0) wrap.setMaxDepth(options.maxDepth);
+  if (options.batchSize > 0) wrap.setBatchSize(options.batchSize);
+  if (options.followSymlinks) wrap.setFollowSymlinks(true);
+
+  wrap.on('entries', function(result) {
+    var paths = result.result[0],
+        types = result.result[1],
+        sizes = result.result[2],
+        entries = new Array(paths.length);
+    for (var i = 0; i < paths.length; ++i) {
+      entries[i] = { path: String(paths[i]), type: WALK_TYPES[types[i]], size: sizes[i] };
+    }
+    try {
+      self.emit('entries', entries);
+    } finally {
+      wrap.ack();
+    }
+  });
+  wrap.on('end', function(result) {
+    self.emit('end', result.result[0], result.result[1]);
+  });
+  wrap.on('error', function(result) {
+    var errEnum = io.nodyn.fs.Fs.errno(result.error),
+        err = new Error(errEnum.description());
+    err.errno = errEnum.intValue();
+    err.code = errEnum.name();
+    err.path = root;
+    err.syscall = 'scandir';
+    self.emit('error', err);
+  });
+
+  wrap.start(pathModule.resolve(root));
+}
+util.inherits(Walker, EventEmitter);
+
+Walker.prototype.abort = function() {
+  this._wrap.abort();
+};
+
+fs.Walker = Walker;
+
+// With a callback, collects every entry and calls callback(err, entries)
+fs.walk = function(root, options, callback) {
+  if (util.isFunction(options)) {
+    callback = options;
+    options = {};
+  }
+  if (!nullCheck(root, callback)) return;
+
+  var walker = new Walker(root, options);
+  if (util.isFunction(callback)) {
+    var all = [];
+    walker.on('entries', function(entries) {
+      all.push.apply(all, entries);
+    });
+    walker.on('end', function() {
+      callback(null, all);
+    });
+    walker.on('error', callback);
+  }
+  return walker;
+};
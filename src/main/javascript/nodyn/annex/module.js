@@ -2,3 +2,42 @@
 
 //Native extension for .jar
 Module._extensions['.jar'] = process.jaropen.bind(process);
+
+// Resolution probes many candidate paths. Answer them from the process-wide
+// stat/realpath cache, which the fs bindings keep current, instead of
+// building a full fs.Stats per probe and throwing for every miss.
+var StatCache = io.nodyn.fs.StatCache,
+    statCache = StatCache.getInstance();
+
+var DIRECTORY_STAT = { isDirectory: function() { return true; } },
+    FILE_STAT      = { isDirectory: function() { return false; } };
+
+statPath = function(requestPath) {
+  switch (statCache.kind(process._posix, requestPath)) {
+    case StatCache.DIRECTORY: return DIRECTORY_STAT;
+    case StatCache.FILE:      return FILE_STAT;
+    default:                  return false;
+  }
+};
+
+tryFile = function(requestPath) {
+  if (statCache.kind(process._posix, requestPath) !== StatCache.FILE) {
+    return false;
+  }
+  var realPath = statCache.realpath(requestPath);
+  if (realPath === null) {
+    // let realpathSync raise the proper error
+    return fs.realpathSync(requestPath, Module._realpathCache);
+  }
+  return String(realPath);
+};
+
+readPackage = (function(stockReadPackage) {
+  return function(requestPath) {
+    if (!hasOwnProperty(packageMainCache, requestPath) &&
+        statCache.kind(process._posix, path.resolve(requestPath, 'package.json')) === StatCache.MISSING) {
+      return false;
+    }
+    return stockReadPackage(requestPath);
+  };
+})(readPackage);
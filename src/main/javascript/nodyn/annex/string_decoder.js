@@ -0,0 +1,33 @@
+
+
+// Multi-byte encodings decode in Java, keeping partial characters there
+var _write = StringDecoder.prototype.write;
+var _end   = StringDecoder.prototype.end;
+
+function nativeDecoder(decoder) {
+  if ( decoder._native === undefined ) {
+    decoder._native = io.nodyn.buffer.StringDecoder.supports( decoder.encoding ) ?
+      new io.nodyn.buffer.StringDecoder( decoder.encoding ) : null;
+  }
+  return decoder._native;
+}
+
+StringDecoder.prototype.write = function(buffer) {
+  var decoder = nativeDecoder( this );
+  if ( ! decoder ) {
+    return _write.call( this, buffer );
+  }
+  return decoder.write( buffer );
+};
+
+StringDecoder.prototype.end = function(buffer) {
+  var decoder = nativeDecoder( this );
+  if ( ! decoder ) {
+    return _end.call( this, buffer );
+  }
+  var res = '';
+  if ( buffer && buffer.length ) {
+    res = decoder.write( buffer );
+  }
+  return res + decoder.end();
+};
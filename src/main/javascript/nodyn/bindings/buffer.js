@@ -43,6 +43,10 @@ module.exports.setupBufferJS = function(target, internal) {
     return io.nodyn.buffer.Buffer.base64Slice( this, start, end);
   };
 
+  target.prototype.base64urlSlice = function(start, end) {
+    return io.nodyn.buffer.Buffer.base64urlSlice( this, start, end);
+  };
+
   target.prototype.binarySlice = function(start, end) {
     return io.nodyn.buffer.Buffer.binarySlice( this, start, end);
   };
@@ -64,7 +68,7 @@ module.exports.setupBufferJS = function(target, internal) {
   target.prototype.asciiWrite = function(str, offset, len) {
     offset = offset || 0;
     len    = len    || this.length;
-    var l = io.nodyn.buffer.Buffer.asciiWrite( this, start, end );
+    var l = io.nodyn.buffer.Buffer.asciiWrite( this, str, offset, len );
     Buffer._charsWritten = l;
     return l;
   };
@@ -186,7 +190,7 @@ module.exports.setupBufferJS = function(target, internal) {
   // ----------------------------------------
 
   internal.compare = function(a,b) {
-
+    return io.nodyn.buffer.Buffer.compare( a, b );
   };
 
   internal.byteLength = io.nodyn.buffer.Internal.byteLength;
@@ -124,11 +124,18 @@ function pkcs7(cipher) {
 
 var cipherAlgorithms = {};
 
-function registerCipher(name, keyLen, ivLen, factory) {
+// transformation, when given, is the JCA name to prefer over the
+// BouncyCastle factory, so the JVM's AES-NI and CLMUL intrinsics apply.
+// Ciphers without a factory exist only where the JCA offers them.
+function registerCipher(name, keyLen, ivLen, factory, transformation) {
+  if ( ! factory && ! io.nodyn.crypto.Cipher.isSupported( transformation ) ) {
+    return;
+  }
   cipherAlgorithms[name] = {
-    keyLen:  keyLen,
-    ivLen:   ivLen,
-    factory: factory,
+    keyLen:         keyLen,
+    ivLen:          ivLen,
+    factory:        factory,
+    transformation: transformation,
   };
 }
 
@@ -140,17 +147,34 @@ function aes_ecb() {
   return pkcs7( ecb( new engines.AESEngine() ) );
 }
 
-registerCipher( 'aes128',      128, 16, aes_cbc );
-registerCipher( 'aes-128-cbc', 128, 16, aes_cbc );
-registerCipher( 'aes-128-ecb', 128, 0,  aes_ecb );
+function aes_ctr() {
+  return buffered( new modes.SICBlockCipher( new engines.AESEngine() ) );
+}
+
+var AES_CBC = 'AES/CBC/PKCS5Padding';
+var AES_ECB = 'AES/ECB/PKCS5Padding';
+var AES_CTR = 'AES/CTR/NoPadding';
+var AES_GCM = 'AES/GCM/NoPadding';
 
-registerCipher( 'aes192',      192, 16, aes_cbc );
-registerCipher( 'aes-192-cbc', 192, 16, aes_cbc );
-registerCipher( 'aes-192-ecb', 192, 0,  aes_ecb );
+registerCipher( 'aes128',      128, 16, aes_cbc, AES_CBC );
+registerCipher( 'aes-128-cbc', 128, 16, aes_cbc, AES_CBC );
+registerCipher( 'aes-128-ecb', 128, 0,  aes_ecb, AES_ECB );
+registerCipher( 'aes-128-ctr', 128, 16, aes_ctr, AES_CTR );
+registerCipher( 'aes-128-gcm', 128, 12, null,    AES_GCM );
 
-registerCipher( 'aes256',      256, 16, aes_cbc );
-registerCipher( 'aes-256-cbc', 256, 16, aes_cbc );
-registerCipher( 'aes-256-ecb', 256, 0,  aes_ecb );
+registerCipher( 'aes192',      192, 16, aes_cbc, AES_CBC );
+registerCipher( 'aes-192-cbc', 192, 16, aes_cbc, AES_CBC );
+registerCipher( 'aes-192-ecb', 192, 0,  aes_ecb, AES_ECB );
+registerCipher( 'aes-192-ctr', 192, 16, aes_ctr, AES_CTR );
+registerCipher( 'aes-192-gcm', 192, 12, null,    AES_GCM );
+
+registerCipher( 'aes256',      256, 16, aes_cbc, AES_CBC );
+registerCipher( 'aes-256-cbc', 256, 16, aes_cbc, AES_CBC );
+registerCipher( 'aes-256-ecb', 256, 0,  aes_ecb, AES_ECB );
+registerCipher( 'aes-256-ctr', 256, 16, aes_ctr, AES_CTR );
+registerCipher( 'aes-256-gcm', 256, 12, null,    AES_GCM );
+
+registerCipher( 'chacha20', 256, 16, null, 'ChaCha20' );
 
 function bf_cbc() {
   return pkcs7( cbc( new engines.BlowfishEngine() ) );
@@ -291,7 +315,15 @@ CipherBase.prototype.initiv = function(cipher, key, iv) {
     throw new Error( "Cipher method not supported" );
   }
 
-  this._delegate = new io.nodyn.crypto.Cipher( this._encipher, algo.factory(), key._nettyBuffer(), iv._nettyBuffer() );
+  if ( algo.transformation ) {
+    this._delegate = io.nodyn.crypto.Cipher.create( this._encipher, algo.transformation, key._nettyBuffer(), iv._nettyBuffer() );
+  }
+  if ( ! this._delegate ) {
+    if ( ! algo.factory ) {
+      throw new Error( "Invalid key length" );
+    }
+    this._delegate = new io.nodyn.crypto.Cipher( this._encipher, algo.factory(), key._nettyBuffer(), iv._nettyBuffer() );
+  }
 }
 
 
@@ -301,6 +333,18 @@ CipherBase.prototype.final = function() {
   return process.binding('buffer').createBuffer( this._delegate.doFinal() );
 }
 
+CipherBase.prototype.getAuthTag = function() {
+  return process.binding('buffer').createBuffer( this._delegate.getAuthTag() );
+}
+
+CipherBase.prototype.setAuthTag = function(tag) {
+  this._delegate.setAuthTag( tag._nettyBuffer() );
+}
+
+CipherBase.prototype.setAAD = function(aad) {
+  this._delegate.setAAD( aad._nettyBuffer() );
+}
+
 module.exports.CipherBase = CipherBase;
 
 module.exports.getCiphers = function() {
@@ -365,7 +409,7 @@ function pbkdf2(password, salt, iterations, keylen, digest, callback) {
     blocking.unblock( function() {
       callback( null, ret );
     })();
-  });
+  }, 'crypto' );
 }
 
 function pbkdf2Sync(password, salt, iterations, keylen, digest) {
@@ -388,7 +432,7 @@ function randomBytes(size, callback) {
     blocking.unblock( function() {
       callback( null, ret );
     })();
-  } );
+  }, 'crypto' );
 }
 
 function randomBytesSync(size) {
@@ -402,7 +446,7 @@ function pseudoRandomBytes(size, callback) {
     blocking.unblock( function() {
       callback( null, ret );
     })();
-  } );
+  }, 'crypto' );
 }
 
 function pseudoRandomBytesSync(size) {
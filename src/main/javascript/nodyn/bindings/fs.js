@@ -21,11 +21,16 @@ var nodyn       = require('nodyn'),
     StatWatcher = process.binding('stat_watcher').StatWatcher,
     posix       = process._posix,
     Errno       = Packages.jnr.constants.platform.Errno,
+    O_CREAT     = Packages.jnr.constants.platform.OpenFlags.O_CREAT.intValue(),
     File        = Packages.java.io.File,
     Fs          = Packages.io.nodyn.fs.Fs,
+    statCache   = Packages.io.nodyn.fs.StatCache.getInstance(),
+    uring       = Packages.io.nodyn.fs.Uring.create(process.EVENT_LOOP),
     binding     = module.exports,
     statsCtor   = null;
 
+if (uring) process.on('exit', function() { uring.close(); });
+
 // Executes work asynchronously if async is provided and is a function -
 // otherwise, just executes the work and returns the result. If executing
 // async and successful, the callback function is executed on the next tick.
@@ -37,7 +42,7 @@ function executeWork(work, async, throws) {
       var result = work();
       result = result || {};
       blocking.unblock(async)( result.err, result.result );
-    });
+    }, 'fs');
   } else { // Sync
     var result = work();
     result = result || {};
@@ -49,6 +54,23 @@ function executeWork(work, async, throws) {
   }
 }
 
+// With nodyn.fs.uring set and a kernel that supports it, asynchronous
+// stat, open, read, write and fsync calls go to an io_uring instead of the
+// worker pool. Completions carry [res, value], where a negative res is
+// -errno; done(res, value) is only called on success.
+function uringDone(callback, path, syscall, done) {
+  return function(result) {
+    var res = result.result[0];
+    if (res < 0) callback(errnoError(Errno.valueOf(-res), path, syscall));
+    else done(res, result.result[1]);
+  };
+}
+
+// io_uring reads and writes at the file position when given -1
+function uringPosition(position) {
+  return (typeof position === 'number' && position >= 0) ? position : -1;
+}
+
 function possiblyRelative(p) {
   if (path.isAbsolute(p)) return p;
   return path.resolve(process.cwd(), p);
@@ -61,62 +83,94 @@ binding.FSInitialize = function(stats) {
   statsCtor = stats;
 };
 
+// statf returns a compact stat array from io.nodyn.fs.Fs, or null on error
 function buildStat(path, statf) {
   var err, stats,
-      delegate = posix.allocateStat(),
-      result = statf(delegate);
-
-  if (result !== -1) {
-    stats = new statsCtor(
-      delegate.dev(),
-      delegate.mode(),
-      delegate.nlink(),
-      delegate.uid(),
-      delegate.gid(),
-      delegate.rdev(),
-      delegate.blockSize(),
-      delegate.ino(),
-      delegate.st_size(),
-      delegate.blocks(),
-      delegate.atime(),
-      delegate.mtime(),
-      delegate.ctime(),
-      delegate.ctime() // TODO: I don't know what birthtim_msec should be
-    );
-  } else err = posixError(possiblyRelative(path), 'stat');
+      s = statf();
+
+  if (s !== null) stats = newStats(s);
+  else err = posixError(possiblyRelative(path), 'stat');
   return {err:err, result:stats};
 }
 
+function newStats(s) {
+  return new statsCtor(s[0], s[1], s[2], s[3], s[4], s[5], s[6],
+                       s[7], s[8], s[9], s[10], s[11], s[12], s[13]);
+}
+
+// Stats from a compact stat array, for the stat watcher
+binding.createStats = function(s) {
+  return newStats(s);
+};
+
+function uringStats(callback) {
+  return function(res, s) {
+    callback(undefined, newStats(s));
+  };
+}
+
 binding.StatWatcher = StatWatcher;
 
 binding.stat = function(path, callback) {
   path = possiblyRelative(path);
+  if (uring && typeof callback === 'function') {
+    return uring.stat(path, uringDone(callback, path, 'stat', uringStats(callback)));
+  }
   function work() {
-    return buildStat(path, function(stat) { return posix.stat(path, stat); });
+    return buildStat(path, function() { return Fs.stat(posix, path); });
   }
   return executeWork(work.bind(this), callback, true);
 };
 
 binding.lstat = function(path, callback) {
   path = possiblyRelative(path);
+  if (uring && typeof callback === 'function') {
+    return uring.lstat(path, uringDone(callback, path, 'lstat', uringStats(callback)));
+  }
   function work() {
-    return buildStat(path, function(stat) { return posix.lstat(path, stat); });
+    return buildStat(path, function() { return Fs.lstat(posix, path); });
   }
   return executeWork(work.bind(this), callback, true);
 };
 
 binding.fstat = function(fd, callback) {
+  if (uring && typeof callback === 'function') {
+    return uring.fstat(fd, uringDone(callback, fd, 'fstat', uringStats(callback)));
+  }
   function work() {
-    return buildStat(fd, function(stat) { return posix.fstat(fd, stat); });
+    return buildStat(fd, function() { return Fs.fstat(posix, fd); });
   }
   return executeWork(work.bind(this), callback, true);
 };
 
+// Existence only; no stat is built
+binding.exists = function(path, callback) {
+  path = possiblyRelative(path);
+  function work() {
+    return {result:Fs.exists(path)};
+  }
+  return executeWork(work.bind(this), callback);
+};
+
+// Drops the path and what lies beneath it, or with no path everything, from
+// the module resolution cache
+binding.invalidateStatCache = function(path) {
+  if (path === undefined) statCache.invalidate();
+  else statCache.invalidateTree(possiblyRelative(path));
+};
+
 binding.open = function(path, flags, mode, callback) {
   path = possiblyRelative(path);
+  if (uring && typeof callback === 'function') {
+    return uring.open(path, flags, mode, uringDone(callback, path, 'open', function(fd) {
+      if (flags & O_CREAT) statCache.invalidate(path);
+      callback(undefined, fd);
+    }));
+  }
   function work() {
     var fd = posix.open(path, flags, mode), err;
     if (fd === -1) err = posixError(path, 'open');
+    else if (flags & O_CREAT) statCache.invalidate(path);
     return {err:err, result:fd};
   }
   return executeWork(work.bind(this), callback, true);
@@ -135,12 +189,22 @@ binding.close = function(fd, callback) {
 };
 
 binding.writeBuffer = function(fd, buffer, offset, length, position, callback) {
-  function work() {
+  function check() {
     if (offset > buffer.length) throw new RangeError('offset out of bounds');
     if (length > buffer.length) throw new RangeError('length out of bounds');
     if (offset + length < offset) throw new RangeError('offset + length overflow');
     if (offset + length > buffer.length) 
       throw new RangeError('offset + length > buffer.length');
+  }
+  if (uring && typeof callback === 'function') {
+    check();
+    return uring.write(fd, buffer._nettyBuffer(), offset, length, uringPosition(position),
+      uringDone(callback, fd, 'write', function(written) {
+        callback(undefined, written);
+      }));
+  }
+  function work() {
+    check();
 
     var toWrite = buffer.slice(offset, offset+length);
     var bytes   = toWrite._byteArray();
@@ -163,6 +227,7 @@ binding.mkdir = function(path, mode, callback) {
   function work() {
     var success = posix.mkdir(path, mode), err;
     if (success === -1) err = posixError(path, 'mkdir');
+    else statCache.invalidate(path);
     return {err: err, result: success};
   }
   return executeWork(work.bind(this), callback);
@@ -173,6 +238,7 @@ binding.rmdir = function(path, callback) {
   function work() {
     var success = posix.rmdir(path), err;
     if (success === -1) err = posixError(path, 'rmdir');
+    else statCache.invalidateTree(path);
     return {err: err, result: success};
   }
   return executeWork(work.bind(this), callback);
@@ -183,6 +249,10 @@ binding.rename = function(from, to, callback) {
     var fromFile = new File(from),
         toFile = new File(to), err;
     if (!fromFile.exists() || !fromFile.renameTo(toFile)) err = posixError(from, 'rename');
+    else {
+      statCache.invalidateTree(fromFile.getAbsolutePath());
+      statCache.invalidateTree(toFile.getAbsolutePath());
+    }
     return {err:err};
   }
   return executeWork(work.bind(this), callback);
@@ -230,6 +300,12 @@ binding.read = function(fd, buffer, offset, length, position, callback) {
   offset = offset || 0;
   // we can't use the executeWork function here because the read() callback
   // takes 3 parameters, and executeWork only works with cb(err, result)
+  if (uring && typeof callback === 'function') {
+    return uring.read(fd, buffer._nettyBuffer(), offset, length, uringPosition(position),
+      uringDone(callback, fd, 'read', function(bytes) {
+        callback(undefined, bytes, buffer);
+      }));
+  }
   if (typeof callback === 'function') { // Async
     blocking.submit(function() {
       if ( position && position !== -1 ) {
@@ -240,7 +316,7 @@ binding.read = function(fd, buffer, offset, length, position, callback) {
       blocking.unblock(function() {
         callback(undefined, bytes, buffer);
       })();
-    }.bind(this));
+    }.bind(this), 'fs');
   } else { // Sync
     if ( position && position !== -1 ) {
       bytes = Fs.pread(posix, fd, buffer._nettyBuffer(), offset, length, position);
@@ -252,6 +328,28 @@ binding.read = function(fd, buffer, offset, length, position, callback) {
   }
 };
 
+// Opens, reads and closes in one task; the whole file is delivered at once
+binding.readFile = function(path, callback) {
+  path = possiblyRelative(path);
+  function work() {
+    var result = Fs.readFile(path);
+    if (result.isError()) return {err:nioError(result.getError(), path, 'open')};
+    return {result:process.binding('buffer').createBuffer(result.getResult())};
+  }
+  return executeWork(work.bind(this), callback, true);
+};
+
+binding.writeFile = function(path, buffer, flags, mode, callback) {
+  path = possiblyRelative(path);
+  function work() {
+    var result = Fs.writeFile(path, buffer._nettyBuffer(), flags, mode);
+    if (result.isError()) return {err:nioError(result.getError(), path, 'open')};
+    statCache.invalidate(path);
+    return {result:result.getResult()};
+  }
+  return executeWork(work.bind(this), callback, true);
+};
+
 binding.link = function(srcpath, dstpath, callback) {
   srcpath = possiblyRelative(srcpath);
   dstpath = possiblyRelative(dstpath);
@@ -259,6 +357,7 @@ binding.link = function(srcpath, dstpath, callback) {
     if (posix.link(srcpath, dstpath) === -1) {
       return {err:posixError(srcpath, 'link')};
     }
+    statCache.invalidate(dstpath);
   }.bind(this), callback);
 };
 
@@ -272,6 +371,8 @@ binding.symlink = function(srcpath, dstpath, type, callback) {
     if (posix.symlink(srcpath, dstpath) === -1) {
       return {err:posixError(srcpath, 'symlink')};
     }
+    // paths beneath a link to a directory spring into existence
+    statCache.invalidateTree(dstpath);
   }.bind(this), callback);
 };
 
@@ -290,6 +391,7 @@ binding.unlink = function(path, callback) {
     if (posix.unlink(path) === -1) {
       return {err:posixError(path, 'unlink')};
     }
+    statCache.invalidateTree(path);
   }.bind(this), callback);
 };
 
@@ -344,7 +446,12 @@ binding.futimes = function(fd, atime, mtime, callback) {
   }.bind(this), callback);
 };
 
-binding.fsync = function(fd) {
+binding.fsync = function(fd, callback) {
+  if (uring && typeof callback === 'function') {
+    return uring.fsync(fd, false, uringDone(callback, fd, 'fsync', function() {
+      callback();
+    }));
+  }
   return executeWork(function() {
     if (posix.fsync(fd) === -1) {
       return {err:posixError(fd, 'fsync')};
@@ -352,7 +459,12 @@ binding.fsync = function(fd) {
   }.bind(this), callback);
 };
 
-binding.fdatasync = function(fd) {
+binding.fdatasync = function(fd, callback) {
+  if (uring && typeof callback === 'function') {
+    return uring.fsync(fd, true, uringDone(callback, fd, 'fdatasync', function() {
+      callback();
+    }));
+  }
   return executeWork(function() {
     if (posix.fdatasync(fd) === -1) {
       return {err:posixError(fd, 'fdatasync')};
@@ -362,11 +474,17 @@ binding.fdatasync = function(fd) {
 
 
 function posixError(path, syscall) {
-  var errno = posix.errno(),
-      errEnum = Errno.valueOf(errno),
-      e = new Error(errEnum.description());
+  return errnoError(Errno.valueOf(posix.errno()), path, syscall);
+}
+
+function nioError(error, path, syscall) {
+  return errnoError(Fs.errno(error), path, Fs.syscall(error, syscall));
+}
+
+function errnoError(errEnum, path, syscall) {
+  var e = new Error(errEnum.description());
 
-  e.errno   = errno;
+  e.errno   = errEnum.intValue();
   e.path    = path;
   e.syscall = syscall;
   e.code    = errEnum.name();
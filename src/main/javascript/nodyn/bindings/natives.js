@@ -39,6 +39,7 @@ var source = {};
 
   'fs',
   'nodyn/blocking',
+  'nodyn/worker',
 
   'stream',
   '_stream_readable',
@@ -14,9 +14,31 @@
  * limitations under the License.
  */
 
+var UV = process.binding('uv');
+
 function spawn(options) {
   var proc = new io.nodyn.process.SyncProcessWrap( process._process );
-  var status = proc.spawn( options.files, options.args );
+
+  if ( options.envPairs ) {
+    options.envPairs.forEach( function(pair) {
+      proc.addEnvPair( pair );
+    });
+  }
+  if ( options.timeout > 0 ) {
+    proc.setTimeout( options.timeout );
+  }
+  if ( options.maxBuffer > 0 ) {
+    proc.setMaxBuffer( options.maxBuffer );
+  }
+  if ( typeof options.killSignal === 'number' ) {
+    proc.setKillSignal( options.killSignal );
+  }
+  var stdin = options.stdio && options.stdio[0];
+  if ( stdin && stdin.input ) {
+    proc.setInput( stdin.input._nettyBuffer() );
+  }
+
+  var status = proc.spawn( options.file || options.files, options.args );
   var result = {
     pid: proc.pid,
     output: [
@@ -26,9 +48,9 @@ function spawn(options) {
     ],
     //stdout: process.binding('buffer').createBuffer( proc.stdout ),
     //stderr: process.binding('buffer').createBuffer( proc.stderr ),
-    status: status,
-    signal: undefined,
-    error: undefined,
+    status: ( status < 0 ? null : status ),
+    signal: ( proc.signal ? String( proc.signal ) : null ),
+    error: ( proc.error ? UV[ 'UV_' + proc.error ] : undefined ),
   };
 
   Object.defineProperty( result, 'stdout', {
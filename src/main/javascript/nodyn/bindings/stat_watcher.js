@@ -16,11 +16,12 @@
 
 var util = require('util'),
     Handle = process.binding('handle_wrap').Handle,
-    fs = process.binding('fs');
+    fs = process.binding('fs'),
+    poller = new io.nodyn.fs.StatPoller(process.EVENT_LOOP, process._posix);
 
 function StatWatcher() {
   if (!(this instanceof StatWatcher)) return new StatWatcher();
-  this._delegate = new io.nodyn.fs.NodeStatWatcher(process._process);
+  this._delegate = new io.nodyn.fs.NodeStatWatcher(process._process, poller);
   this._delegate.on('change', _onchange.bind(this));
   Handle.call( this, this._delegate );
 }
@@ -28,7 +29,6 @@ util.inherits( StatWatcher, Handle );
 
 StatWatcher.prototype.start = function(path, persistent, interval) {
   path = require('path').resolve(path);
-  this._stat = fs.stat(path);
   this._delegate.start(path, persistent, interval);
 };
 
@@ -44,9 +44,10 @@ function _onchange(result) {
     if (result.error) {
       return;
     }
-    var stat = fs.stat(result.result);
-    this.onchange(stat, this._stat, 1);
-    this._stat = stat;
+    // compact stat arrays, current and previous, then the status
+    this.onchange(fs.createStats(result.result[0]),
+                  fs.createStats(result.result[1]),
+                  result.result[2]);
   }
 }
 
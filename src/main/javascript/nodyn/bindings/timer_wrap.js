@@ -31,6 +31,18 @@ Timer.prototype.stop = function() {
   this._timer.stop();
 }
 
+Timer.prototype.again = function() {
+  this._timer.again();
+}
+
+Timer.prototype.setRepeat = function(repeat) {
+  this._timer.setRepeat(repeat);
+}
+
+Timer.prototype.getRepeat = function() {
+  return this._timer.getRepeat();
+}
+
 Timer.now = io.nodyn.timer.TimerWrap.now;
 
 module.exports.Timer = Timer;
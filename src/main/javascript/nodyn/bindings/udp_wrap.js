@@ -19,20 +19,27 @@ var Handle = process.binding('handle_wrap').Handle,
     Family = io.nodyn.udp.Family,
     util   = require('util');
 
-function onRecv(result) { 
+// Each 'recv' carries every datagram read in one pass
+function onRecv(result) {
   if (typeof this.onmessage === 'function') {
     if (result.error) {
       throw Error(result.error); // TODO: throw here?
     }
-    var buf = process.binding('buffer').createBuffer(result.result),
-        remote = this._handle.remoteAddress,
-        rinfo = {};
-       
-    if (remote) {
-      rinfo.address = remote.address.hostAddress;
-      rinfo.port = remote.port;
+    var batch = result.result,
+        size  = batch.size();
+    for (var i = 0; i < size; ++i) {
+      var buf    = Helper.createBuffer(batch.getContent(i)),
+          sender = batch.getSender(i),
+          rinfo  = {};
+
+      if (sender) {
+        rinfo.address = sender.address.hostAddress;
+        rinfo.port    = sender.port;
+        rinfo.family  = ( sender.address instanceof java.net.Inet6Address ? 'IPv6' : 'IPv4' );
+        rinfo.size    = buf.length;
+      }
+      this.onmessage(buf.length, this, buf, rinfo);
     }
-    this.onmessage(buf.length, this, buf, rinfo);
   }
 }
 
@@ -72,6 +79,19 @@ UDP.prototype.send6 = function(req, buffer, offset, length, port, address) {
   }
 };
 
+// Sends every buffer to one destination, resolving it once and flushing
+// the datagrams together
+UDP.prototype.sendBatch = function(buffers, port, address) {
+  var family = address.indexOf(':') >= 0 ? Family.IPv6 : Family.IPv4,
+      dest   = this._handle.destination(address, port, family);
+  if (!(dest instanceof java.net.InetSocketAddress)) {
+    return new Error(dest.message);
+  }
+  for (var i = 0; i < buffers.length; ++i) {
+    this._handle.write(buffers[i]._nettyBuffer(), 0, buffers[i].length, dest);
+  }
+};
+
 UDP.prototype.recvStop = function() {
   this._handle.recvStop();
 };
@@ -99,6 +119,10 @@ UDP.prototype.setMulticastLoopback = function(arg) {
   this._handle.setMulticastLoopback(arg);
 };
 
+UDP.prototype.setRecvBufferSize = function(size) {
+  this._handle.setRecvBufferSize(size);
+};
+
 UDP.prototype.setBroadcast = function(arg) {
   this._handle.setBroadcast(arg);
 };
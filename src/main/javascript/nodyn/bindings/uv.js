@@ -22,6 +22,11 @@ UV.errname = function(err) {
   if ( err == UV.EAI_NODATA ) {
     return "EAI_NODATA";
   }
+  for ( var name in UV ) {
+    if ( UV[name] === err && name.indexOf( 'UV_' ) === 0 ) {
+      return name.substring( 3 );
+    }
+  }
 }
 
 UV.UV_EOF = -1;
@@ -42,8 +47,13 @@ UV.UV_EAI_BADHINTS   = -3013;
 UV.UV_EAI_PROTOCOL   = -3014;
 
 UV.UV_EAGAIN = -4088;
+UV.UV_ECANCELED = -4081;
 UV.UV_EMFILE = -4066;
 UV.UV_ENFILE = -4061;
 UV.UV_ENOENT = -4058;
+UV.UV_ENOBUFS = -4060;
+UV.UV_EPIPE = -4047;
+UV.UV_EPROTO = -4046;
+UV.UV_ETIMEDOUT = -4039;
 
 module.exports = UV;
\ No newline at end of file
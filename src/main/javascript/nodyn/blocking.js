@@ -16,8 +16,14 @@
 
 var blocking = new io.nodyn.loop.Blocking(process.EVENT_LOOP);
 
-module.exports.submit = function(task) {
-  blocking.submit( task );
+// With a category ('fs', 'dns', 'crypto' or 'zlib') the task runs on the
+// bounded worker pool; without one, on the unbounded blocking pool.
+module.exports.submit = function(task, category) {
+  if ( category ) {
+    blocking.submit( task, category );
+  } else {
+    blocking.submit( task );
+  }
 };
 
 module.exports.unblock = function(fn) {
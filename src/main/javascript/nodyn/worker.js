@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+"use strict";
+
+var util         = require('util'),
+    path         = require('path'),
+    EventEmitter = require('events').EventEmitter;
+
+var TRANSFER = '\u0000t',
+    BUFFER   = '\u0000b',
+    DATE     = '\u0000d';
+
+// ----------------------------------------
+// Structured clone
+// ----------------------------------------
+
+function serialize(value, transferList) {
+  var payload = JSON.stringify( value, function(key, v) {
+    var raw = this[key];
+    if ( Buffer.isBuffer( raw ) ) {
+      var index = transferList.indexOf( raw );
+      if ( index >= 0 ) {
+        var ref = {};
+        ref[TRANSFER] = index;
+        return ref;
+      }
+      var copy = {};
+      copy[BUFFER] = raw.toString( 'base64' );
+      return copy;
+    }
+    if ( raw instanceof Date ) {
+      var date = {};
+      date[DATE] = raw.getTime();
+      return date;
+    }
+    return v;
+  });
+
+  return new io.nodyn.worker.WorkerMessage( payload === undefined ? null : payload );
+}
+
+function deserialize(message) {
+  var createBuffer = process.binding('buffer').createBuffer;
+  var transfers = [];
+  var count = message.transferCount;
+  for ( var i = 0 ; i < count ; ++i ) {
+    transfers.push( createBuffer( message.getTransfer( i ) ) );
+  }
+
+  var payload = message.payload;
+  if ( payload === null || payload === undefined ) {
+    return undefined;
+  }
+
+  return JSON.parse( payload, function(key, v) {
+    if ( v && typeof v === 'object' ) {
+      if ( TRANSFER in v ) {
+        return transfers[ v[TRANSFER] ];
+      }
+      if ( BUFFER in v ) {
+        return new Buffer( v[BUFFER], 'base64' );
+      }
+      if ( DATE in v ) {
+        return new Date( v[DATE] );
+      }
+    }
+    return v;
+  });
+}
+
+function drain(emitter, port) {
+  var messages = port.receive();
+  for ( var i = 0 ; i < messages.length ; ++i ) {
+    emitter.emit( 'message', deserialize( messages[i] ) );
+  }
+}
+
+// Buffers are detached before the message is offered, so the receiver
+// never shares memory with the sender; if the port refuses it, they get
+// their original bytes back.
+function post(port, value, transferList) {
+  transferList = transferList || [];
+  for ( var i = 0 ; i < transferList.length ; ++i ) {
+    if ( ! Buffer.isBuffer( transferList[i] ) ) {
+      throw new TypeError( 'Only Buffers can be transferred' );
+    }
+  }
+  if ( port.isClosed() ) {
+    throw new Error( 'Message port closed' );
+  }
+
+  var message  = serialize( value, transferList ),
+      detached = [];
+  for ( i = 0 ; i < transferList.length ; ++i ) {
+    var buf = transferList[i];
+    detached.push( { buf: buf, bytes: io.nodyn.buffer.Buffer.extract( buf ), length: buf.length } );
+    message.addTransfer( io.nodyn.buffer.Buffer.transfer( buf ) );
+    buf.length = 0;
+  }
+
+  if ( ! port.postMessage( message ) ) {
+    // backwards, in case a buffer was listed twice
+    for ( i = detached.length - 1 ; i >= 0 ; --i ) {
+      io.nodyn.buffer.Buffer.inject( detached[i].buf, detached[i].bytes );
+      detached[i].buf.length = detached[i].length;
+    }
+    throw new Error( port.isClosed() ? 'Message port closed' : 'Message queue full' );
+  }
+}
+
+// ----------------------------------------
+// Parent side
+// ----------------------------------------
+
+function Worker(filename, options) {
+  if ( ! ( this instanceof Worker ) ) {
+    return new Worker( filename, options );
+  }
+  EventEmitter.call( this );
+  options = options || {};
+
+  var self = this;
+
+  this._wrap = new io.nodyn.worker.WorkerWrap( process._process, options.queueSize || 0 );
+  this._port = this._wrap.port;
+
+  this._port.on( 'messages', function() {
+    drain( self, self._port );
+  });
+
+  this._wrap.on( 'error', function(result) {
+    self.emit( 'error', result.error );
+  });
+
+  this._wrap.on( 'exit', function(result) {
+    drain( self, self._port );
+    self._port.close();
+    self.emit( 'exit', result.result );
+  });
+
+  this._wrap.start( path.resolve( filename ), options.argv || [] );
+}
+
+util.inherits( Worker, EventEmitter );
+
+Worker.prototype.postMessage = function(value, transferList) {
+  post( this._port, value, transferList );
+};
+
+Worker.prototype.terminate = function() {
+  this._wrap.terminate();
+};
+
+Worker.prototype.ref = function() {
+  this._wrap.ref();
+};
+
+Worker.prototype.unref = function() {
+  this._wrap.unref();
+};
+
+// ----------------------------------------
+// Worker side
+// ----------------------------------------
+
+function ParentPort(channel) {
+  EventEmitter.call( this );
+  var self = this;
+
+  this._port = new io.nodyn.worker.MessagePort( process._process, channel, false );
+  this._port.on( 'messages', function() {
+    drain( self, self._port );
+  });
+
+  // like node's MessagePort, listening keeps the worker alive
+  this.on( 'newListener', function(event) {
+    if ( event === 'message' ) {
+      self._port.ref();
+    }
+  });
+}
+
+util.inherits( ParentPort, EventEmitter );
+
+ParentPort.prototype.postMessage = function(value, transferList) {
+  post( this._port, value, transferList );
+};
+
+ParentPort.prototype.close = function() {
+  this._port.close();
+};
+
+ParentPort.prototype.ref = function() {
+  this._port.ref();
+};
+
+ParentPort.prototype.unref = function() {
+  this._port.unref();
+};
+
+var channel = process._process.nodyn.workerChannel;
+
+module.exports.Worker       = Worker;
+module.exports.isMainThread = ! channel;
+module.exports.parentPort   = channel ? new ParentPort( channel ) : null;
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
+
+import java.util.Random;
+
+/**
+ * Compares the throughput of the hex and base64 paths of {@link Codec}
+ * with BouncyCastle's {@link Hex} and {@link Base64} encoders, both ways,
+ * one chunk at a time as <code>Buffer.toString()</code> and
+ * <code>Buffer.write()</code> would see them.
+ *
+ * <pre>
+ * java -cp ... io.nodyn.buffer.CodecBenchmark [megabytes] [chunk]
+ * </pre>
+ *
+ * Not a unit test; nothing here runs during the build.
+ */
+public class CodecBenchmark {
+
+    private final byte[] chunk;
+    private final ByteBuf buf;
+    private final ByteBuf target;
+    private final String hex;
+    private final String base64;
+    private final int chunks;
+
+    public static void main(String... args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int chunk = args.length > 1 ? Integer.parseInt(args[1]) : 16 * 1024;
+        new CodecBenchmark(megabytes, chunk).run();
+    }
+
+    CodecBenchmark(int megabytes, int chunk) {
+        this.chunk = new byte[chunk];
+        new Random(42).nextBytes(this.chunk);
+        this.buf = Unpooled.wrappedBuffer(this.chunk);
+        this.target = Unpooled.buffer(chunk);
+        this.hex = Hex.toHexString(this.chunk);
+        this.base64 = Base64.toBase64String(this.chunk);
+        this.chunks = (int) ((megabytes * 1024L * 1024L) / chunk);
+    }
+
+    void run() {
+        System.out.println((this.chunks * (long) this.chunk.length >> 20) + "MB in " + this.chunk.length + " byte chunks");
+        for (int round = 0; round < 3; ++round) {
+            // the first round warms up both
+            boolean report = round > 0;
+            compare("hex encode", new Task() {
+                @Override
+                public int run() {
+                    return Codec.encodeHex(buf, 0, chunk.length).length();
+                }
+            }, new Task() {
+                @Override
+                public int run() {
+                    return Hex.toHexString(chunk).length();
+                }
+            }, report);
+            compare("hex decode", new Task() {
+                @Override
+                public int run() {
+                    return Codec.decodeHex(hex, target, 0, chunk.length);
+                }
+            }, new Task() {
+                @Override
+                public int run() {
+                    return Hex.decode(hex).length;
+                }
+            }, report);
+            compare("base64 encode", new Task() {
+                @Override
+                public int run() {
+                    return Codec.encodeBase64(buf, 0, chunk.length).length();
+                }
+            }, new Task() {
+                @Override
+                public int run() {
+                    return Base64.toBase64String(chunk).length();
+                }
+            }, report);
+            compare("base64 decode", new Task() {
+                @Override
+                public int run() {
+                    return Codec.decodeBase64(base64, target, 0, chunk.length);
+                }
+            }, new Task() {
+                @Override
+                public int run() {
+                    return Base64.decode(base64).length;
+                }
+            }, report);
+        }
+    }
+
+    private void compare(String name, Task codec, Task bouncyCastle, boolean report) {
+        double bcRate = rate(measure(bouncyCastle));
+        double codecRate = rate(measure(codec));
+        if (report) {
+            System.out.println(String.format("%-14s   bouncycastle %8.1f MB/s   codec %8.1f MB/s   %.2fx",
+                    name, bcRate, codecRate, codecRate / bcRate));
+        }
+    }
+
+    private long measure(Task task) {
+        long produced = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < this.chunks; ++i) {
+            produced += task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (produced < this.chunks * (long) this.chunk.length) {
+            throw new IllegalStateException("short output: " + produced);
+        }
+        return elapsed;
+    }
+
+    private double rate(long nanos) {
+        return (this.chunks * (double) this.chunk.length / (1024 * 1024)) * 1e9 / nanos;
+    }
+
+    private interface Task {
+        int run();
+    }
+
+}
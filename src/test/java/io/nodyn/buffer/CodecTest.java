@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.buffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CodecTest {
+
+    @Test
+    public void testHexRoundTrip() {
+        Random random = new Random(42);
+        for (int len = 0; len < 64; ++len) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+            String hex = Codec.encodeHex(Unpooled.wrappedBuffer(bytes), 0, len);
+            assertEquals(Hex.toHexString(bytes), hex);
+
+            ByteBuf out = Unpooled.buffer(len, len).writerIndex(len);
+            assertEquals(len, Codec.decodeHex(hex.toUpperCase(), out, 0, len));
+            assertArrayEquals(bytes, out.array());
+        }
+    }
+
+    @Test
+    public void testHexStopsAtInvalidPair() {
+        ByteBuf out = Unpooled.buffer(4, 4).writerIndex(4);
+        assertEquals(1, Codec.decodeHex("abzz12", out, 0, 4));
+        assertEquals(0xab, out.getUnsignedByte(0));
+    }
+
+    @Test
+    public void testBase64RoundTrip() {
+        Random random = new Random(42);
+        for (int len = 0; len < 64; ++len) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+            String encoded = Codec.encodeBase64(Unpooled.wrappedBuffer(bytes), 0, len);
+            assertEquals(Base64.toBase64String(bytes), encoded);
+            assertEquals(len, Codec.base64DecodedLength(encoded));
+
+            ByteBuf out = Unpooled.buffer(len, len).writerIndex(len);
+            assertEquals(len, Codec.decodeBase64(encoded, out, 0, len));
+            assertArrayEquals(bytes, out.array());
+        }
+    }
+
+    @Test
+    public void testBase64UrlSafe() {
+        byte[] bytes = new byte[]{(byte) 0xfb, (byte) 0xff, (byte) 0xbf, 0x01};
+        String encoded = Codec.encodeBase64(Unpooled.wrappedBuffer(bytes), 0, bytes.length, true);
+        assertEquals("-_-_AQ", encoded);
+        assertEquals(4, Codec.base64DecodedLength(encoded));
+
+        ByteBuf out = Unpooled.buffer(4, 4).writerIndex(4);
+        assertEquals(4, Codec.decodeBase64(encoded, out, 0, 4));
+        assertArrayEquals(bytes, out.array());
+    }
+
+    @Test
+    public void testBase64SkipsWhitespaceAndRespectsLimit() {
+        ByteBuf out = Unpooled.buffer(3, 3).writerIndex(3);
+        assertEquals(3, Codec.decodeBase64("dGFj\nb3M=", out, 0, 3));
+        assertEquals("tac", out.toString(0, 3, java.nio.charset.StandardCharsets.US_ASCII));
+        assertEquals(5, Codec.base64DecodedLength("dGFj\nb3M="));
+    }
+
+    @Test
+    public void testEncodesSubRange() {
+        ByteBuf buf = Unpooled.wrappedBuffer("xxtacosxx".getBytes());
+        assertEquals("dGFjb3M=", Codec.encodeBase64(buf, 2, 7));
+        assertEquals("7461636f73", Codec.encodeHex(buf, 2, 7));
+    }
+}
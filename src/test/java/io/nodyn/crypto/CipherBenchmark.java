@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.crypto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.bouncycastle.crypto.BufferedBlockCipher;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.CBCBlockCipher;
+import org.bouncycastle.crypto.modes.SICBlockCipher;
+import org.bouncycastle.crypto.paddings.PKCS7Padding;
+import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the JCA and BouncyCastle backends of
+ * {@link Cipher} for AES, feeding each message through in the 16k chunks a
+ * stream would write. GCM and ChaCha20 have no BouncyCastle counterpart in
+ * the bindings and are reported on their own.
+ *
+ * <pre>
+ * java -cp ... io.nodyn.crypto.CipherBenchmark [megabytes] [chunk]
+ * </pre>
+ *
+ * Not a unit test; nothing here runs during the build.
+ */
+public class CipherBenchmark {
+
+    private final byte[] key = new byte[32];
+    private final byte[] iv = new byte[16];
+    private final byte[] chunk;
+    private final int chunks;
+
+    public static void main(String... args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int chunk = args.length > 1 ? Integer.parseInt(args[1]) : 16 * 1024;
+        new CipherBenchmark(megabytes, chunk).run();
+    }
+
+    CipherBenchmark(int megabytes, int chunk) {
+        Random random = new Random(42);
+        random.nextBytes(this.key);
+        random.nextBytes(this.iv);
+        this.chunk = new byte[chunk];
+        random.nextBytes(this.chunk);
+        this.chunks = (int) ((megabytes * 1024L * 1024L) / chunk);
+    }
+
+    void run() throws Exception {
+        System.out.println((this.chunks * (long) this.chunk.length >> 20) + "MB in " + this.chunk.length + " byte chunks");
+        for (int round = 0; round < 3; ++round) {
+            // the first round warms up both and lets the intrinsics kick in
+            boolean report = round > 0;
+            compare("aes-256-cbc", "AES/CBC/PKCS5Padding", new Factory() {
+                @Override
+                public BufferedBlockCipher create() {
+                    return new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()), new PKCS7Padding());
+                }
+            }, report);
+            compare("aes-256-ctr", "AES/CTR/NoPadding", new Factory() {
+                @Override
+                public BufferedBlockCipher create() {
+                    return new BufferedBlockCipher(new SICBlockCipher(new AESEngine()));
+                }
+            }, report);
+            compare("aes-256-gcm", "AES/GCM/NoPadding", null, report);
+            compare("chacha20", "ChaCha20", null, report);
+        }
+    }
+
+    private void compare(String name, String transformation, Factory factory, boolean report) throws Exception {
+        byte[] iv = transformation.contains("/GCM/") ? Arrays.copyOf(this.iv, 12) : this.iv;
+        Cipher jca = Cipher.create(true, transformation, Unpooled.wrappedBuffer(this.key), Unpooled.wrappedBuffer(iv));
+        if (jca == null && factory == null) {
+            return;
+        }
+        String line = String.format("%-12s", name);
+        double bcRate = 0;
+        if (factory != null) {
+            Cipher bc = new Cipher(true, factory.create(), Unpooled.wrappedBuffer(this.key), Unpooled.wrappedBuffer(iv));
+            bcRate = rate(measure(bc));
+            line += String.format("   bouncycastle %8.1f MB/s", bcRate);
+        }
+        if (jca != null) {
+            double jcaRate = rate(measure(jca));
+            line += String.format("   jca %8.1f MB/s", jcaRate);
+            if (factory != null) {
+                line += String.format("   %.2fx", jcaRate / bcRate);
+            }
+        } else {
+            line += "   jca unavailable";
+        }
+        if (report) {
+            System.out.println(line);
+        }
+    }
+
+    private long measure(Cipher cipher) throws Exception {
+        ByteBuf in = Unpooled.wrappedBuffer(this.chunk);
+        long start = System.nanoTime();
+        for (int i = 0; i < this.chunks; ++i) {
+            cipher.update(in.readerIndex(0));
+        }
+        ByteBuf out = cipher.doFinal();
+        long elapsed = System.nanoTime() - start;
+        if (out.readableBytes() < this.chunks * (long) this.chunk.length) {
+            throw new IllegalStateException("short output: " + out.readableBytes());
+        }
+        out.release();
+        return elapsed;
+    }
+
+    private double rate(long nanos) {
+        return (this.chunks * (double) this.chunk.length / (1024 * 1024)) * 1e9 / nanos;
+    }
+
+    private interface Factory {
+        BufferedBlockCipher create();
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.crypto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.bouncycastle.crypto.BufferedBlockCipher;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.CBCBlockCipher;
+import org.bouncycastle.crypto.modes.SICBlockCipher;
+import org.bouncycastle.crypto.paddings.PKCS7Padding;
+import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class CipherTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testCbcMatchesBouncyCastle() throws Exception {
+        byte[] key = bytes(32);
+        byte[] iv = bytes(16);
+        byte[] plain = bytes(1000);
+
+        Cipher jca = Cipher.create(true, "AES/CBC/PKCS5Padding", buf(key), buf(iv));
+        assumeNotNull(jca);
+        Cipher bc = new Cipher(true, new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESEngine()), new PKCS7Padding()), buf(key), buf(iv));
+
+        byte[] encrypted = run(jca, plain, 100);
+        assertArrayEquals(run(bc, plain, 1000), encrypted);
+        assertEquals(1008, encrypted.length);
+
+        Cipher decipher = Cipher.create(false, "AES/CBC/PKCS5Padding", buf(key), buf(iv));
+        assertArrayEquals(plain, run(decipher, encrypted, 7));
+    }
+
+    @Test
+    public void testCtrMatchesBouncyCastle() throws Exception {
+        byte[] key = bytes(16);
+        byte[] iv = bytes(16);
+        // the counter's low bytes roll over within the message
+        Arrays.fill(iv, 12, 16, (byte) 0xff);
+        byte[] plain = bytes(333);
+
+        Cipher jca = Cipher.create(true, "AES/CTR/NoPadding", buf(key), buf(iv));
+        assumeNotNull(jca);
+        Cipher bc = new Cipher(true, new BufferedBlockCipher(new SICBlockCipher(new AESEngine())), buf(key), buf(iv));
+
+        byte[] encrypted = run(jca, plain, 50);
+        assertArrayEquals(run(bc, plain, 333), encrypted);
+        assertEquals(plain.length, encrypted.length);
+    }
+
+    @Test
+    public void testCreateLeavesBuffersUnread() {
+        ByteBuf key = buf(bytes(16));
+        ByteBuf iv = buf(bytes(16));
+        Cipher cipher = Cipher.create(true, "AES/CBC/PKCS5Padding", key, iv);
+        assumeNotNull(cipher);
+        assertTrue(cipher.isJca());
+        assertEquals(16, key.readableBytes());
+        assertEquals(16, iv.readableBytes());
+    }
+
+    @Test
+    public void testUnsupportedFallsBack() {
+        assertFalse(Cipher.isSupported("Tacos/CBC/PKCS5Padding"));
+        assertNull(Cipher.create(true, "Tacos/CBC/PKCS5Padding", buf(bytes(16)), buf(bytes(16))));
+        // wrong key length, as BouncyCastle would reject too
+        assertNull(Cipher.create(true, "AES/CBC/PKCS5Padding", buf(bytes(7)), buf(bytes(16))));
+    }
+
+    @Test
+    public void testGcm() throws Exception {
+        byte[] key = bytes(32);
+        byte[] iv = bytes(12);
+        byte[] aad = "header".getBytes();
+        byte[] plain = bytes(100);
+
+        Cipher cipher = Cipher.create(true, "AES/GCM/NoPadding", buf(key), buf(iv));
+        assumeNotNull(cipher);
+        cipher.setAAD(buf(aad));
+        byte[] encrypted = run(cipher, plain, 30);
+        assertEquals(plain.length, encrypted.length);
+        byte[] tag = array(cipher.getAuthTag());
+        assertEquals(16, tag.length);
+
+        Cipher decipher = Cipher.create(false, "AES/GCM/NoPadding", buf(key), buf(iv));
+        decipher.setAAD(buf(aad));
+        decipher.setAuthTag(buf(tag));
+        assertArrayEquals(plain, run(decipher, encrypted, 30));
+
+        tag[0] ^= 1;
+        decipher = Cipher.create(false, "AES/GCM/NoPadding", buf(key), buf(iv));
+        decipher.setAAD(buf(aad));
+        decipher.setAuthTag(buf(tag));
+        try {
+            run(decipher, encrypted, 30);
+            fail("tampered tag was accepted");
+        } catch (GeneralSecurityException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testChaCha20() throws Exception {
+        byte[] key = bytes(32);
+        byte[] iv = bytes(16);
+        byte[] plain = bytes(200);
+
+        Cipher cipher = Cipher.create(true, "ChaCha20", buf(key), buf(iv));
+        assumeNotNull(cipher);
+        byte[] encrypted = run(cipher, plain, 64);
+        assertEquals(plain.length, encrypted.length);
+        assertFalse(Arrays.equals(plain, encrypted));
+
+        Cipher decipher = Cipher.create(false, "ChaCha20", buf(key), buf(iv));
+        assertArrayEquals(plain, run(decipher, encrypted, 200));
+    }
+
+    private byte[] run(Cipher cipher, byte[] input, int chunk) throws Exception {
+        for (int i = 0; i < input.length; i += chunk) {
+            cipher.update(Unpooled.wrappedBuffer(input, i, Math.min(chunk, input.length - i)));
+        }
+        return array(cipher.doFinal());
+    }
+
+    private byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        this.random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static ByteBuf buf(byte[] bytes) {
+        return Unpooled.copiedBuffer(bytes);
+    }
+
+    private static byte[] array(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.dns;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Inet4Address;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DnsCacheTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private Vertx vertx;
+    private TestDnsServer server;
+
+    @Before
+    public void setUp() {
+        System.setProperty("dns.server", "127.0.0.1");
+        System.setProperty("dns.port", "" + TestDnsServer.PORT);
+        ResolverConfig.refresh();
+        this.vertx = VertxFactory.newVertx();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.server != null) {
+            this.server.stop();
+        }
+        this.vertx.stop();
+        System.clearProperty("dns.server");
+        System.clearProperty("dns.port");
+        ResolverConfig.refresh();
+    }
+
+    @Test
+    public void testSecondQueryIsServedFromCache() throws Exception {
+        this.server = TestDnsServer.testResolveA("10.0.0.1");
+        this.server.start();
+
+        DnsCache cache = new DnsCache(true, 30 * SECOND, 5 * SECOND, 16);
+        Results results = new Results();
+
+        cache.resolve(this.vertx, DnsCache.Type.A, "nodyn.io", results);
+        assertEquals("10.0.0.1", firstAddress(results.take()));
+
+        cache.resolve(this.vertx, DnsCache.Type.A, "NODYN.io", results);
+        assertEquals("10.0.0.1", firstAddress(results.take()));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+
+        cache.invalidate();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentQueriesAreCoalesced() throws Exception {
+        this.server = TestDnsServer.testResolveA("10.0.0.2");
+        this.server.start();
+
+        DnsCache cache = new DnsCache(true, 30 * SECOND, 5 * SECOND, 16);
+        Results results = new Results();
+
+        for (int i = 0; i < 5; ++i) {
+            cache.resolve(this.vertx, DnsCache.Type.A, "nodyn.io", results);
+        }
+        for (int i = 0; i < 5; ++i) {
+            assertEquals("10.0.0.2", firstAddress(results.take()));
+        }
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(4, cache.getCoalesced());
+    }
+
+    @Test
+    public void testNameErrorsAreCachedNegatively() throws Exception {
+        this.server = TestDnsServer.testLookupNonExisting();
+        this.server.start();
+
+        DnsCache cache = new DnsCache(true, 30 * SECOND, 5 * SECOND, 16);
+        Results results = new Results();
+
+        cache.resolve(this.vertx, DnsCache.Type.A, "nowhere.nodyn.io", results);
+        assertTrue(results.take().failed());
+
+        cache.resolve(this.vertx, DnsCache.Type.A, "nowhere.nodyn.io", results);
+        assertTrue(results.take().failed());
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getNegativeHits());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        this.server = TestDnsServer.testResolveA("10.0.0.3");
+        this.server.start();
+
+        DnsCache cache = new DnsCache(true, 30 * SECOND, 5 * SECOND, 2);
+        Results results = new Results();
+
+        for (String name : new String[]{"a.nodyn.io", "b.nodyn.io", "c.nodyn.io"}) {
+            cache.resolve(this.vertx, DnsCache.Type.A, name, results);
+            results.take();
+        }
+        assertEquals(2, cache.size());
+
+        cache.resolve(this.vertx, DnsCache.Type.A, "a.nodyn.io", results);
+        results.take();
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testSynchronousFailureReleasesWaiters() throws Exception {
+        this.server = TestDnsServer.testResolveA("10.0.0.4");
+        this.server.start();
+
+        DnsCache cache = new DnsCache(true, 30 * SECOND, 5 * SECOND, 16);
+        Results results = new Results();
+
+        Vertx broken = (Vertx) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Vertx.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        throw new IllegalArgumentException(method.getName());
+                    }
+                });
+        cache.resolve(broken, DnsCache.Type.A, "nodyn.io", results);
+        AsyncResult<Object> failed = results.take();
+        assertTrue(failed.failed());
+        assertTrue(failed.cause() instanceof IllegalArgumentException);
+
+        cache.resolve(this.vertx, DnsCache.Type.A, "nodyn.io", results);
+        assertEquals("10.0.0.4", firstAddress(results.take()));
+        assertEquals(0, cache.getCoalesced());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String firstAddress(AsyncResult<Object> result) {
+        assertTrue(result.succeeded());
+        return ((List<Inet4Address>) result.result()).get(0).getHostAddress();
+    }
+
+    private static class Results implements Handler<AsyncResult<Object>> {
+        private final BlockingQueue<AsyncResult<Object>> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void handle(AsyncResult<Object> event) {
+            this.queue.add(event);
+        }
+
+        AsyncResult<Object> take() throws InterruptedException {
+            AsyncResult<Object> result = this.queue.poll(5, TimeUnit.SECONDS);
+            assertNotNull("timed out waiting for DNS answer", result);
+            return result;
+        }
+    }
+}
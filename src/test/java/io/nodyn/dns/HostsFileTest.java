@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.dns;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.net.InetAddress;
+
+import static org.junit.Assert.*;
+
+public class HostsFileTest {
+
+    private static final String HOSTS =
+            "# comment line\n" +
+            "127.0.0.1   localhost loopback\n" +
+            "::1         localhost ip6-localhost   # trailing comment\n" +
+            "\n" +
+            "10.1.2.3\tdb.Example.com db\n" +
+            "not-an-ip   bogus\n";
+
+    @Test
+    public void testParsesNamesAndAliases() throws Exception {
+        HostsFile hosts = HostsFile.parse(new StringReader(HOSTS));
+
+        assertEquals("10.1.2.3", hosts.lookup("db.example.com").getHostAddress());
+        assertEquals("10.1.2.3", hosts.lookup("DB").getHostAddress());
+        assertEquals("127.0.0.1", hosts.lookup("loopback").getHostAddress());
+        assertNull(hosts.lookup("bogus"));
+        assertNull(hosts.lookup("nodyn.io"));
+    }
+
+    @Test
+    public void testFamilies() throws Exception {
+        HostsFile hosts = HostsFile.parse(new StringReader(HOSTS));
+
+        InetAddress[] all = hosts.lookupAll("localhost");
+        assertEquals(2, all.length);
+        assertEquals("127.0.0.1", hosts.lookup("localhost").getHostAddress());
+        assertEquals("127.0.0.1", hosts.lookup4("localhost").getHostAddress());
+        assertTrue(hosts.lookup6("localhost").isLoopbackAddress());
+        assertEquals("localhost", hosts.lookup6("localhost").getHostName());
+        assertNull(hosts.lookup6("db"));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        HostsFile hosts = HostsFile.parse(new StringReader("# nothing\n"));
+        assertSame(HostsFile.EMPTY, hosts);
+        assertEquals(0, hosts.size());
+    }
+}
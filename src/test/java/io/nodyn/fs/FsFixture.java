@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.nodyn.loop.EventLoop;
+import io.nodyn.loop.RefHandle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A scratch directory for one test, and an event loop if it needs one.
+ * Create it in <code>@Before</code> and close it in <code>@After</code>,
+ * which removes everything the test left behind.
+ */
+final class FsFixture {
+
+    private final File root;
+    private EventLoop loop;
+    private RefHandle keepAlive;
+
+    FsFixture(String prefix) throws IOException {
+        this.root = Files.createTempDirectory(prefix).toFile().getCanonicalFile();
+    }
+
+    File getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return an event loop kept alive until {@link #close()}
+     */
+    EventLoop getLoop() {
+        if (this.loop == null) {
+            this.loop = new EventLoop(new NioEventLoopGroup(1));
+            this.keepAlive = this.loop.newHandle("test");
+        }
+        return this.loop;
+    }
+
+    void close() {
+        if (this.keepAlive != null) {
+            this.keepAlive.unref();
+        }
+        delete(this.root);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null && !Files.isSymbolicLink(file.toPath())) {
+            for (File each : children) {
+                delete(each);
+            }
+        }
+        file.delete();
+    }
+}
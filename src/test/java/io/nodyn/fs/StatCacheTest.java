@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class StatCacheTest {
+
+    private final POSIX posix = POSIXFactory.getPOSIX();
+
+    private FsFixture fixture;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new FsFixture("stat-cache");
+        this.root = this.fixture.getRoot();
+    }
+
+    @After
+    public void tearDown() {
+        this.fixture.close();
+    }
+
+    @Test
+    public void testKindsAreCached() throws IOException {
+        StatCache cache = new StatCache(true, 16);
+        File file = new File(this.root, "index.js");
+        assertTrue(file.createNewFile());
+
+        assertEquals(StatCache.DIRECTORY, cache.kind(this.posix, this.root.getPath()));
+        assertEquals(StatCache.FILE, cache.kind(this.posix, file.getPath()));
+        assertEquals(StatCache.MISSING, cache.kind(this.posix, new File(this.root, "index.json").getPath()));
+        assertEquals(3, cache.getMisses());
+
+        // answered from the cache even though the file is gone
+        assertTrue(file.delete());
+        assertEquals(StatCache.FILE, cache.kind(this.posix, file.getPath()));
+        assertEquals(1, cache.getHits());
+
+        cache.invalidate(file.getPath());
+        assertEquals(StatCache.MISSING, cache.kind(this.posix, file.getPath()));
+    }
+
+    @Test
+    public void testMissingIsNotCached() throws IOException {
+        StatCache cache = new StatCache(true, 16);
+        File file = new File(this.root, "late.js");
+
+        assertEquals(StatCache.MISSING, cache.kind(this.posix, file.getPath()));
+        assertEquals(0, cache.size());
+
+        // created behind the cache's back, as by a child process
+        assertTrue(file.createNewFile());
+        assertEquals(StatCache.FILE, cache.kind(this.posix, file.getPath()));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testRealpathResolvesLinks() throws IOException {
+        StatCache cache = new StatCache(true, 16);
+        File target = new File(this.root, "target");
+        assertTrue(target.mkdir());
+        File link = new File(this.root, "link");
+        assertEquals(0, this.posix.symlink(target.getPath(), link.getPath()));
+        File file = new File(target, "index.js");
+        assertTrue(file.createNewFile());
+
+        String viaLink = new File(link, "index.js").getPath();
+        assertEquals(file.getPath(), cache.realpath(viaLink));
+        assertEquals(file.getPath(), cache.realpath(viaLink));
+        assertEquals(1, cache.getHits());
+        assertNull(cache.realpath(new File(this.root, "missing").getPath()));
+    }
+
+    @Test
+    public void testInvalidateTree() throws IOException {
+        StatCache cache = new StatCache(true, 16);
+        File dir = new File(this.root, "lib");
+        assertTrue(dir.mkdir());
+        File file = new File(dir, "a.js");
+        assertTrue(file.createNewFile());
+        File sibling = new File(this.root, "library.js");
+        assertTrue(sibling.createNewFile());
+
+        cache.kind(this.posix, dir.getPath());
+        cache.kind(this.posix, file.getPath());
+        cache.kind(this.posix, sibling.getPath());
+        cache.realpath(file.getPath());
+        assertEquals(4, cache.size());
+
+        cache.invalidateTree(dir.getPath());
+        assertEquals(1, cache.size());
+        assertEquals(StatCache.FILE, cache.kind(this.posix, sibling.getPath()));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testInvalidateTreeAfterEviction() throws IOException {
+        StatCache cache = new StatCache(true, 2);
+        File dir = new File(this.root, "lib");
+        assertTrue(dir.mkdir());
+        for (String name : new String[]{"a.js", "b.js", "c.js"}) {
+            File file = new File(dir, name);
+            assertTrue(file.createNewFile());
+            cache.kind(this.posix, file.getPath());
+        }
+        assertEquals(2, cache.size());
+
+        cache.invalidateTree(dir.getPath());
+        assertEquals(0, cache.size());
+        cache.kind(this.posix, new File(dir, "a.js").getPath());
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testBounded() throws IOException {
+        StatCache cache = new StatCache(true, 4);
+        for (int i = 0; i < 10; ++i) {
+            File file = new File(this.root, "module-" + i);
+            assertTrue(file.createNewFile());
+            cache.kind(this.posix, file.getPath());
+        }
+        assertEquals(4, cache.size());
+        cache.invalidate();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        StatCache cache = new StatCache(false, 16);
+        cache.kind(this.posix, this.root.getPath());
+        cache.kind(this.posix, this.root.getPath());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+}
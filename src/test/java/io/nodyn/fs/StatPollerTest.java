@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StatPollerTest {
+
+    private static final int SIZE = 8;
+
+    private FsFixture fixture;
+    private StatPoller poller;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new FsFixture("stat-poller");
+        this.root = this.fixture.getRoot();
+        POSIX posix = POSIXFactory.getPOSIX();
+        // jnr-posix binds stat lazily; keep that out of the baseline
+        Fs.stat(posix, this.root.getPath());
+        this.poller = new StatPoller(this.fixture.getLoop(), posix);
+    }
+
+    @After
+    public void tearDown() {
+        this.fixture.close();
+    }
+
+    @Test
+    public void testOnlyRealChangesAreReported() throws Exception {
+        File file = new File(this.root, "access.log");
+        Files.write(file.toPath(), "GET /\n".getBytes());
+        Changes changes = new Changes();
+        StatPoller.Watch watch = this.poller.watch(file.getPath(), 20, changes);
+
+        assertNull(changes.queue.poll(200, TimeUnit.MILLISECONDS));
+        Files.write(file.toPath(), "GET /favicon.ico\n".getBytes(), StandardOpenOption.APPEND);
+
+        Change change = changes.next();
+        assertEquals(0, change.status);
+        assertEquals(6, change.previous[SIZE], 0);
+        assertEquals(23, change.current[SIZE], 0);
+        assertNull(changes.queue.poll(200, TimeUnit.MILLISECONDS));
+        watch.close();
+    }
+
+    @Test
+    public void testMissingFileIsReportedOnceThenItsCreation() throws Exception {
+        File file = new File(this.root, "later.log");
+        Changes changes = new Changes();
+        StatPoller.Watch watch = this.poller.watch(file.getPath(), 20, changes);
+
+        Change change = changes.next();
+        assertEquals(StatPoller.FAILED, change.status);
+        assertEquals(0, change.current[SIZE], 0);
+        assertNull(changes.queue.poll(200, TimeUnit.MILLISECONDS));
+
+        // renamed into place, so no poll sees it empty
+        File staged = new File(this.root, "staged");
+        Files.write(staged.toPath(), "hello".getBytes());
+        Files.move(staged.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        change = changes.next();
+        assertEquals(0, change.status);
+        assertEquals(5, change.current[SIZE], 0);
+        watch.close();
+    }
+
+    @Test
+    public void testPathsWithTheSameIntervalShareATick() throws Exception {
+        Changes changes = new Changes();
+        StatPoller.Watch a = this.poller.watch(new File(this.root, "a").getPath(), 30, changes);
+        StatPoller.Watch b = this.poller.watch(new File(this.root, "b").getPath(), 30, changes);
+        StatPoller.Watch c = this.poller.watch(new File(this.root, "c").getPath(), 40, changes);
+        assertEquals(2, this.poller.getGroups());
+
+        a.close();
+        b.close();
+        c.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.poller.getGroups() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.poller.getGroups());
+    }
+
+    private static class Change {
+        final double[] current;
+        final double[] previous;
+        final int status;
+
+        Change(double[] current, double[] previous, int status) {
+            this.current = current;
+            this.previous = previous;
+            this.status = status;
+        }
+    }
+
+    private static class Changes implements StatPoller.Listener {
+        final BlockingQueue<Change> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onChange(double[] current, double[] previous, int status) {
+            this.queue.add(new Change(current, previous, status));
+        }
+
+        Change next() throws InterruptedException {
+            Change change = this.queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull("timed out", change);
+            return change;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.nodyn.Callback;
+import io.nodyn.CallbackResult;
+import io.nodyn.loop.EventLoop;
+import io.nodyn.loop.RefHandle;
+import io.nodyn.loop.WorkerPool;
+import jnr.constants.platform.OpenFlags;
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the io_uring engine with the worker pool the fs bindings use
+ * otherwise, for the log-ingestion pattern of many concurrent small reads,
+ * appends and stats. Each backend keeps a fixed number of operations in
+ * flight and completes them on the event loop, as the bindings do.
+ *
+ * <pre>
+ * java -cp ... io.nodyn.fs.UringBenchmark [operations] [concurrency]
+ * </pre>
+ *
+ * Not a unit test; nothing here runs during the build.
+ */
+public class UringBenchmark {
+
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+    private static final int READ_SIZE = 4096;
+    private static final int APPEND_SIZE = 128;
+
+    private final POSIX posix = POSIXFactory.getPOSIX();
+    private final EventLoop loop;
+    private final Uring uring;
+    private final int operations;
+    private final int concurrency;
+    private final String path;
+    private final int readFd;
+    private final int appendFd;
+
+    public static void main(String... args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        EventLoop loop = new EventLoop(new NioEventLoopGroup(1));
+        RefHandle keepAlive = loop.newHandle("benchmark");
+        Uring uring = Uring.open(loop, 256);
+        if (uring == null) {
+            System.err.println("io_uring is not available here");
+            System.exit(1);
+        }
+        File dir = Files.createTempDirectory("uring-benchmark").toFile();
+        try {
+            new UringBenchmark(loop, uring, dir, operations, concurrency).run();
+        } finally {
+            uring.close();
+            for (File each : dir.listFiles()) {
+                each.delete();
+            }
+            dir.delete();
+            keepAlive.unref();
+        }
+    }
+
+    UringBenchmark(EventLoop loop, Uring uring, File dir, int operations, int concurrency) throws Exception {
+        this.loop = loop;
+        this.uring = uring;
+        this.operations = operations;
+        this.concurrency = concurrency;
+
+        File data = new File(dir, "data");
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(42).nextBytes(bytes);
+        Files.write(data.toPath(), bytes);
+        this.path = data.getPath();
+        this.readFd = this.posix.open(this.path, OpenFlags.O_RDONLY.intValue(), 0);
+        this.appendFd = this.posix.open(new File(dir, "log").getPath(),
+                OpenFlags.O_WRONLY.intValue() | OpenFlags.O_CREAT.intValue() | OpenFlags.O_APPEND.intValue(), 0644);
+    }
+
+    void run() throws Exception {
+        System.out.println(this.operations + " operations, " + this.concurrency + " in flight, "
+                + this.loop.getWorkerPool().getSize() + " pool threads");
+        for (int round = 0; round < 3; ++round) {
+            // the first round warms both up
+            boolean report = round > 0;
+            compare("pread 4k", new Operation() {
+                @Override
+                public void pool(int i, final Runnable done) {
+                    final ByteBuf buf = Unpooled.buffer(READ_SIZE);
+                    final int position = offset(i);
+                    UringBenchmark.this.loop.submitWork(WorkerPool.Category.FS, new Runnable() {
+                        @Override
+                        public void run() {
+                            Fs.pread(UringBenchmark.this.posix, UringBenchmark.this.readFd, buf, 0, READ_SIZE, position);
+                            UringBenchmark.this.loop.submitUserTask(done, "benchmark");
+                        }
+                    });
+                }
+
+                @Override
+                public void uring(int i, Callback done) {
+                    UringBenchmark.this.uring.read(UringBenchmark.this.readFd, Unpooled.buffer(READ_SIZE), 0, READ_SIZE, offset(i), done);
+                }
+            }, report);
+
+            final ByteBuf line = Unpooled.buffer(APPEND_SIZE).writerIndex(APPEND_SIZE);
+            compare("append 128b", new Operation() {
+                @Override
+                public void pool(int i, final Runnable done) {
+                    UringBenchmark.this.loop.submitWork(WorkerPool.Category.FS, new Runnable() {
+                        @Override
+                        public void run() {
+                            byte[] bytes = new byte[APPEND_SIZE];
+                            line.getBytes(0, bytes);
+                            UringBenchmark.this.posix.write(UringBenchmark.this.appendFd, bytes, APPEND_SIZE);
+                            UringBenchmark.this.loop.submitUserTask(done, "benchmark");
+                        }
+                    });
+                }
+
+                @Override
+                public void uring(int i, Callback done) {
+                    UringBenchmark.this.uring.write(UringBenchmark.this.appendFd, line, 0, APPEND_SIZE, -1, done);
+                }
+            }, report);
+
+            compare("stat", new Operation() {
+                @Override
+                public void pool(int i, final Runnable done) {
+                    UringBenchmark.this.loop.submitWork(WorkerPool.Category.FS, new Runnable() {
+                        @Override
+                        public void run() {
+                            Fs.stat(UringBenchmark.this.posix, UringBenchmark.this.path);
+                            UringBenchmark.this.loop.submitUserTask(done, "benchmark");
+                        }
+                    });
+                }
+
+                @Override
+                public void uring(int i, Callback done) {
+                    UringBenchmark.this.uring.stat(UringBenchmark.this.path, done);
+                }
+            }, report);
+        }
+    }
+
+    private int offset(int i) {
+        return (int) (((i * 2654435761L) & 0x7fffffffL) % (FILE_SIZE / READ_SIZE)) * READ_SIZE;
+    }
+
+    private void compare(String name, Operation operation, boolean report) throws InterruptedException {
+        long pool = measure(operation, false);
+        long uring = measure(operation, true);
+        if (report) {
+            System.out.printf("%-12s pool %9.0f ops/s   uring %9.0f ops/s   %.2fx%n", name,
+                    rate(pool), rate(uring), (double) pool / uring);
+        }
+    }
+
+    private double rate(long nanos) {
+        return this.operations * 1e9 / nanos;
+    }
+
+    // Keeps the given number of operations in flight, issuing the next one
+    // from the completion of the last, as a server's callbacks would.
+    private long measure(final Operation operation, final boolean uring) throws InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicInteger issued = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+
+        final Runnable next = new Runnable() {
+            @Override
+            public void run() {
+                final Runnable self = this;
+                if (completed.incrementAndGet() == UringBenchmark.this.operations) {
+                    finished.countDown();
+                }
+                final int i = issued.getAndIncrement();
+                if (i >= UringBenchmark.this.operations) {
+                    return;
+                }
+                if (uring) {
+                    operation.uring(i, new Callback() {
+                        @Override
+                        public Object call(CallbackResult result) {
+                            self.run();
+                            return null;
+                        }
+                    });
+                } else {
+                    operation.pool(i, self);
+                }
+            }
+        };
+
+        long start = System.nanoTime();
+        // the starters run the same code, and count back up to zero
+        completed.set(-this.concurrency);
+        for (int i = 0; i < this.concurrency; ++i) {
+            this.loop.submitUserTask(next, "benchmark");
+        }
+        finished.await();
+        return System.nanoTime() - start;
+    }
+
+    private interface Operation {
+        void pool(int i, Runnable done);
+
+        void uring(int i, Callback done);
+    }
+}
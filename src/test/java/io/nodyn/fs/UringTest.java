@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.nodyn.Callback;
+import io.nodyn.CallbackResult;
+import jnr.constants.platform.Errno;
+import jnr.constants.platform.OpenFlags;
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+public class UringTest {
+
+    private static final int RDWR_CREAT = OpenFlags.O_RDWR.intValue() | OpenFlags.O_CREAT.intValue();
+
+    private final POSIX posix = POSIXFactory.getPOSIX();
+
+    private FsFixture fixture;
+    private Uring uring;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new FsFixture("uring");
+        this.root = this.fixture.getRoot();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.uring != null) {
+            this.uring.close();
+        }
+        this.fixture.close();
+    }
+
+    private Uring open(int entries) {
+        this.uring = Uring.open(this.fixture.getLoop(), entries);
+        // io_uring is missing or forbidden here
+        assumeNotNull(this.uring);
+        return this.uring;
+    }
+
+    @Test
+    public void testWriteReadAndStat() throws Exception {
+        Uring uring = open(8);
+        String path = new File(this.root, "log.txt").getPath();
+        Results results = new Results();
+
+        uring.open(path, RDWR_CREAT, 0644, results);
+        int fd = results.res();
+        assertTrue(fd >= 0);
+
+        ByteBuf data = Unpooled.copiedBuffer("hello uring", StandardCharsets.UTF_8);
+        uring.write(fd, data, 0, data.readableBytes(), -1, results);
+        assertEquals(11, results.res());
+        uring.fsync(fd, true, results);
+        assertEquals(0, results.res());
+
+        ByteBuf buf = Unpooled.buffer(16);
+        uring.read(fd, buf, 2, 5, 6, results);
+        assertEquals(5, results.res());
+        assertEquals("uring", buf.toString(2, 5, StandardCharsets.UTF_8));
+        assertEquals(7, buf.writerIndex());
+
+        double[] expected = Fs.stat(this.posix, path);
+        uring.stat(path, results);
+        assertEquals(0, results.res());
+        // all but the birthtime, which statx knows and jnr-posix does not
+        assertArrayEquals(Arrays.copyOf(expected, 13), Arrays.copyOf(results.stat(), 13), 0);
+
+        uring.fstat(fd, results);
+        assertEquals(0, results.res());
+        assertEquals(11, results.stat()[8], 0);
+        assertEquals(expected[7], results.stat()[7], 0);
+
+        this.posix.close(fd);
+    }
+
+    @Test
+    public void testFailuresAreNegativeErrno() throws Exception {
+        Uring uring = open(8);
+        String missing = new File(this.root, "missing").getPath();
+        Results results = new Results();
+
+        uring.open(missing, OpenFlags.O_RDONLY.intValue(), 0, results);
+        assertEquals(-Errno.ENOENT.intValue(), results.res());
+        uring.lstat(missing, results);
+        assertEquals(-Errno.ENOENT.intValue(), results.res());
+        assertNull(((Object[]) results.last.getResult())[1]);
+        uring.fsync(-1, false, results);
+        assertEquals(-Errno.EBADF.intValue(), results.res());
+    }
+
+    @Test
+    public void testMoreOperationsThanTheRingHolds() throws Exception {
+        Uring uring = open(4);
+        File file = new File(this.root, "data");
+        byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) i;
+        }
+        Files.write(file.toPath(), bytes);
+        int fd = this.posix.open(file.getPath(), OpenFlags.O_RDONLY.intValue(), 0);
+
+        Results results = new Results();
+        ByteBuf[] bufs = new ByteBuf[200];
+        for (int i = 0; i < bufs.length; ++i) {
+            bufs[i] = Unpooled.buffer(16);
+            uring.read(fd, bufs[i], 0, 16, i * 16, results);
+        }
+        for (int i = 0; i < bufs.length; ++i) {
+            assertEquals(16, results.res());
+        }
+        for (int i = 0; i < bufs.length; ++i) {
+            assertEquals((byte) (i * 16 + 3), bufs[i].getByte(3));
+        }
+        assertEquals(0, uring.getInflight());
+        assertEquals(0, uring.getBacklog());
+
+        this.posix.close(fd);
+    }
+
+    @Test
+    public void testClosedRingCancels() throws Exception {
+        Uring uring = open(8);
+        uring.close();
+        Results results = new Results();
+        uring.stat(this.root.getPath(), results);
+        assertEquals(-125, results.res());
+    }
+
+    private static class Results implements Callback {
+        private final BlockingQueue<CallbackResult> queue = new LinkedBlockingQueue<>();
+        private CallbackResult last;
+
+        @Override
+        public Object call(CallbackResult result) {
+            this.queue.add(result);
+            return null;
+        }
+
+        int res() throws InterruptedException {
+            this.last = this.queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull("timed out", this.last);
+            return (Integer) ((Object[]) this.last.getResult())[0];
+        }
+
+        double[] stat() {
+            return (double[]) ((Object[]) this.last.getResult())[1];
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import io.nodyn.CallbackResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WalkWrapTest {
+
+    private static final int FILES = 10;
+
+    private FsFixture fixture;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new FsFixture("walk");
+        this.root = this.fixture.getRoot();
+        File dir = new File(this.root, "lib");
+        assertTrue(dir.mkdir());
+        for (int i = 0; i < FILES - 1; ++i) {
+            assertTrue(new File(dir, "module-" + i + ".js").createNewFile());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.fixture.close();
+    }
+
+    @Test
+    public void testWaitsForAcknowledgements() throws Exception {
+        RecordingWalk walk = new RecordingWalk();
+        walk.setBatchSize(1);
+        walk.setMaxPendingBatches(2);
+        Thread thread = walk.startIn(this.root);
+
+        walk.take("entries");
+        walk.take("entries");
+        // both permits are out until acknowledged
+        assertNull(walk.events.poll(200, TimeUnit.MILLISECONDS));
+
+        walk.ack();
+        Object[] batch = (Object[]) walk.take("entries").getResult();
+        assertTrue(((String[]) batch[0])[0].startsWith("lib"));
+
+        int batches = 3;
+        for (;;) {
+            walk.ack();
+            Event event = walk.next();
+            if (event.name.equals("end")) {
+                assertEquals((long) FILES, ((Object[]) event.result.getResult())[0]);
+                break;
+            }
+            ++batches;
+        }
+        assertEquals(FILES, batches);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void testAbortReleasesTheWalk() throws Exception {
+        RecordingWalk walk = new RecordingWalk();
+        walk.setBatchSize(1);
+        walk.setMaxPendingBatches(1);
+        Thread thread = walk.startIn(this.root);
+
+        walk.take("entries");
+        assertNull(walk.events.poll(200, TimeUnit.MILLISECONDS));
+
+        walk.abort();
+        CallbackResult end = walk.take("end");
+        assertEquals(1L, ((Object[]) end.getResult())[0]);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertNull(walk.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testMissingRootIsAnError() throws Exception {
+        RecordingWalk walk = new RecordingWalk();
+        walk.startIn(new File(this.root, "missing"));
+        assertTrue(walk.take("error").isError());
+    }
+
+    private static final class Event {
+        final String name;
+        final CallbackResult result;
+
+        Event(String name, CallbackResult result) {
+            this.name = name;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Runs the walk on its own thread and records events instead of
+     * delivering them through a process.
+     */
+    private static final class RecordingWalk extends WalkWrap {
+        private static final int ENTRIES = eventId("entries");
+        private static final int END = eventId("end");
+
+        final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+        RecordingWalk() {
+            super(null);
+        }
+
+        @Override
+        public Object emit(int event, CallbackResult result) {
+            String name = event == ENTRIES ? "entries" : event == END ? "end" : "error";
+            this.events.add(new Event(name, result));
+            return null;
+        }
+
+        Thread startIn(final File root) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    walk(root.toPath());
+                }
+            });
+            thread.start();
+            return thread;
+        }
+
+        Event next() throws InterruptedException {
+            Event event = this.events.poll(5, TimeUnit.SECONDS);
+            assertNotNull("timed out waiting for the walk", event);
+            return event;
+        }
+
+        CallbackResult take(String name) throws InterruptedException {
+            Event event = next();
+            assertEquals(name, event.name);
+            return event.result;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.fs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WatchMultiplexerTest {
+
+    private FsFixture fixture;
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new FsFixture("watch");
+        this.root = this.fixture.getRoot();
+    }
+
+    @After
+    public void tearDown() {
+        this.fixture.close();
+    }
+
+    @Test
+    public void testDirectoryIsRegisteredOnce() throws IOException {
+        WatchMultiplexer multiplexer = new WatchMultiplexer(0);
+        Events first = new Events();
+        Events second = new Events();
+
+        WatchMultiplexer.Subscription a = multiplexer.watch(this.root, null, first);
+        WatchMultiplexer.Subscription b = multiplexer.watch(this.root, "log.txt", second);
+        assertEquals(1, multiplexer.getWatchedDirectories());
+
+        a.close();
+        assertEquals(1, multiplexer.getWatchedDirectories());
+        b.close();
+        b.close();
+        assertEquals(0, multiplexer.getWatchedDirectories());
+    }
+
+    @Test
+    public void testEventsReachEveryInterestedSubscription() throws Exception {
+        WatchMultiplexer multiplexer = new WatchMultiplexer(0);
+        Events all = new Events();
+        Events log = new Events();
+        Events other = new Events();
+        multiplexer.watch(this.root, null, all);
+        multiplexer.watch(this.root, "log.txt", log);
+        multiplexer.watch(this.root, "other.txt", other);
+
+        assertTrue(new File(this.root, "log.txt").createNewFile());
+
+        assertEquals("ENTRY_CREATE log.txt", all.next());
+        assertEquals("ENTRY_CREATE log.txt", log.next());
+        assertNull(other.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testBurstsAreCoalesced() throws Exception {
+        WatchMultiplexer multiplexer = new WatchMultiplexer(200);
+        Events events = new Events();
+        File file = new File(this.root, "log.txt");
+        assertTrue(file.createNewFile());
+        multiplexer.watch(this.root, "log.txt", events);
+
+        // spaced out, as the WatchService itself merges back-to-back repeats
+        for (int i = 0; i < 5; ++i) {
+            Files.write(file.toPath(), ("line " + i + "\n").getBytes(), StandardOpenOption.APPEND);
+            Thread.sleep(20);
+        }
+
+        assertEquals("ENTRY_MODIFY log.txt", events.next());
+        assertNull(events.events.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(1, multiplexer.getDelivered());
+        assertTrue(multiplexer.getCoalesced() > 0);
+    }
+
+    @Test
+    public void testRecreatedDirectoryIsWatchedAgain() throws Exception {
+        WatchMultiplexer multiplexer = new WatchMultiplexer(0);
+        File dir = new File(this.root, "sub");
+        assertTrue(dir.mkdir());
+        multiplexer.watch(dir, null, new Events());
+
+        assertTrue(dir.delete());
+        for (int i = 0; i < 100 && multiplexer.getWatchedDirectories() > 0; ++i) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, multiplexer.getWatchedDirectories());
+
+        assertTrue(dir.mkdir());
+        Events events = new Events();
+        multiplexer.watch(dir, null, events);
+        File file = new File(dir, "log.txt");
+        assertTrue(file.createNewFile());
+
+        assertEquals("ENTRY_CREATE log.txt", events.next());
+    }
+
+    private static class Events implements WatchMultiplexer.Listener {
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onEvent(String kind, String name) {
+            this.events.add(kind + " " + name);
+        }
+
+        String next() throws InterruptedException {
+            String event = this.events.poll(10, TimeUnit.SECONDS);
+            assertNotNull("timed out", event);
+            return event;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.loop;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WorkerPoolTest {
+
+    private WorkerPool pool;
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        this.pool = new WorkerPool(3, false, 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(10);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        for (int i = 0; i < 10; ++i) {
+            this.pool.submit(WorkerPool.Category.FS, new Runnable() {
+                @Override
+                public void run() {
+                    int now = running.incrementAndGet();
+                    peak.set(Math.max(peak.get(), now));
+                    await(release);
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+
+        waitFor(2, "FS");
+        assertEquals(8, this.pool.getQueued("fs"));
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // one worker is always left to the other categories
+        assertEquals(2, peak.get());
+        waitForCompleted(10, "fs");
+        assertEquals(10, this.pool.getSubmitted("fs"));
+        assertEquals(0, this.pool.getQueued("fs"));
+        assertEquals(0, this.pool.getActive("fs"));
+    }
+
+    @Test
+    public void testBusyCategoryDoesNotStarveOthers() throws Exception {
+        this.pool = new WorkerPool(3, false, 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 20; ++i) {
+            this.pool.submit("fs", new Runnable() {
+                @Override
+                public void run() {
+                    await(release);
+                }
+            });
+        }
+        waitFor(2, "FS");
+
+        final CountDownLatch zlib = new CountDownLatch(1);
+        this.pool.submit("zlib", new Runnable() {
+            @Override
+            public void run() {
+                zlib.countDown();
+            }
+        });
+        assertTrue(zlib.await(5, TimeUnit.SECONDS));
+        assertEquals(18, this.pool.getQueued("fs"));
+        release.countDown();
+        waitForCompleted(20, "fs");
+    }
+
+    @Test
+    public void testFailingTaskKeepsWorker() throws Exception {
+        this.pool = new WorkerPool(1, false, 0);
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                // expected
+            }
+        });
+        try {
+            this.pool.submit("crypto", new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("boom");
+                }
+            });
+            final CountDownLatch ran = new CountDownLatch(1);
+            this.pool.submit("crypto", new Runnable() {
+                @Override
+                public void run() {
+                    ran.countDown();
+                }
+            });
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            waitForCompleted(2, "crypto");
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    public void testVirtualModeFallsBackWithoutVirtualThreads() throws Exception {
+        this.pool = new WorkerPool(2, true, 4);
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+        assertEquals(supported, this.pool.isVirtual());
+
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; ++i) {
+            this.pool.submit("fs", new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        waitForCompleted(8, "fs");
+    }
+
+    private void waitFor(int active, String category) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.pool.getActive(category) < active) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void waitForCompleted(int completed, String category) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.pool.getCompleted(category) < completed) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.netty.pipe.ipc;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.nio.NioEventLoopGroup;
+import jnr.constants.platform.AddressFamily;
+import jnr.constants.platform.OpenFlags;
+import jnr.constants.platform.Sock;
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class NioIPCChannelTest {
+
+    private final POSIX posix = POSIXFactory.getPOSIX();
+    private final BlockingQueue<IPCRecord> received = new LinkedBlockingQueue<>();
+    private NioEventLoopGroup group;
+    private NioIPCChannel sender;
+    private NioIPCChannel receiver;
+
+    @Before
+    public void setUp() throws Exception {
+        int[] fds = new int[2];
+        assertEquals(0, this.posix.socketpair(AddressFamily.AF_UNIX.intValue(), Sock.SOCK_STREAM.intValue(), 0, fds));
+        this.sender = NioIPCChannel.open(this.posix, fds[0]);
+        this.receiver = NioIPCChannel.open(this.posix, fds[1]);
+        // FdChannels is unavailable, as on JDK 9+ without --add-opens
+        assumeNotNull(this.sender, this.receiver);
+
+        this.receiver.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                received.add((IPCRecord) msg);
+            }
+        });
+        this.group = new NioEventLoopGroup(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.group != null) {
+            this.sender.close().sync();
+            this.receiver.close().sync();
+            this.group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    @Test
+    public void testPassesDescriptorWithMessage() throws Exception {
+        this.group.register(this.sender).sync();
+        this.group.register(this.receiver).sync();
+
+        File file = File.createTempFile("ipc", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "tacos".getBytes(StandardCharsets.UTF_8));
+        int fileFd = this.posix.open(file.getPath(), OpenFlags.O_RDONLY.intValue(), 0);
+        assertTrue(fileFd >= 0);
+
+        this.sender.writeAndFlush(new IPCRecord(Unpooled.copiedBuffer("handle", StandardCharsets.UTF_8), fileFd)).sync();
+        this.posix.close(fileFd);
+
+        IPCRecord record = take();
+        assertEquals("handle", record.getBuffer().toString(StandardCharsets.UTF_8));
+        int passedFd = record.getFd();
+        assertTrue(passedFd >= 0);
+        record.getBuffer().release();
+
+        byte[] contents = new byte[16];
+        int read = this.posix.read(passedFd, contents, contents.length);
+        this.posix.close(passedFd);
+        assertEquals("tacos", new String(contents, 0, read, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBlockedWritesResumeWhenPeerDrains() throws Exception {
+        this.receiver.config().setAutoRead(false);
+        this.group.register(this.sender).sync();
+        this.group.register(this.receiver).sync();
+
+        // far more than the socket buffers hold while nobody reads
+        int chunk = 64 * 1024;
+        int chunks = 64;
+        List<ChannelFuture> writes = new ArrayList<>();
+        for (int i = 0; i < chunks; ++i) {
+            ByteBuf buf = Unpooled.buffer(chunk);
+            for (int j = 0; j < chunk; ++j) {
+                buf.writeByte(i);
+            }
+            writes.add(this.sender.writeAndFlush(new IPCRecord(buf, -1)));
+        }
+        ChannelFuture last = writes.get(chunks - 1);
+        assertFalse(last.await(200, TimeUnit.MILLISECONDS));
+
+        this.receiver.config().setAutoRead(true);
+        this.receiver.read();
+
+        long total = 0;
+        long expected = (long) chunk * chunks;
+        while (total < expected) {
+            IPCRecord record = take();
+            ByteBuf buf = record.getBuffer();
+            for (int i = buf.readerIndex(); i < buf.writerIndex(); ++i) {
+                assertEquals((byte) ((total + i - buf.readerIndex()) / chunk), buf.getByte(i));
+            }
+            total += buf.readableBytes();
+            buf.release();
+        }
+        assertEquals(expected, total);
+        assertTrue(last.await(5, TimeUnit.SECONDS));
+        for (ChannelFuture each : writes) {
+            assertTrue(each.isSuccess());
+        }
+    }
+
+    private IPCRecord take() throws InterruptedException {
+        IPCRecord record = this.received.poll(5, TimeUnit.SECONDS);
+        assertNotNull("timed out waiting for IPC data", record);
+        return record;
+    }
+}
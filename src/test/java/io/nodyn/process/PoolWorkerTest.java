@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.process;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class PoolWorkerTest {
+
+    private static final Executor WRITER = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            new Thread(task, "pool-worker-write").start();
+        }
+    };
+
+    private final POSIX posix = POSIXFactory.getPOSIX();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // cat echoes each request frame back as its reply
+        PoolWorker worker = spawn("cat");
+        try {
+            assertEquals("hello", call(worker, "hello"));
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 3000; ++i) {
+                text.append("line ").append(i).append('\n');
+            }
+            assertEquals(text.toString(), call(worker, text.toString()));
+            assertTrue(worker.ping());
+            assertEquals(2, worker.getJobs());
+            assertFalse(worker.isDead());
+        } finally {
+            worker.retire();
+        }
+    }
+
+    @Test
+    public void testLargeRequestWhileWorkerReplies() throws Exception {
+        // cat starts echoing long before it has read the whole frame
+        PoolWorker worker = spawn("cat");
+        try {
+            byte[] request = new byte[512 * 1024];
+            for (int i = 0; i < request.length; ++i) {
+                request[i] = (byte) i;
+            }
+            ByteBuf reply = worker.call(Unpooled.wrappedBuffer(request));
+            byte[] bytes = new byte[reply.readableBytes()];
+            reply.getBytes(reply.readerIndex(), bytes);
+            assertArrayEquals(request, bytes);
+            assertEquals("hello", call(worker, "hello"));
+        } finally {
+            worker.retire();
+        }
+    }
+
+    @Test
+    public void testExitedWorkerFails() throws Exception {
+        PoolWorker worker = spawn("true");
+        try {
+            worker.call(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8));
+            fail("expected the call to fail");
+        } catch (PoolWorker.Failure e) {
+            assertTrue(e.getCode().equals("EOF") || e.getCode().equals("EPIPE"));
+        }
+        assertTrue(worker.isDead());
+        assertFalse(worker.ping());
+        worker.retire();
+    }
+
+    @Test
+    public void testTimeOutKillsWorker() throws Exception {
+        final PoolWorker worker = spawn("sleep", "10");
+        Thread watchdog = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                worker.timeOut();
+            }
+        };
+        watchdog.start();
+        long start = System.currentTimeMillis();
+        try {
+            worker.call(Unpooled.copiedBuffer("hello", StandardCharsets.UTF_8));
+            fail("expected the call to time out");
+        } catch (PoolWorker.Failure e) {
+            assertEquals("ETIMEDOUT", e.getCode());
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        worker.retire();
+    }
+
+    @Test
+    public void testSpawnFailure() {
+        assertNull(PoolWorker.spawn(this.posix, WRITER, "/no/such/helper", Arrays.asList("/no/such/helper"), environment()));
+    }
+
+    private PoolWorker spawn(String... argv) {
+        PoolWorker worker = PoolWorker.spawn(this.posix, WRITER, argv[0], Arrays.asList(argv), environment());
+        assertNotNull(worker);
+        assertTrue(worker.getPid() > 0);
+        return worker;
+    }
+
+    private static String call(PoolWorker worker, String request) throws PoolWorker.Failure {
+        ByteBuf reply = worker.call(Unpooled.copiedBuffer(request, StandardCharsets.UTF_8));
+        return reply.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> environment() {
+        List<String> envp = new ArrayList<>();
+        for (Map.Entry<String, String> each : System.getenv().entrySet()) {
+            envp.add(each.getKey() + "=" + each.getValue());
+        }
+        return envp;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.nodyn.process;
+
+import io.netty.buffer.Unpooled;
+import jnr.posix.POSIX;
+import jnr.posix.POSIXFactory;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SyncProcessWrapTest {
+
+    private final POSIX posix = POSIXFactory.getPOSIX();
+
+    @Test
+    public void testCapturesStdoutAndStderr() throws Exception {
+        SyncProcessWrap proc = new SyncProcessWrap(this.posix);
+        int status = proc.spawn("sh", "sh", "-c", "echo out; echo err 1>&2; exit 3");
+
+        assertEquals(3, status);
+        assertTrue(proc.getPid() > 0);
+        assertEquals("out\n", proc.getStdout().toString(StandardCharsets.UTF_8));
+        assertEquals("err\n", proc.getStderr().toString(StandardCharsets.UTF_8));
+        assertNull(proc.getError());
+        assertNull(proc.getSignal());
+    }
+
+    @Test
+    public void testFeedsInput() throws Exception {
+        SyncProcessWrap proc = new SyncProcessWrap(this.posix);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            text.append("line ").append(i).append('\n');
+        }
+        proc.setInput(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8));
+
+        assertEquals(0, proc.spawn("cat", "cat"));
+        assertEquals(text.toString(), proc.getStdout().toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTimeoutKills() throws Exception {
+        SyncProcessWrap proc = new SyncProcessWrap(this.posix);
+        proc.setTimeout(200);
+
+        long start = System.currentTimeMillis();
+        assertEquals(-1, proc.spawn("sleep", "sleep", "10"));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals("ETIMEDOUT", proc.getError());
+        assertEquals("SIGTERM", proc.getSignal());
+    }
+
+    @Test
+    public void testMaxBufferKills() throws Exception {
+        SyncProcessWrap proc = new SyncProcessWrap(this.posix);
+        proc.setMaxBuffer(1024);
+
+        assertEquals(-1, proc.spawn("yes", "yes"));
+        assertEquals("ENOBUFS", proc.getError());
+        assertEquals("SIGTERM", proc.getSignal());
+        assertTrue(proc.getStdout().readableBytes() > 1024);
+    }
+}
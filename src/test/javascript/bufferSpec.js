@@ -94,6 +94,14 @@ describe("Buffer", function() {
     expect(b.toString()).toBe("hhhh");
   });
 
+  it('should fill with the UTF-8 bytes of a single non-ASCII character', function() {
+    var b = new Buffer(4);
+    b.fill('\u00e9');
+    expect(b[0]).toBe(0xc3);
+    expect(b[1]).toBe(0xa9);
+    expect(b.toString()).toBe("\u00e9\u00e9");
+  });
+
   it('should pass testBufferOverfull', function() {
     var b = new Buffer(4);
     try {
@@ -526,11 +534,104 @@ describe("Buffer", function() {
 
   });
 
+  it( "should support url-safe base64 on toString and decode it back", function() {
+    var b = new Buffer( [ 0xfb, 0xff, 0xbf, 0x01 ] );
+    expect( b.toString('base64') ).toBe( '+/+/AQ==' );
+    expect( b.toString('base64url') ).toBe( '-_-_AQ' );
+    expect( new Buffer( '-_-_AQ', 'base64' ).equals( b ) ).toBe( true );
+    expect( Buffer.isEncoding( 'base64url' ) ).toBe( true );
+  });
+
+  it( "should accept base64url wherever it accepts base64", function() {
+    var b = new Buffer( '-_-_AQ', 'base64url' );
+    expect( b.length ).toBe( 4 );
+    expect( b.toString('hex') ).toBe( 'fbffbf01' );
+    expect( Buffer.byteLength( '-_-_AQ', 'base64url' ) ).toBe( 4 );
+
+    var c = new Buffer( 4 );
+    expect( c.write( '-_-_AQ', 0, 'base64url' ) ).toBe( 4 );
+    expect( c.equals( b ) ).toBe( true );
+  });
+
   it( "should support hex on toString", function() {
     var b = new Buffer( "tacos" );
     expect( b.toString('hex') ).toBe( '7461636f73' );
   });
 
+  it( "should read and write indexed bytes across the full range", function() {
+    var b = new Buffer( 4 );
+    b[0] = 255;
+    b[1] = 128;
+    b[2] = 256 + 7;
+    b[3] = 0;
+    expect( b[0] ).toBe( 255 );
+    expect( b[1] ).toBe( 128 );
+    expect( b[2] ).toBe( 7 );
+    expect( b[3] ).toBe( 0 );
+    expect( b._nettyBuffer().readableBytes() ).toBe( 4 );
+  });
+
+  it( "should write strings at an offset without shrinking the buffer", function() {
+    var b = new Buffer( 8 );
+    b.fill( 0 );
+    b.write( 'ab', 6, 'ascii' );
+    b.write( 'cd', 0, 'binary' );
+    expect( b.length ).toBe( 8 );
+    expect( b[6] ).toBe( 97 );
+    expect( b[7] ).toBe( 98 );
+    expect( b[0] ).toBe( 99 );
+    expect( b._nettyBuffer().readableBytes() ).toBe( 8 );
+  });
+
+  it( "should fill with bytes, zeroes and patterns", function() {
+    var b = new Buffer( 21 );
+    b.fill( 0 );
+    expect( b[20] ).toBe( 0 );
+    b.fill( 7, 3, 13 );
+    expect( b[2] ).toBe( 0 );
+    expect( b[3] ).toBe( 7 );
+    expect( b[12] ).toBe( 7 );
+    expect( b[13] ).toBe( 0 );
+    b.fill( 'abc' );
+    expect( b.toString() ).toBe( 'abcabcabcabcabcabcabc' );
+  });
+
+  it( "should copy between buffers natively", function() {
+    var src = new Buffer( 'howdy partner' );
+    var dest = new Buffer( 10 );
+    dest.fill( 0x2e );
+    var copied = src.copy( dest, 2, 6, 13 );
+    expect( copied ).toBe( 7 );
+    expect( dest.toString() ).toBe( '..partner.' );
+  });
+
+  it( "should compare and test equality of buffers", function() {
+    var a = new Buffer( 'tacos are tasty!' );
+    var b = new Buffer( 'tacos are tasty!' );
+    var c = new Buffer( 'tacos are tastz!' );
+    var d = new Buffer( [ 0xff ] );
+    expect( a.equals( b ) ).toBe( true );
+    expect( Buffer.compare( a, c ) ).toBe( -1 );
+    expect( c.compare( a ) ).toBe( 1 );
+    expect( Buffer.compare( a, a.slice( 0, 5 ) ) ).toBe( 1 );
+    expect( Buffer.compare( new Buffer( [ 0x01 ] ), d ) ).toBe( -1 );
+  });
+
+  it( "should find bytes, strings and buffers with indexOf", function() {
+    var b = new Buffer( '--boundary1234567890\r\ncontent\r\n--boundary1234567890--' );
+    expect( b.indexOf( 0x2d ) ).toBe( 0 );
+    expect( b.indexOf( 'content' ) ).toBe( 22 );
+    expect( b.indexOf( new Buffer( '--boundary1234567890' ), 1 ) ).toBe( 31 );
+    expect( b.indexOf( 'nope' ) ).toBe( -1 );
+  });
+
+  it( "should concat into a single buffer", function() {
+    var b = Buffer.concat( [ new Buffer( 'foo' ), new Buffer( 'bar' ), new Buffer( 'baz' ) ] );
+    expect( b.length ).toBe( 9 );
+    expect( b.toString() ).toBe( 'foobarbaz' );
+    expect( Buffer.concat( [ new Buffer( 'foo' ), new Buffer( 'bar' ) ], 4 ).toString() ).toBe( 'foob' );
+  });
+
   xit( "should accept a vertx Buffer instance in the ctor function", function() {
     var b1 = new Buffer('Now is the winter of our discontent');
     var b2 = new Buffer( b1._buffer );
@@ -75,6 +75,29 @@ describe( 'child_process', function() {
     })
   });
 
+  it( 'should be able to exec on a pool of workers', function() {
+    waitsFor(helper.testComplete, "pooled workers to reply", 5000 );
+    // cat echoes each request frame back as its reply
+    var pool = child_process.createPool( 'cat', { size: 2, maxJobs: 3 } );
+    var remaining = 10;
+    for ( var i = 0 ; i < 10 ; ++i ) {
+      (function(n) {
+        pool.exec( 'request ' + n, function(err, reply) {
+          expect( err ).toBe( null );
+          expect( reply.toString() ).toBe( 'request ' + n );
+          if ( --remaining === 0 ) {
+            var stats = pool.stats();
+            expect( stats.completed ).toBe( 10 );
+            expect( stats.recycled ).toBeGreaterThan( 0 );
+            pool.close( function() {
+              helper.testComplete(true);
+            });
+          }
+        });
+      })(i);
+    }
+  });
+
   it( 'should be able to send sockets to a child', function() {
       waitsFor(helper.testComplete, "child process to be killed", 15000 );
       var connection;
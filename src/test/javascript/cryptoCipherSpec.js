@@ -77,6 +77,18 @@ describe("crypto Cipher & Decipher module", function() {
     );
   } );
 
+  it( "should produce the same bytes as node.js for aes-128-ctr", function() {
+    testCipher( 'aes-128-ctr', 'bob',
+      '1f 7a f7'
+    );
+  } );
+
+  it( "should produce the same bytes as node.js for aes-256-ctr", function() {
+    testCipher( 'aes-256-ctr', 'bob',
+      'a7 97 7e'
+    );
+  } );
+
   it( "should produce the same bytes as node.js for bf-cbc", function() {
     testCipher( 'bf-cbc', 'bob',
       'a9 fc 35 fa e8 c1 05 df'
@@ -119,6 +119,66 @@ describe('The dgram module', function() {
     });
   });
 
+  it('should send a batch of packets', function() {
+    waitsFor(helper.testComplete, "the dgram batch send test", 5000);
+    var peer1 = dgram.createSocket('udp4');
+    var peer2 = dgram.createSocket('udp4');
+    var received = [];
+
+    peer1.on('error', unexpectedError.bind(this));
+    peer2.on('error', unexpectedError.bind(this));
+
+    peer2.on('message', function(msg, rinfo) {
+      received.push(msg.toString());
+      if (received.length === 3) {
+        expect(received.sort().join(',')).toBe('a,bb,ccc');
+        peer2.on('close', function() { helper.testComplete(true); });
+        peer1.on('close', function() { peer2.close(); });
+        peer1.close();
+      }
+    });
+
+    peer2.bind(54321, function() {
+      peer1.bind(54322, function() {
+        peer1.sendBatch(['a', new Buffer('bb'), 'ccc'], 54321, '127.0.0.1', function(err) {
+          expect(err).toBe(null);
+        });
+      });
+    });
+  });
+
+  it('should receive bursts of packets with sender info', function() {
+    waitsFor(helper.testComplete, "the dgram burst receive test", 5000);
+    var peer1 = dgram.createSocket('udp4');
+    var peer2 = dgram.createSocket('udp4');
+    var count = 0;
+
+    peer1.on('error', unexpectedError.bind(this));
+    peer2.on('error', unexpectedError.bind(this));
+
+    peer2.setRecvBufferSize(1024);
+    peer2.on('message', function(msg, rinfo) {
+      expect(msg.toString()).toBe('packet ' + (msg[7] - 48));
+      expect(rinfo.port).toBe(54322);
+      expect(rinfo.family).toBe('IPv4');
+      expect(rinfo.size).toBe(msg.length);
+      if (++count === 10) {
+        peer2.on('close', function() { helper.testComplete(true); });
+        peer1.on('close', function() { peer2.close(); });
+        peer1.close();
+      }
+    });
+
+    peer2.bind(54321, function() {
+      peer1.bind(54322, function() {
+        for (var i = 0; i < 10; ++i) {
+          var buffer = new Buffer('packet ' + i);
+          peer1.send(buffer, 0, buffer.length, 54321, '127.0.0.1');
+        }
+      });
+    });
+  });
+
   it('should allow setting the broadcast option on a socket', function() {
     waitsFor(helper.testComplete, "the dgram broadcast test", 5000);
     var peer1 = dgram.createSocket('udp4');
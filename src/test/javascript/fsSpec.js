@@ -141,6 +141,83 @@ describe("fs module", function() {
     });
   });
 
+  it("should have exists() and existsSync() functions", function() {
+    waitsFor(helper.testComplete, "the exists check to complete", 5000);
+    expect(fs.existsSync(tmpFile.getAbsolutePath())).toBe(true);
+    expect(fs.existsSync(basedir + "/no-such-recipe.txt")).toBe(false);
+    fs.exists(tmpFile.getAbsolutePath(), function(exists) {
+      expect(exists).toBe(true);
+      fs.exists(basedir + "/no-such-recipe.txt", function(exists) {
+        expect(exists).toBe(false);
+        helper.testComplete(true);
+      });
+    });
+  });
+
+  it("should walk a directory tree in batches", function() {
+    waitsFor(helper.testComplete, "the walk to complete", 5000);
+    var root = basedir + "/walk-recipes-" + Date.now();
+    fs.mkdirSync(root);
+    fs.mkdirSync(root + "/soups");
+    fs.mkdirSync(root + "/soups/cold");
+    fs.mkdirSync(root + "/node_modules");
+    fs.writeFileSync(root + "/bread.txt", "flour");
+    fs.writeFileSync(root + "/soups/leek.txt", "leeks");
+    fs.writeFileSync(root + "/soups/cold/gazpacho.md", "tomato");
+    fs.writeFileSync(root + "/node_modules/ignored.txt", "");
+
+    var batches = 0;
+    var walker = fs.walk(root, { batchSize: 2, ignore: 'node_modules' });
+    var seen = {};
+    walker.on('entries', function(entries) {
+      ++batches;
+      expect(entries.length).toBeLessThan(3);
+      entries.forEach(function(entry) { seen[entry.path] = entry; });
+    });
+    walker.on('end', function(count) {
+      expect(count).toBe(5);
+      expect(batches).toBe(3);
+      expect(seen['soups'].type).toBe('directory');
+      expect(seen['soups/leek.txt'].type).toBe('file');
+      expect(seen['soups/leek.txt'].size).toBe(5);
+      expect(seen['node_modules']).toBe(undefined);
+
+      fs.walk(root, { glob: '**.txt', maxDepth: 2 }, function(err, entries) {
+        expect(err).toBe(null);
+        var paths = entries.map(function(entry) { return entry.path; }).sort();
+        expect(paths).toEqual(['bread.txt', 'node_modules/ignored.txt', 'soups/leek.txt']);
+
+        fs.unlinkSync(root + "/node_modules/ignored.txt");
+        fs.unlinkSync(root + "/soups/cold/gazpacho.md");
+        fs.unlinkSync(root + "/soups/leek.txt");
+        fs.unlinkSync(root + "/bread.txt");
+        fs.rmdirSync(root + "/node_modules");
+        fs.rmdirSync(root + "/soups/cold");
+        fs.rmdirSync(root + "/soups");
+        fs.rmdirSync(root);
+        expect(fs.existsSync(root)).toBe(false);
+        helper.testComplete(true);
+      });
+    });
+  });
+
+  it("should poll watched files and report current and previous stats", function() {
+    waitsFor(helper.testComplete, "the watchFile change to be reported", 5000);
+    var path = tmpFile.getAbsolutePath();
+    fs.writeFileSync(path, "flour");
+    fs.watchFile(path, { persistent: true, interval: 50 }, function(curr, prev) {
+      expect(prev.size).toBe(5);
+      expect(curr.size).toBe(17);
+      expect(curr.isFile()).toBe(true);
+      fs.unwatchFile(path);
+      helper.testComplete(true);
+    });
+    // after the baseline stat
+    setTimeout(function() {
+      fs.appendFileSync(path, ", eggs, milk");
+    }, 200);
+  });
+
   it("should have a writeFile function", function() {
     waitsFor(helper.testComplete, "the writeFile operation to complete", 5000);
     fs.writeFile(tmpFile.getAbsolutePath(),
@@ -513,6 +590,53 @@ describe("fs module", function() {
       }, contents);
     });
 
+    it("should report a missing file to readFile", function() {
+      waitsFor(helper.testComplete, "the readFile to complete", 5000);
+      fs.readFile(basedir + "/no-such-recipe.txt", function(err, file) {
+        expect(err instanceof Error).toBe(true);
+        expect(err.code).toBe('ENOENT');
+        expect(err.syscall).toBe('open');
+        expect(file).toBeFalsy();
+        helper.testComplete(true);
+      });
+    });
+
+    it("should name the read when readFile is given a directory", function() {
+      waitsFor(helper.testComplete, "the readFile to complete", 5000);
+      fs.readFile(basedir, function(err, file) {
+        expect(err instanceof Error).toBe(true);
+        expect(err.code).toBe('EISDIR');
+        expect(err.syscall).toBe('read');
+        expect(file).toBeFalsy();
+        helper.testComplete(true);
+      });
+    });
+
+    it("should honor the flag passed to writeFile", function() {
+      waitsFor(helper.testComplete, "the writeFile to complete", 5000);
+      fs.writeFile(tmpFile.getAbsolutePath(), data, {flag: 'wx'}, function(err) {
+        expect(err instanceof Error).toBe(true);
+        expect(err.code).toBe('EEXIST');
+        fs.appendFile(tmpFile.getAbsolutePath(), data, function(err) {
+          expect(err).toBeFalsy();
+          expect(fs.readFileSync(tmpFile.getAbsolutePath(), 'utf8')).toBe(data);
+          helper.testComplete(true);
+        });
+      });
+    });
+
+    it("should append with writeFile and the a+ flag", function() {
+      waitsFor(helper.testComplete, "the writeFile to complete", 5000);
+      fs.writeFile(tmpFile.getAbsolutePath(), data, {flag: 'a+'}, function(err) {
+        expect(err).toBeFalsy();
+        fs.writeFile(tmpFile.getAbsolutePath(), data, {flag: 'a+'}, function(err) {
+          expect(err).toBeFalsy();
+          expect(fs.readFileSync(tmpFile.getAbsolutePath(), 'utf8')).toBe(data + data);
+          helper.testComplete(true);
+        });
+      });
+    });
+
     describe("synchronously", function() {
 
       it("should error on openSync read if the file doesn't exist", function() {
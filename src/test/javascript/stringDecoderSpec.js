@@ -8,4 +8,29 @@ describe('The string_decoder module', function() {
     var cent = new Buffer([0xC2, 0xA2]);
     expect(decoder.write(cent)).toBe("¢");
   });
+
+  it('should hold back characters split across writes', function() {
+    var StringDecoder = require('string_decoder').StringDecoder;
+    var decoder = new StringDecoder('utf8');
+    var euro = new Buffer([0xE2, 0x82, 0xAC]);
+    expect(decoder.write(euro.slice(0, 1))).toBe('');
+    expect(decoder.write(euro.slice(1, 2))).toBe('');
+    expect(decoder.write(Buffer.concat([euro.slice(2), new Buffer('ab')]))).toBe('\u20ACab');
+    expect(decoder.end()).toBe('');
+  });
+
+  it('should replace an incomplete character at the end', function() {
+    var StringDecoder = require('string_decoder').StringDecoder;
+    var decoder = new StringDecoder('utf8');
+    expect(decoder.write(new Buffer([0x61, 0xE2, 0x82]))).toBe('a');
+    expect(decoder.end()).toBe('\uFFFD');
+  });
+
+  it('should decode ucs2 split across writes', function() {
+    var StringDecoder = require('string_decoder').StringDecoder;
+    var decoder = new StringDecoder('ucs2');
+    var buf = new Buffer('hi', 'ucs2');
+    expect(decoder.write(buf.slice(0, 3))).toBe('h');
+    expect(decoder.write(buf.slice(3))).toBe('i');
+  });
 });
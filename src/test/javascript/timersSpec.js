@@ -111,4 +111,30 @@ describe("The timers module", function() {
       x = z;
     }, 2);
   });
+
+  it('should repeat natively on the timer handle', function() {
+    var Timer = process.binding('timer_wrap').Timer;
+    var fired = 0;
+    waitsFor(helper.testComplete, "the repeating timer to fire", 3000);
+    var timer = new Timer();
+    timer[0] = function() {
+      fired = fired + 1;
+      if ( fired === 3 ) {
+        expect( timer.getRepeat() ).toBe( 20 );
+        timer.close();
+        helper.testComplete(true);
+      }
+    };
+    timer.start(0, 20);
+  });
+
+  it('should provide a monotonic Timer.now', function() {
+    var Timer = process.binding('timer_wrap').Timer;
+    var before = Timer.now();
+    waitsFor(helper.testComplete, "the clock to advance", 3000);
+    setTimeout(function() {
+      expect( Timer.now() - before ).not.toBeLessThan( 40 );
+      helper.testComplete(true);
+    }, 50);
+  });
 });
@@ -0,0 +1,78 @@
+var helper = require('./specHelper.js');
+var Worker = require('nodyn/worker').Worker;
+
+describe( 'nodyn/worker', function() {
+
+  beforeEach(function() {
+    helper.testComplete(false);
+  });
+
+  it('should not be a worker on the main thread', function() {
+    var worker = require('nodyn/worker');
+    expect( worker.isMainThread ).toBe( true );
+    expect( worker.parentPort ).toBe( null );
+  });
+
+  it('should echo cloned messages', function() {
+    waitsFor(helper.testComplete, "worker to echo", 10000 );
+    var worker = new Worker( __dirname + '/worker_echo.js' );
+    worker.on( 'message', function(msg) {
+      expect( msg.greeting ).toBe( 'howdy' );
+      expect( msg.list.length ).toBe( 3 );
+      expect( msg.copied.toString() ).toBe( 'copied' );
+      worker.postMessage( { exit: 0 } );
+    });
+    worker.on( 'exit', function(code) {
+      expect( code ).toBe( 0 );
+      helper.testComplete(true);
+    });
+    worker.postMessage( { greeting: 'howdy', list: [1, 2, 3], copied: new Buffer('copied') } );
+  });
+
+  it('should transfer buffers without copying', function() {
+    waitsFor(helper.testComplete, "worker to return buffer", 10000 );
+    var worker = new Worker( __dirname + '/worker_echo.js' );
+    var buffer = new Buffer( [1, 2, 3, 4] );
+    var when = new Date();
+    worker.on( 'message', function(msg) {
+      expect( msg.buffer.length ).toBe( 4 );
+      expect( msg.buffer[0] ).toBe( 42 );
+      expect( msg.buffer[3] ).toBe( 4 );
+      expect( msg.when.getTime() ).toBe( when.getTime() );
+      worker.terminate();
+    });
+    worker.on( 'exit', function(code) {
+      expect( code ).toBe( 1 );
+      helper.testComplete(true);
+    });
+    worker.postMessage( { buffer: buffer, when: when }, [ buffer ] );
+    expect( buffer.length ).toBe( 0 );
+  });
+
+  it('should leave transferred buffers intact when the message is refused', function() {
+    waitsFor(helper.testComplete, "worker to exit", 10000 );
+    var worker = new Worker( __dirname + '/worker_silent.js', { queueSize: 1 } );
+    var buffer = new Buffer( [1, 2, 3, 4] );
+    worker.postMessage( { fill: true } );
+    expect( function() {
+      worker.postMessage( { buffer: buffer }, [ buffer ] );
+    }).toThrow( 'Message queue full' );
+    expect( buffer.length ).toBe( 4 );
+    expect( buffer[3] ).toBe( 4 );
+
+    expect( function() {
+      worker.postMessage( { buffer: buffer }, [ buffer, 'not a buffer' ] );
+    }).toThrow( 'Only Buffers can be transferred' );
+    expect( buffer.length ).toBe( 4 );
+
+    worker.on( 'exit', function() {
+      expect( function() {
+        worker.postMessage( { buffer: buffer }, [ buffer ] );
+      }).toThrow( 'Message port closed' );
+      expect( buffer.length ).toBe( 4 );
+      expect( buffer.toString( 'hex' ) ).toBe( '01020304' );
+      helper.testComplete(true);
+    });
+  });
+
+});
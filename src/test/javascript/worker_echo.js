@@ -0,0 +1,13 @@
+var parentPort = require('nodyn/worker').parentPort;
+
+parentPort.on('message', function(msg) {
+  if ( msg.exit !== undefined ) {
+    process.exit( msg.exit );
+  }
+  if ( msg.buffer ) {
+    msg.buffer[0] = 42;
+    parentPort.postMessage( { buffer: msg.buffer, when: msg.when }, [ msg.buffer ] );
+    return;
+  }
+  parentPort.postMessage( msg );
+});
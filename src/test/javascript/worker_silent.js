@@ -0,0 +1 @@
+// exits without ever reading the messages posted to it